@@ -0,0 +1,447 @@
+package com.acertainbookstore.business;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.acertainbookstore.utils.BookStoreUtility;
+import com.acertainbookstore.utils.IntHashMap;
+
+/**
+ * {@link BookColumnStore} stores the books of the book store column by column:
+ * each mutable field of a book lives in its own primitive array, and the
+ * immutable part of the book (ISBN, title, author and price) in an array of
+ * {@link ImmutableBook}s. A book is identified by its slot, the index of its
+ * fields in every array. The slots are dense: removing a book moves the book
+ * in the last slot into the freed one, so a scan over one field is a
+ * sequential pass over one array.
+ *
+ * The slots of the editor picks are also kept in a dense list of their own,
+ * so the picks are sampled without scanning the store.
+ *
+ * Slots are only stable until the next removal. The store is not
+ * thread-safe.
+ *
+ * @see CertainBookStore
+ */
+public class BookColumnStore {
+
+	/** The initial number of slots. */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** The immutable part of the books, by slot. */
+	private ImmutableBook[] books = new ImmutableBook[INITIAL_CAPACITY];
+
+	/** The number of copies, by slot. */
+	private int[] numCopies = new int[INITIAL_CAPACITY];
+
+	/** The total rating, by slot. */
+	private long[] totalRatings = new long[INITIAL_CAPACITY];
+
+	/** The number of times rated, by slot. */
+	private long[] numTimesRated = new long[INITIAL_CAPACITY];
+
+	/** The number of sale misses, by slot. */
+	private long[] numSaleMisses = new long[INITIAL_CAPACITY];
+
+	/** Whether the book is editor picked, by slot. */
+	private boolean[] editorPicks = new boolean[INITIAL_CAPACITY];
+
+	/** The position of the book in the editor pick list, by slot, if it is editor picked. */
+	private int[] editorPickPositions = new int[INITIAL_CAPACITY];
+
+	/** The slots of the editor picks, in no particular order. */
+	private int[] editorPickSlots = new int[INITIAL_CAPACITY];
+
+	/** The number of editor picks. */
+	private int numEditorPicks = 0;
+
+	/** The number of books, also the first free slot. */
+	private int size = 0;
+
+	/** The mapping of books from ISBN to slot. */
+	private final IntHashMap<Integer> slotIndex = new IntHashMap<>();
+
+	/** The ISBNs in ascending order, or null until sorted again after a change. */
+	private int[] sortedISBNs = null;
+
+	/**
+	 * Gets the number of books.
+	 *
+	 * @return the number of books
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Checks if the book is in the store.
+	 *
+	 * @param isbn
+	 *            the ISBN
+	 * @return true, if the book is in the store
+	 */
+	public boolean contains(int isbn) {
+		return slotIndex.containsKey(isbn);
+	}
+
+	/**
+	 * Gets the slot of the book.
+	 *
+	 * @param isbn
+	 *            the ISBN
+	 * @return the slot, or -1 if the book is not in the store
+	 */
+	public int getSlot(int isbn) {
+		Integer slot = slotIndex.get(isbn);
+		return slot == null ? -1 : slot;
+	}
+
+	/**
+	 * Adds the book in the next free slot, which must not be in the store.
+	 *
+	 * @param book
+	 *            the book
+	 * @return the slot
+	 */
+	public int add(StockBook book) {
+		if (size == books.length) {
+			grow();
+		}
+
+		int slot = size++;
+		books[slot] = new ImmutableBook(book.getISBN(), book.getTitle(), book.getAuthor(), book.getPrice());
+		numCopies[slot] = book.getNumCopies();
+		totalRatings[slot] = book.getTotalRating();
+		numTimesRated[slot] = book.getNumTimesRated();
+		numSaleMisses[slot] = book.getNumSaleMisses();
+		editorPicks[slot] = false;
+		setEditorPick(slot, book.isEditorPick());
+		slotIndex.put(book.getISBN(), slot);
+		sortedISBNs = null;
+		return slot;
+	}
+
+	/**
+	 * Removes the book, moving the book in the last slot into its slot.
+	 *
+	 * @param isbn
+	 *            the ISBN
+	 */
+	public void remove(int isbn) {
+		Integer removedSlot = slotIndex.remove(isbn);
+
+		if (removedSlot == null) {
+			return;
+		}
+
+		int slot = removedSlot;
+
+		sortedISBNs = null;
+
+		if (editorPicks[slot]) {
+			removeEditorPick(slot);
+		}
+
+		int last = --size;
+
+		if (slot != last) {
+			books[slot] = books[last];
+			numCopies[slot] = numCopies[last];
+			totalRatings[slot] = totalRatings[last];
+			numTimesRated[slot] = numTimesRated[last];
+			numSaleMisses[slot] = numSaleMisses[last];
+			editorPicks[slot] = editorPicks[last];
+			slotIndex.put(books[slot].getISBN(), slot);
+
+			if (editorPicks[slot]) {
+				editorPickPositions[slot] = editorPickPositions[last];
+				editorPickSlots[editorPickPositions[slot]] = slot;
+			}
+		}
+
+		// Let the removed book be collected
+		books[last] = null;
+	}
+
+	/**
+	 * Removes all books.
+	 */
+	public void clear() {
+		Arrays.fill(books, 0, size, null);
+		size = 0;
+		numEditorPicks = 0;
+		slotIndex.clear();
+		sortedISBNs = null;
+	}
+
+	private void grow() {
+		int capacity = books.length << 1;
+		books = Arrays.copyOf(books, capacity);
+		numCopies = Arrays.copyOf(numCopies, capacity);
+		totalRatings = Arrays.copyOf(totalRatings, capacity);
+		numTimesRated = Arrays.copyOf(numTimesRated, capacity);
+		numSaleMisses = Arrays.copyOf(numSaleMisses, capacity);
+		editorPicks = Arrays.copyOf(editorPicks, capacity);
+		editorPickPositions = Arrays.copyOf(editorPickPositions, capacity);
+		editorPickSlots = Arrays.copyOf(editorPickSlots, capacity);
+	}
+
+	/**
+	 * Gets the ISBNs of the books in ascending order. The ISBNs are copied out
+	 * of the store and sorted on the first call after the books change, so
+	 * paging through an unchanged store sorts them once.
+	 *
+	 * @return the ISBNs, which must not be modified
+	 */
+	public int[] getSortedISBNs() {
+		if (sortedISBNs == null) {
+			int[] isbns = new int[size];
+
+			for (int slot = 0; slot < size; slot++) {
+				isbns[slot] = books[slot].getISBN();
+			}
+
+			Arrays.sort(isbns);
+			sortedISBNs = isbns;
+		}
+
+		return sortedISBNs;
+	}
+
+	/**
+	 * Gets the ISBN of the book in the slot.
+	 *
+	 * @param slot
+	 *            the slot
+	 * @return the ISBN
+	 */
+	public int getISBN(int slot) {
+		return books[slot].getISBN();
+	}
+
+	/**
+	 * Gets the number of copies of the book in the slot.
+	 *
+	 * @param slot
+	 *            the slot
+	 * @return the number of copies
+	 */
+	public int getNumCopies(int slot) {
+		return numCopies[slot];
+	}
+
+	/**
+	 * Gets the number of sale misses of the book in the slot.
+	 *
+	 * @param slot
+	 *            the slot
+	 * @return the number of sale misses
+	 */
+	public long getNumSaleMisses(int slot) {
+		return numSaleMisses[slot];
+	}
+
+	/**
+	 * Gets the average rating of the book in the slot.
+	 *
+	 * @param slot
+	 *            the slot
+	 * @return the average rating, or -1 if the book was never rated
+	 */
+	public float getAverageRating(int slot) {
+		return (numTimesRated[slot] == 0 ? -1.0f : (float) totalRatings[slot] / numTimesRated[slot]);
+	}
+
+	/**
+	 * Checks if the book in the slot is editor picked.
+	 *
+	 * @param slot
+	 *            the slot
+	 * @return true, if it is editor picked
+	 */
+	public boolean isEditorPick(int slot) {
+		return editorPicks[slot];
+	}
+
+	/**
+	 * Checks if someone tried to buy the book in the slot while it was not in
+	 * stock.
+	 *
+	 * @param slot
+	 *            the slot
+	 * @return true, if the book had sale misses
+	 */
+	public boolean hadSaleMiss(int slot) {
+		return numSaleMisses[slot] > 0;
+	}
+
+	/**
+	 * Checks if at least <code>numCopies</code> of the book in the slot are
+	 * available.
+	 *
+	 * @param slot
+	 *            the slot
+	 * @param numCopiesToBuy
+	 *            the number of copies
+	 * @return true, if successful
+	 */
+	public boolean areCopiesInStore(int slot, int numCopiesToBuy) {
+		return numCopies[slot] >= numCopiesToBuy;
+	}
+
+	/**
+	 * Sets whether the book in the slot is an editor pick.
+	 *
+	 * @param slot
+	 *            the slot
+	 * @param editorPick
+	 *            the new editor pick
+	 */
+	public void setEditorPick(int slot, boolean editorPick) {
+		if (editorPicks[slot] == editorPick) {
+			return;
+		}
+
+		if (editorPick) {
+			editorPickPositions[slot] = numEditorPicks;
+			editorPickSlots[numEditorPicks++] = slot;
+		} else {
+			removeEditorPick(slot);
+		}
+
+		editorPicks[slot] = editorPick;
+	}
+
+	/**
+	 * Removes the book in the slot from the editor pick list, moving the last
+	 * editor pick into its position.
+	 */
+	private void removeEditorPick(int slot) {
+		int position = editorPickPositions[slot];
+		int lastSlot = editorPickSlots[--numEditorPicks];
+		editorPickSlots[position] = lastSlot;
+		editorPickPositions[lastSlot] = position;
+	}
+
+	/**
+	 * Gets the number of editor picks.
+	 *
+	 * @return the number of editor picks
+	 */
+	public int getNumEditorPicks() {
+		return numEditorPicks;
+	}
+
+	/**
+	 * Draws editor picks uniformly at random, without replacement. Every
+	 * subset of <code>numBooks</code> editor picks is equally likely. The
+	 * draw is a partial Fisher-Yates shuffle of the editor pick list, so it
+	 * takes one random number per drawn book and never retries.
+	 *
+	 * @param numBooks
+	 *            the number of editor picks to draw
+	 * @param random
+	 *            the source of randomness
+	 * @return the slots of the drawn editor picks, all of them if there are
+	 *         at most <code>numBooks</code>
+	 */
+	public int[] sampleEditorPicks(int numBooks, Random random) {
+		int numDrawn = Math.min(numBooks, numEditorPicks);
+
+		for (int i = 0; i < numDrawn; i++) {
+			int j = i + random.nextInt(numEditorPicks - i);
+			int drawnSlot = editorPickSlots[j];
+			editorPickSlots[j] = editorPickSlots[i];
+			editorPickPositions[editorPickSlots[j]] = j;
+			editorPickSlots[i] = drawnSlot;
+			editorPickPositions[drawnSlot] = i;
+		}
+
+		return Arrays.copyOf(editorPickSlots, numDrawn);
+	}
+
+	/**
+	 * Reduces the number of copies of the book in the slot.
+	 *
+	 * @param slot
+	 *            the slot
+	 * @param numCopiesToBuy
+	 *            the number of copies
+	 * @return true, if successful
+	 */
+	public boolean buyCopies(int slot, int numCopiesToBuy) {
+		if (!BookStoreUtility.isInvalidNoCopies(numCopiesToBuy) && areCopiesInStore(slot, numCopiesToBuy)) {
+			numCopies[slot] -= numCopiesToBuy;
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Adds copies of the book in the slot, which clears its sale misses.
+	 *
+	 * @param slot
+	 *            the slot
+	 * @param numNewCopies
+	 *            the number of new copies
+	 */
+	public void addCopies(int slot, int numNewCopies) {
+		if (!BookStoreUtility.isInvalidNoCopies(numNewCopies)) {
+			numCopies[slot] += numNewCopies;
+			numSaleMisses[slot] = 0;
+		}
+	}
+
+	/**
+	 * Increments the amount of missed sales of the book in the slot.
+	 *
+	 * @param slot
+	 *            the slot
+	 * @param numMisses
+	 *            the number of sales misses encountered
+	 */
+	public void addSaleMiss(int slot, int numMisses) {
+		numSaleMisses[slot] += numMisses;
+	}
+
+	/**
+	 * Adds the rating to the total rating of the book in the slot.
+	 *
+	 * @param slot
+	 *            the slot
+	 * @param rating
+	 *            the rating
+	 */
+	public void addRating(int slot, int rating) {
+		if (!BookStoreUtility.isInvalidRating(rating)) {
+			totalRatings[slot] += rating;
+			numTimesRated[slot]++;
+		}
+	}
+
+	/**
+	 * Returns the book in the slot as a {@link Book}. The immutable part of
+	 * the book is shared, not copied.
+	 *
+	 * @param slot
+	 *            the slot
+	 * @return the book
+	 */
+	public Book immutableBook(int slot) {
+		return books[slot];
+	}
+
+	/**
+	 * Returns a {@link StockBook} copy of the book in the slot.
+	 *
+	 * @param slot
+	 *            the slot
+	 * @return the stock book
+	 */
+	public StockBook immutableStockBook(int slot) {
+		ImmutableBook book = books[slot];
+		return new ImmutableStockBook(book.getISBN(), book.getTitle(), book.getAuthor(), book.getPrice(),
+				numCopies[slot], numSaleMisses[slot], numTimesRated[slot], totalRatings[slot], editorPicks[slot]);
+	}
+}
@@ -0,0 +1,68 @@
+package com.acertainbookstore.business;
+
+import java.util.List;
+
+/**
+ * {@link BookPage} is one page of books in ascending ISBN order, together with
+ * the cursor from which the next page starts. The cursor is the ISBN of the
+ * last book of the page, so pages stay consistent when books are added or
+ * removed between two requests.
+ *
+ * @param <T>
+ *            the type of the books
+ */
+public class BookPage<T extends Book> {
+
+	/** The cursor from which the first page starts. */
+	public static final int FIRST = 0;
+
+	/** The next cursor of the last page. */
+	public static final int END = -1;
+
+	/** The books of the page. */
+	private final List<T> books;
+
+	/** The cursor from which the next page starts, or END. */
+	private final int nextCursor;
+
+	/**
+	 * Instantiates a new {@link BookPage}.
+	 *
+	 * @param books
+	 *            the books of the page
+	 * @param nextCursor
+	 *            the cursor from which the next page starts, or
+	 *            {@link #END} if this is the last page
+	 */
+	public BookPage(List<T> books, int nextCursor) {
+		this.books = books;
+		this.nextCursor = nextCursor;
+	}
+
+	/**
+	 * Gets the books of the page.
+	 *
+	 * @return the books
+	 */
+	public List<T> getBooks() {
+		return books;
+	}
+
+	/**
+	 * Gets the cursor from which the next page starts.
+	 *
+	 * @return the next cursor, or {@link #END} if this is the last page
+	 */
+	public int getNextCursor() {
+		return nextCursor;
+	}
+
+	/**
+	 * Checks if there is a page after this one.
+	 *
+	 * @return true, if there is a next page
+	 */
+	public boolean hasNextPage() {
+		return nextCursor != END;
+	}
+}
@@ -20,8 +20,26 @@ import com.acertainbookstore.utils.BookStoreUtility;
  */
 public class CertainBookStore implements BookStore, StockManager {
 
-	/** The mapping of books from ISBN to {@link BookStoreBook}. */
-	private Map<Integer, BookStoreBook> bookMap = null;
+	/** The books, stored column by column. */
+	private BookColumnStore bookStore = null;
+
+	/** The books ordered by average rating. */
+	private TopRatedIndex topRatedIndex = null;
+
+	/** The books with sale misses ordered by number of sale misses. */
+	private InDemandIndex inDemandIndex = null;
+
+	/** The books by author. */
+	private TextIndex authorIndex = null;
+
+	/** The books by title. */
+	private TextIndex titleIndex = null;
+
+	/** The books by price. */
+	private PriceIndex priceIndex = null;
+
+	/** The source of randomness for drawing editor picks. */
+	private final Random random = new Random();
 
 	/**
 	 * Instantiates a new {@link CertainBookStore}.
@@ -29,7 +47,12 @@ public class CertainBookStore implements BookStore, StockManager {
 	public CertainBookStore() {
 
 		// Constructors are not synchronized
-		bookMap = new HashMap<>();
+		bookStore = new BookColumnStore();
+		topRatedIndex = new TopRatedIndex();
+		inDemandIndex = new InDemandIndex();
+		authorIndex = new TextIndex();
+		titleIndex = new TextIndex();
+		priceIndex = new PriceIndex();
 	}
 
 	private synchronized void validate(StockBook book) throws BookStoreException {
@@ -59,7 +82,7 @@ public class CertainBookStore implements BookStore, StockManager {
 			throw new BookStoreException(BookStoreConstants.BOOK + book.toString() + BookStoreConstants.INVALID);
 		}
 
-		if (bookMap.containsKey(isbn)) {// Check if the book is not in stock
+		if (bookStore.contains(isbn)) {// Check if the book is not in stock
 			throw new BookStoreException(BookStoreConstants.ISBN + isbn + BookStoreConstants.DUPLICATED);
 		}
 	}
@@ -95,7 +118,7 @@ public class CertainBookStore implements BookStore, StockManager {
 		if (BookStoreUtility.isInvalidISBN(ISBN)) { // Check if the book has valid ISBN
 			throw new BookStoreException(BookStoreConstants.ISBN + ISBN + BookStoreConstants.INVALID);
 		}
-		if (!bookMap.containsKey(ISBN)) {// Check if the book is in stock
+		if (!bookStore.contains(ISBN)) {// Check if the book is in stock
 			throw new BookStoreException(BookStoreConstants.ISBN + ISBN + BookStoreConstants.NOT_AVAILABLE);
 		}
 	}
@@ -117,8 +140,12 @@ public class CertainBookStore implements BookStore, StockManager {
 
 		// Then add these books to the store.
 		for (StockBook book : bookSet) {
-			int isbn = book.getISBN();
-			bookMap.put(isbn, new BookStoreBook(book));
+			int slot = bookStore.add(book);
+			topRatedIndex.put(book.getISBN(), bookStore.getAverageRating(slot));
+			inDemandIndex.put(book.getISBN(), bookStore.getNumSaleMisses(slot));
+			authorIndex.add(book.getAuthor(), book.getISBN());
+			titleIndex.add(book.getTitle(), book.getISBN());
+			priceIndex.add(book.getPrice(), book.getISBN());
 		}
 
 	}
@@ -141,14 +168,14 @@ public class CertainBookStore implements BookStore, StockManager {
 			validate(bookCopy);
 		}
 
-		BookStoreBook book;
-
 		// Then update the number of copies.
 		for (BookCopy bookCopy : bookCopiesSet) {
 			isbn = bookCopy.getISBN();
 			numCopies = bookCopy.getNumCopies();
-			book = bookMap.get(isbn);
-			book.addCopies(numCopies);
+			bookStore.addCopies(bookStore.getSlot(isbn), numCopies);
+
+			// The new copies clear the sale misses.
+			inDemandIndex.remove(isbn);
 		}
 
 	}
@@ -159,9 +186,69 @@ public class CertainBookStore implements BookStore, StockManager {
 	 * @see com.acertainbookstore.interfaces.StockManager#getBooks()
 	 */
 	public synchronized List<StockBook> getBooks() {
-		Collection<BookStoreBook> bookMapValues = bookMap.values();
+		List<StockBook> books = new ArrayList<>(bookStore.size());
+
+		for (int slot = 0; slot < bookStore.size(); slot++) {
+			books.add(bookStore.immutableStockBook(slot));
+		}
 
-		return bookMapValues.stream().map(book -> book.immutableStockBook()).collect(Collectors.toList());
+		return books;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.StockManager#getBooksPage(int, int)
+	 */
+	public synchronized BookPage<StockBook> getBooksPage(int cursor, int pageSize) throws BookStoreException {
+		return getPage(bookStore.getSortedISBNs(), cursor, pageSize);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.StockManager#getBooksInDemandPage(int, int)
+	 */
+	public synchronized BookPage<StockBook> getBooksInDemandPage(int cursor, int pageSize) throws BookStoreException {
+		return getPage(inDemandIndex.getISBNs(), cursor, pageSize);
+	}
+
+	/**
+	 * Gets the page of the books with the ISBNs which follows the cursor.
+	 *
+	 * @param isbns
+	 *            the ISBNs of the books to page through, in ascending order
+	 * @param cursor
+	 *            the ISBN after which the page starts
+	 * @param pageSize
+	 *            the maximum number of books of the page
+	 * @return the page
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	private BookPage<StockBook> getPage(int[] isbns, int cursor, int pageSize)
+			throws BookStoreException {
+		if (cursor < BookPage.FIRST) {
+			throw new BookStoreException(BookStoreConstants.CURSOR_PARAM + " = " + cursor + BookStoreConstants.INVALID);
+		}
+
+		if (pageSize < 1 || pageSize > BookStoreConstants.MAX_PAGE_SIZE) {
+			throw new BookStoreException("pageSize = " + pageSize + ", but it must be between 1 and "
+					+ BookStoreConstants.MAX_PAGE_SIZE);
+		}
+
+		// The page starts at the first ISBN after the cursor
+		int position = Arrays.binarySearch(isbns, cursor);
+		int start = position >= 0 ? position + 1 : -position - 1;
+		int end = Math.min(start + pageSize, isbns.length);
+		List<StockBook> books = new ArrayList<>(end - start);
+
+		for (int i = start; i < end; i++) {
+			books.add(bookStore.immutableStockBook(bookStore.getSlot(isbns[i])));
+		}
+
+		int nextCursor = end < isbns.length ? isbns[end - 1] : BookPage.END;
+		return new BookPage<>(books, nextCursor);
 	}
 
 	/*
@@ -184,7 +271,7 @@ public class CertainBookStore implements BookStore, StockManager {
 
 		// Then set the editor pick.
 		for (BookEditorPick editorPickArg : editorPicks) {
-			bookMap.get(editorPickArg.getISBN()).setEditorPick(editorPickArg.isEditorPick());
+			bookStore.setEditorPick(bookStore.getSlot(editorPickArg.getISBN()), editorPickArg.isEditorPick());
 		}
 	}
 
@@ -199,7 +286,7 @@ public class CertainBookStore implements BookStore, StockManager {
 		}
 
 		int isbn;
-		BookStoreBook book;
+		int slot;
 		Boolean saleMiss = false;
 
 		Map<Integer, Integer> salesMisses = new HashMap<>();
@@ -209,11 +296,11 @@ public class CertainBookStore implements BookStore, StockManager {
 			validate(bookCopyToBuy);
 			isbn = bookCopyToBuy.getISBN();
 
-			book = bookMap.get(isbn);
+			slot = bookStore.getSlot(isbn);
 			// Check whether the number of book copy is enough for the request.
-			if (!book.areCopiesInStore(bookCopyToBuy.getNumCopies())) {
+			if (!bookStore.areCopiesInStore(slot, bookCopyToBuy.getNumCopies())) {
 				// If we cannot sell the copies of the book, it is a miss.
-				salesMisses.put(isbn, bookCopyToBuy.getNumCopies() - book.getNumCopies());
+				salesMisses.put(isbn, bookCopyToBuy.getNumCopies() - bookStore.getNumCopies(slot));
 				saleMiss = true;
 			}
 		}
@@ -222,16 +309,17 @@ public class CertainBookStore implements BookStore, StockManager {
 		// order incurred misses which is used by books in demand.
 		if (saleMiss) {
 			for (Map.Entry<Integer, Integer> saleMissEntry : salesMisses.entrySet()) {
-				book = bookMap.get(saleMissEntry.getKey());
-				book.addSaleMiss(saleMissEntry.getValue());
+				slot = bookStore.getSlot(saleMissEntry.getKey());
+				bookStore.addSaleMiss(slot, saleMissEntry.getValue());
+				inDemandIndex.put(saleMissEntry.getKey(), bookStore.getNumSaleMisses(slot));
 			}
 			throw new BookStoreException(BookStoreConstants.BOOK + BookStoreConstants.NOT_AVAILABLE);
 		}
 
 		// Then make the purchase.
 		for (BookCopy bookCopyToBuy : bookCopiesToBuy) {
-			book = bookMap.get(bookCopyToBuy.getISBN());
-			book.buyCopies(bookCopyToBuy.getNumCopies());
+			slot = bookStore.getSlot(bookCopyToBuy.getISBN());
+			bookStore.buyCopies(slot, bookCopyToBuy.getNumCopies());
 		}
 	}
 
@@ -251,7 +339,7 @@ public class CertainBookStore implements BookStore, StockManager {
 		}
 
 		// Return the set of books matching isbns in the validated set.
-		return isbnSet.stream().map(isbn -> bookMap.get(isbn).immutableStockBook()).collect(Collectors.toList());
+		return isbnSet.stream().map(isbn -> bookStore.immutableStockBook(bookStore.getSlot(isbn))).collect(Collectors.toList());
 	}
 
 	/*
@@ -269,47 +357,125 @@ public class CertainBookStore implements BookStore, StockManager {
 			validateISBNInStock(ISBN);
 		}
 
-		return isbnSet.stream().map(isbn -> bookMap.get(isbn).immutableBook()).collect(Collectors.toList());
+		return isbnSet.stream().map(isbn -> bookStore.immutableBook(bookStore.getSlot(isbn))).collect(Collectors.toList());
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see com.acertainbookstore.interfaces.BookStore#getEditorPicks(int)
+	 * @see com.acertainbookstore.interfaces.BookStore#getBooksByAuthor(java.lang.String)
 	 */
-	public synchronized List<Book> getEditorPicks(int numBooks) throws BookStoreException {
+	public synchronized List<Book> getBooksByAuthor(String author) throws BookStoreException {
+		if (author == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		return immutableBooks(authorIndex.getISBNs(author));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.BookStore#getBooksByAuthorPrefix(java.lang.String, int)
+	 */
+	public synchronized List<Book> getBooksByAuthorPrefix(String prefix, int numBooks) throws BookStoreException {
+		validatePrefixSearch(prefix, numBooks);
+		return immutableBooks(authorIndex.getISBNsByPrefix(prefix, numBooks));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.BookStore#getBooksByTitle(java.lang.String)
+	 */
+	public synchronized List<Book> getBooksByTitle(String title) throws BookStoreException {
+		if (title == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		return immutableBooks(titleIndex.getISBNs(title));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.BookStore#getBooksByTitlePrefix(java.lang.String, int)
+	 */
+	public synchronized List<Book> getBooksByTitlePrefix(String prefix, int numBooks) throws BookStoreException {
+		validatePrefixSearch(prefix, numBooks);
+		return immutableBooks(titleIndex.getISBNsByPrefix(prefix, numBooks));
+	}
+
+	/**
+	 * Checks the arguments of a search by prefix. An empty prefix is rejected,
+	 * since it would match the whole catalog.
+	 *
+	 * @param prefix
+	 *            the prefix
+	 * @param numBooks
+	 *            the maximum number of books
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	private static void validatePrefixSearch(String prefix, int numBooks) throws BookStoreException {
+		if (prefix == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		if (prefix.isEmpty()) {
+			throw new BookStoreException("prefix is empty, but it must not be");
+		}
+
 		if (numBooks < 0) {
 			throw new BookStoreException("numBooks = " + numBooks + ", but it must be positive");
 		}
+	}
 
-		// Get all books that are editor picks.
-		List<BookStoreBook> listAllEditorPicks = bookMap.entrySet().stream().map(pair -> pair.getValue())
-				.filter(book -> book.isEditorPick()).collect(Collectors.toList());
-
-		// Find numBooks random indices of books that will be picked.
-		Random rand = new Random();
-		Set<Integer> tobePicked = new HashSet<>();
-		int rangePicks = listAllEditorPicks.size();
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.BookStore#getBooksByPriceRange(float, float, int)
+	 */
+	public synchronized List<Book> getBooksByPriceRange(float minPrice, float maxPrice, int numBooks)
+			throws BookStoreException {
+		if (Float.isNaN(minPrice) || Float.isNaN(maxPrice) || minPrice > maxPrice) {
+			throw new BookStoreException(
+					"minPrice = " + minPrice + ", maxPrice = " + maxPrice + ", but they must form a price range");
+		}
 
-		if (rangePicks <= numBooks) {
+		if (numBooks < 0) {
+			throw new BookStoreException("numBooks = " + numBooks + ", but it must be positive");
+		}
 
-			// We need to add all books.
-			for (int i = 0; i < listAllEditorPicks.size(); i++) {
-				tobePicked.add(i);
-			}
-		} else {
+		return immutableBooks(priceIndex.getISBNs(minPrice, maxPrice, numBooks));
+	}
 
-			// We need to pick randomly the books that need to be returned.
-			int randNum;
+	/**
+	 * Gets the books in stock with the ISBNs.
+	 *
+	 * @param isbns
+	 *            the ISBNs
+	 * @return the books, in the order of the ISBNs
+	 */
+	private List<Book> immutableBooks(List<Integer> isbns) {
+		return isbns.stream().map(isbn -> bookStore.immutableBook(bookStore.getSlot(isbn)))
+				.collect(Collectors.toList());
+	}
 
-			while (tobePicked.size() < numBooks) {
-				randNum = rand.nextInt(rangePicks);
-				tobePicked.add(randNum);
-			}
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.BookStore#getEditorPicks(int)
+	 */
+	public synchronized List<Book> getEditorPicks(int numBooks) throws BookStoreException {
+		if (numBooks < 0) {
+			throw new BookStoreException("numBooks = " + numBooks + ", but it must be positive");
 		}
 
-		// Return all the books by the randomly chosen indices.
-		return tobePicked.stream().map(index -> listAllEditorPicks.get(index).immutableBook())
+		// Draw the slots of numBooks random editor picks.
+		int[] pickedSlots = bookStore.sampleEditorPicks(numBooks, random);
+
+		return Arrays.stream(pickedSlots).mapToObj(bookStore::immutableBook)
 				.collect(Collectors.toList());
 	}
 
@@ -323,10 +489,8 @@ public class CertainBookStore implements BookStore, StockManager {
 		if (numBooks < 0) {
 			throw new BookStoreException("numBooks = " + numBooks + ", but it must be positive");
 		}
-		return bookMap.values().stream()
-				.sorted(Comparator.comparing(BookStoreBook::getAverageRating).reversed())
-				.limit(numBooks)
-				.map(BookStoreBook::immutableBook)
+		return topRatedIndex.getTopISBNs(numBooks).stream()
+				.map(isbn -> bookStore.immutableBook(bookStore.getSlot(isbn)))
 				.collect(Collectors.toList());
 	}
 
@@ -337,9 +501,22 @@ public class CertainBookStore implements BookStore, StockManager {
 	 */
 	@Override
 	public synchronized List<StockBook> getBooksInDemand() throws BookStoreException {
-		return bookMap.values().stream()
-				.filter(BookStoreBook::hadSaleMiss)
-				.map(BookStoreBook::immutableStockBook)
+		return getBooksInDemand(inDemandIndex.size());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.StockManager#getBooksInDemand(int)
+	 */
+	@Override
+	public synchronized List<StockBook> getBooksInDemand(int numBooks) throws BookStoreException {
+		if (numBooks < 0) {
+			throw new BookStoreException("numBooks = " + numBooks + ", but it must be positive");
+		}
+
+		return inDemandIndex.getTopISBNs(numBooks).stream()
+				.map(isbn -> bookStore.immutableStockBook(bookStore.getSlot(isbn)))
 				.collect(Collectors.toList());
 	}
 
@@ -363,7 +540,9 @@ public class CertainBookStore implements BookStore, StockManager {
 		for (BookRating bookToRate : bookRating) {
 			int isbn = bookToRate.getISBN();
 			int rating = bookToRate.getRating();
-			bookMap.get(isbn).addRating(rating);
+			int slot = bookStore.getSlot(isbn);
+			bookStore.addRating(slot, rating);
+			topRatedIndex.put(isbn, bookStore.getAverageRating(slot));
 		}
 	}
 
@@ -373,7 +552,12 @@ public class CertainBookStore implements BookStore, StockManager {
 	 * @see com.acertainbookstore.interfaces.StockManager#removeAllBooks()
 	 */
 	public synchronized void removeAllBooks() throws BookStoreException {
-		bookMap.clear();
+		bookStore.clear();
+		topRatedIndex.clear();
+		inDemandIndex.clear();
+		authorIndex.clear();
+		titleIndex.clear();
+		priceIndex.clear();
 	}
 
 	/*
@@ -391,13 +575,19 @@ public class CertainBookStore implements BookStore, StockManager {
 				throw new BookStoreException(BookStoreConstants.ISBN + ISBN + BookStoreConstants.INVALID);
 			}
 
-			if (!bookMap.containsKey(ISBN)) {
+			if (!bookStore.contains(ISBN)) {
 				throw new BookStoreException(BookStoreConstants.ISBN + ISBN + BookStoreConstants.NOT_AVAILABLE);
 			}
 		}
 
 		for (int isbn : isbnSet) {
-			bookMap.remove(isbn);
+			Book book = bookStore.immutableBook(bookStore.getSlot(isbn));
+			authorIndex.remove(book.getAuthor(), isbn);
+			titleIndex.remove(book.getTitle(), isbn);
+			priceIndex.remove(book.getPrice(), isbn);
+			bookStore.remove(isbn);
+			topRatedIndex.remove(isbn);
+			inDemandIndex.remove(isbn);
 		}
 	}
 }
@@ -0,0 +1,163 @@
+package com.acertainbookstore.business;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+import com.acertainbookstore.utils.IntHashMap;
+
+/**
+ * {@link InDemandIndex} keeps the books with outstanding sale misses, ordered
+ * by number of sale misses, highest first, ties broken by ascending ISBN. It
+ * is updated whenever a sale is missed or copies are added, so the books in
+ * demand are read off the index instead of scanning the whole catalog. The
+ * entries are also kept by ISBN, and their ISBNs are sorted on demand, so the
+ * books in demand can be paged through in ISBN order. The index is not
+ * thread-safe.
+ *
+ * @see BookColumnStore#hadSaleMiss(int)
+ */
+public class InDemandIndex {
+
+	/** The books in demand, in rank order. */
+	private final TreeSet<Entry> ranking = new TreeSet<>();
+
+	/** The entry of each book in demand, by ISBN. */
+	private final IntHashMap<Entry> entries = new IntHashMap<>();
+
+	/** The ISBNs in ascending order, or null until sorted again after a change. */
+	private int[] sortedISBNs = null;
+
+	/**
+	 * {@link Entry} is a book in the ranking.
+	 */
+	private static final class Entry implements Comparable<Entry> {
+
+		/** The ISBN. */
+		private final int isbn;
+
+		/** The number of sale misses. */
+		private final long numSaleMisses;
+
+		private Entry(int isbn, long numSaleMisses) {
+			this.isbn = isbn;
+			this.numSaleMisses = numSaleMisses;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			int byMisses = Long.compare(other.numSaleMisses, numSaleMisses);
+			return byMisses != 0 ? byMisses : Integer.compare(isbn, other.isbn);
+		}
+	}
+
+	/**
+	 * Sets the number of sale misses of the book. A book without sale misses
+	 * is not in demand, and is removed from the index.
+	 *
+	 * @param isbn
+	 *            the ISBN
+	 * @param numSaleMisses
+	 *            the number of sale misses
+	 */
+	public void put(int isbn, long numSaleMisses) {
+		if (numSaleMisses <= 0) {
+			remove(isbn);
+			return;
+		}
+
+		Entry previous = entries.get(isbn);
+
+		if (previous != null) {
+			if (previous.numSaleMisses == numSaleMisses) {
+				return;
+			}
+
+			ranking.remove(previous);
+		}
+
+		Entry entry = new Entry(isbn, numSaleMisses);
+
+		if (entries.put(isbn, entry) == null) {
+			sortedISBNs = null;
+		}
+
+		ranking.add(entry);
+	}
+
+	/**
+	 * Removes the book from the index.
+	 *
+	 * @param isbn
+	 *            the ISBN
+	 */
+	public void remove(int isbn) {
+		Entry previous = entries.remove(isbn);
+
+		if (previous != null) {
+			ranking.remove(previous);
+			sortedISBNs = null;
+		}
+	}
+
+	/**
+	 * Removes all books from the index.
+	 */
+	public void clear() {
+		ranking.clear();
+		entries.clear();
+		sortedISBNs = null;
+	}
+
+	/**
+	 * Gets the number of books in demand.
+	 *
+	 * @return the number of books in demand
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Gets the ISBNs of the books in demand, in ascending order. They are
+	 * gathered and sorted on the first call after a book enters or leaves the
+	 * index.
+	 *
+	 * @return the ISBNs, which must not be modified
+	 */
+	public int[] getISBNs() {
+		if (sortedISBNs == null) {
+			int[] isbns = new int[entries.size()];
+			int i = 0;
+
+			for (Entry entry : entries.values()) {
+				isbns[i++] = entry.isbn;
+			}
+
+			Arrays.sort(isbns);
+			sortedISBNs = isbns;
+		}
+
+		return sortedISBNs;
+	}
+
+	/**
+	 * Gets the ISBNs of the books with the most sale misses.
+	 *
+	 * @param numBooks
+	 *            the maximum number of books
+	 * @return the ISBNs, most sale misses first
+	 */
+	public List<Integer> getTopISBNs(int numBooks) {
+		List<Integer> isbns = new ArrayList<>(Math.min(numBooks, entries.size()));
+		Iterator<Entry> iterator = ranking.iterator();
+
+		while (isbns.size() < numBooks && iterator.hasNext()) {
+			isbns.add(iterator.next().isbn);
+		}
+
+		return isbns;
+	}
+}
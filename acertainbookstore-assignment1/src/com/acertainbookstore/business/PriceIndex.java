@@ -0,0 +1,102 @@
+package com.acertainbookstore.business;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * {@link PriceIndex} keeps the books ordered by price, cheapest first, ties
+ * broken by ascending ISBN. The books in a price range are a contiguous range
+ * of the index, so a range query costs O(log n) to find the cheapest book in
+ * the range plus the number of books returned. The price of a book never
+ * changes, so the index is only updated when books are added or removed. The
+ * index is not thread-safe.
+ *
+ * @see Book#getPrice()
+ */
+public class PriceIndex {
+
+	/** The books, in price order. */
+	private final TreeSet<Entry> entries = new TreeSet<>();
+
+	/**
+	 * {@link Entry} is a book in the index.
+	 */
+	private static final class Entry implements Comparable<Entry> {
+
+		/** The price. */
+		private final float price;
+
+		/** The ISBN. */
+		private final int isbn;
+
+		private Entry(float price, int isbn) {
+
+			// Float.compare orders -0.0f below 0.0f, so both are stored as 0.0f
+			this.price = price + 0.0f;
+			this.isbn = isbn;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			int byPrice = Float.compare(price, other.price);
+			return byPrice != 0 ? byPrice : Integer.compare(isbn, other.isbn);
+		}
+	}
+
+	/**
+	 * Adds the book to the index.
+	 *
+	 * @param price
+	 *            the price of the book
+	 * @param isbn
+	 *            the ISBN
+	 */
+	public void add(float price, int isbn) {
+		entries.add(new Entry(price, isbn));
+	}
+
+	/**
+	 * Removes the book from the index.
+	 *
+	 * @param price
+	 *            the price of the book
+	 * @param isbn
+	 *            the ISBN
+	 */
+	public void remove(float price, int isbn) {
+		entries.remove(new Entry(price, isbn));
+	}
+
+	/**
+	 * Removes all books from the index.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Gets the ISBNs of the cheapest books with a price in the range.
+	 *
+	 * @param minPrice
+	 *            the lowest price, inclusive
+	 * @param maxPrice
+	 *            the highest price, inclusive
+	 * @param numBooks
+	 *            the maximum number of books
+	 * @return the ISBNs, cheapest first
+	 */
+	public List<Integer> getISBNs(float minPrice, float maxPrice, int numBooks) {
+		List<Integer> isbns = new ArrayList<>();
+		Iterator<Entry> iterator = entries
+				.subSet(new Entry(minPrice, Integer.MIN_VALUE), true, new Entry(maxPrice, Integer.MAX_VALUE), true)
+				.iterator();
+
+		while (isbns.size() < numBooks && iterator.hasNext()) {
+			isbns.add(iterator.next().isbn);
+		}
+
+		return isbns;
+	}
+}
@@ -0,0 +1,115 @@
+package com.acertainbookstore.business;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * {@link TextIndex} maps a text attribute of the books, such as the author or
+ * the title, to their ISBNs. The (text, ISBN) pairs are kept in one sorted
+ * set, so the books with a given text, or with a text starting with a given
+ * prefix, are a contiguous range of the set: a lookup costs O(log n) to find
+ * the range plus the size of the answer. Texts are matched case-sensitively.
+ * The index is not thread-safe.
+ */
+public class TextIndex {
+
+	/** The (text, ISBN) pairs, by text and then by ISBN. */
+	private final TreeSet<Entry> entries = new TreeSet<>();
+
+	/**
+	 * {@link Entry} is a book in the index.
+	 */
+	private static final class Entry implements Comparable<Entry> {
+
+		/** The text. */
+		private final String text;
+
+		/** The ISBN. */
+		private final int isbn;
+
+		private Entry(String text, int isbn) {
+			this.text = text;
+			this.isbn = isbn;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			int byText = text.compareTo(other.text);
+			return byText != 0 ? byText : Integer.compare(isbn, other.isbn);
+		}
+	}
+
+	/**
+	 * Adds the book to the index.
+	 *
+	 * @param text
+	 *            the text of the book
+	 * @param isbn
+	 *            the ISBN
+	 */
+	public void add(String text, int isbn) {
+		entries.add(new Entry(text, isbn));
+	}
+
+	/**
+	 * Removes the book from the index.
+	 *
+	 * @param text
+	 *            the text of the book
+	 * @param isbn
+	 *            the ISBN
+	 */
+	public void remove(String text, int isbn) {
+		entries.remove(new Entry(text, isbn));
+	}
+
+	/**
+	 * Removes all books from the index.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Gets the ISBNs of the books with the text.
+	 *
+	 * @param text
+	 *            the text
+	 * @return the ISBNs, in ascending order
+	 */
+	public List<Integer> getISBNs(String text) {
+		List<Integer> isbns = new ArrayList<>();
+
+		for (Entry entry : entries.subSet(new Entry(text, Integer.MIN_VALUE), true,
+				new Entry(text, Integer.MAX_VALUE), true)) {
+			isbns.add(entry.isbn);
+		}
+
+		return isbns;
+	}
+
+	/**
+	 * Gets the ISBNs of the first books with a text starting with the prefix.
+	 *
+	 * @param prefix
+	 *            the prefix
+	 * @param numBooks
+	 *            the maximum number of books
+	 * @return the ISBNs, ordered by text and then by ISBN
+	 */
+	public List<Integer> getISBNsByPrefix(String prefix, int numBooks) {
+		List<Integer> isbns = new ArrayList<>();
+
+		// The texts with the prefix sort right after the prefix itself
+		for (Entry entry : entries.tailSet(new Entry(prefix, Integer.MIN_VALUE), true)) {
+			if (isbns.size() >= numBooks || !entry.text.startsWith(prefix)) {
+				break;
+			}
+
+			isbns.add(entry.isbn);
+		}
+
+		return isbns;
+	}
+}
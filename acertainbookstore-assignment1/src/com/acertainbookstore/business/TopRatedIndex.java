@@ -0,0 +1,114 @@
+package com.acertainbookstore.business;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+import com.acertainbookstore.utils.IntHashMap;
+
+/**
+ * {@link TopRatedIndex} keeps the books ordered by average rating, highest
+ * first, ties broken by ascending ISBN. It is updated book by book whenever a
+ * rating changes, so the top books are read off its head instead of sorting
+ * the whole catalog. Books never rated rank last, with an average rating of
+ * -1. The index is not thread-safe.
+ *
+ * @see BookColumnStore#getAverageRating(int)
+ */
+public class TopRatedIndex {
+
+	/** The books, in rank order. */
+	private final TreeSet<Entry> ranking = new TreeSet<>();
+
+	/** The entry of each book, by ISBN. */
+	private final IntHashMap<Entry> entries = new IntHashMap<>();
+
+	/**
+	 * {@link Entry} is a book in the ranking.
+	 */
+	private static final class Entry implements Comparable<Entry> {
+
+		/** The ISBN. */
+		private final int isbn;
+
+		/** The average rating. */
+		private final float averageRating;
+
+		private Entry(int isbn, float averageRating) {
+			this.isbn = isbn;
+			this.averageRating = averageRating;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			int byRating = Float.compare(other.averageRating, averageRating);
+			return byRating != 0 ? byRating : Integer.compare(isbn, other.isbn);
+		}
+	}
+
+	/**
+	 * Adds the book to the index, or moves it to the rank of its new average
+	 * rating.
+	 *
+	 * @param isbn
+	 *            the ISBN
+	 * @param averageRating
+	 *            the average rating
+	 */
+	public void put(int isbn, float averageRating) {
+		Entry previous = entries.get(isbn);
+
+		if (previous != null) {
+			if (previous.averageRating == averageRating) {
+				return;
+			}
+
+			ranking.remove(previous);
+		}
+
+		Entry entry = new Entry(isbn, averageRating);
+		entries.put(isbn, entry);
+		ranking.add(entry);
+	}
+
+	/**
+	 * Removes the book from the index.
+	 *
+	 * @param isbn
+	 *            the ISBN
+	 */
+	public void remove(int isbn) {
+		Entry previous = entries.remove(isbn);
+
+		if (previous != null) {
+			ranking.remove(previous);
+		}
+	}
+
+	/**
+	 * Removes all books from the index.
+	 */
+	public void clear() {
+		ranking.clear();
+		entries.clear();
+	}
+
+	/**
+	 * Gets the ISBNs of the highest rated books.
+	 *
+	 * @param numBooks
+	 *            the maximum number of books
+	 * @return the ISBNs, highest rated first
+	 */
+	public List<Integer> getTopISBNs(int numBooks) {
+		List<Integer> isbns = new ArrayList<>(Math.min(numBooks, entries.size()));
+		Iterator<Entry> iterator = ranking.iterator();
+
+		while (isbns.size() < numBooks && iterator.hasNext()) {
+			isbns.add(iterator.next().isbn);
+		}
+
+		return isbns;
+	}
+}
@@ -118,6 +118,98 @@ public class BookStoreHTTPProxy implements BookStore {
 		return (List<Book>) bookStoreResponse.getList();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.BookStore#getBooksByAuthor(java.lang.String)
+	 */
+	public List<Book> getBooksByAuthor(String author) throws BookStoreException {
+		return getBooksByText(BookStoreMessageTag.GETBOOKSBYAUTHOR, author, null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.BookStore#getBooksByAuthorPrefix(java.lang.String, int)
+	 */
+	public List<Book> getBooksByAuthorPrefix(String prefix, int numBooks) throws BookStoreException {
+		return getBooksByText(BookStoreMessageTag.GETBOOKSBYAUTHOR, prefix, numBooks);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.BookStore#getBooksByTitle(java.lang.String)
+	 */
+	public List<Book> getBooksByTitle(String title) throws BookStoreException {
+		return getBooksByText(BookStoreMessageTag.GETBOOKSBYTITLE, title, null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.BookStore#getBooksByTitlePrefix(java.lang.String, int)
+	 */
+	public List<Book> getBooksByTitlePrefix(String prefix, int numBooks) throws BookStoreException {
+		return getBooksByText(BookStoreMessageTag.GETBOOKSBYTITLE, prefix, numBooks);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.BookStore#getBooksByPriceRange(float, float, int)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Book> getBooksByPriceRange(float minPrice, float maxPrice, int numBooks) throws BookStoreException {
+		String urlEncodedMinPrice = URLEncoder.encode(Float.toString(minPrice), StandardCharsets.UTF_8);
+		String urlEncodedMaxPrice = URLEncoder.encode(Float.toString(maxPrice), StandardCharsets.UTF_8);
+		String urlEncodedNumBooks = URLEncoder.encode(Integer.toString(numBooks), StandardCharsets.UTF_8);
+		String urlString = serverAddress + "/" + BookStoreMessageTag.GETBOOKSBYPRICERANGE + "?"
+				+ BookStoreConstants.MIN_PRICE_PARAM + "=" + urlEncodedMinPrice + "&"
+				+ BookStoreConstants.MAX_PRICE_PARAM + "=" + urlEncodedMaxPrice + "&"
+				+ BookStoreConstants.BOOK_NUM_PARAM + "=" + urlEncodedNumBooks;
+		BookStoreRequest bookStoreRequest = BookStoreRequest.newGetRequest(urlString);
+		BookStoreResponse bookStoreResponse = BookStoreUtility.performHttpExchange(client, bookStoreRequest,
+				serializer.get());
+		return (List<Book>) bookStoreResponse.getList();
+	}
+
+	/**
+	 * Gets the books matching the text with a search message.
+	 *
+	 * @param messageTag
+	 *            the tag of the search message
+	 * @param text
+	 *            the text
+	 * @param numBooks
+	 *            the maximum number of books if the text is a prefix, or null
+	 *            if the text is matched exactly
+	 * @return the books
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Book> getBooksByText(BookStoreMessageTag messageTag, String text, Integer numBooks)
+			throws BookStoreException {
+		if (text == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		boolean prefix = numBooks != null;
+		String urlString = serverAddress + "/" + messageTag + "?" + BookStoreConstants.SEARCH_TEXT_PARAM + "="
+				+ URLEncoder.encode(text, StandardCharsets.UTF_8) + "&" + BookStoreConstants.SEARCH_PREFIX_PARAM
+				+ "=" + prefix;
+
+		if (prefix) {
+			urlString += "&" + BookStoreConstants.BOOK_NUM_PARAM + "=" + numBooks;
+		}
+
+		BookStoreRequest bookStoreRequest = BookStoreRequest.newGetRequest(urlString);
+		BookStoreResponse bookStoreResponse = BookStoreUtility.performHttpExchange(client, bookStoreRequest,
+				serializer.get());
+		return (List<Book>) bookStoreResponse.getList();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -1,5 +1,7 @@
 package com.acertainbookstore.client;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Set;
 
@@ -9,6 +11,7 @@ import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
 import com.acertainbookstore.business.BookCopy;
 import com.acertainbookstore.business.BookEditorPick;
+import com.acertainbookstore.business.BookPage;
 import com.acertainbookstore.business.StockBook;
 import com.acertainbookstore.utils.BookStoreKryoSerializer;
 import com.acertainbookstore.interfaces.BookStoreSerializer;
@@ -142,6 +145,52 @@ public class StockManagerHTTPProxy implements StockManager {
 		BookStoreUtility.performHttpExchange(client, bookStoreRequest, serializer.get());
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.StockManager#getBooksPage(int, int)
+	 */
+	@Override
+	public BookPage<StockBook> getBooksPage(int cursor, int pageSize) throws BookStoreException {
+		return getPage(BookStoreMessageTag.LISTBOOKSPAGE, cursor, pageSize);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.StockManager#getBooksInDemandPage(int, int)
+	 */
+	@Override
+	public BookPage<StockBook> getBooksInDemandPage(int cursor, int pageSize) throws BookStoreException {
+		return getPage(BookStoreMessageTag.GETBOOKSINDEMANDPAGE, cursor, pageSize);
+	}
+
+	/**
+	 * Gets a page of books with a paged message.
+	 *
+	 * @param messageTag
+	 *            the tag of the paged message
+	 * @param cursor
+	 *            the ISBN after which the page starts
+	 * @param pageSize
+	 *            the maximum number of books of the page
+	 * @return the page
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@SuppressWarnings("unchecked")
+	private BookPage<StockBook> getPage(BookStoreMessageTag messageTag, int cursor, int pageSize)
+			throws BookStoreException {
+		String urlEncodedCursor = URLEncoder.encode(Integer.toString(cursor), StandardCharsets.UTF_8);
+		String urlEncodedPageSize = URLEncoder.encode(Integer.toString(pageSize), StandardCharsets.UTF_8);
+		String urlString = serverAddress + "/" + messageTag + "?" + BookStoreConstants.CURSOR_PARAM + "="
+				+ urlEncodedCursor + "&" + BookStoreConstants.BOOK_NUM_PARAM + "=" + urlEncodedPageSize;
+		BookStoreRequest bookStoreRequest = BookStoreRequest.newGetRequest(urlString);
+		BookStoreResponse bookStoreResponse = BookStoreUtility.performHttpExchange(client, bookStoreRequest,
+				serializer.get());
+		return new BookPage<>((List<StockBook>) bookStoreResponse.getList(), bookStoreResponse.getNextCursor());
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -155,6 +204,22 @@ public class StockManagerHTTPProxy implements StockManager {
 		return (List<StockBook>) bookStoreResponse.getList();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.StockManager#getBooksInDemand(int)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<StockBook> getBooksInDemand(int numBooks) throws BookStoreException {
+		String urlEncodedNumBooks = URLEncoder.encode(Integer.toString(numBooks), StandardCharsets.UTF_8);
+		String urlString = serverAddress + "/" + BookStoreMessageTag.GETTOPBOOKSINDEMAND + "?"
+				+ BookStoreConstants.BOOK_NUM_PARAM + "=" + urlEncodedNumBooks;
+		BookStoreRequest bookStoreRequest = BookStoreRequest.newGetRequest(urlString);
+		BookStoreResponse bookStoreResponse = BookStoreUtility.performHttpExchange(client, bookStoreRequest, serializer.get());
+		return (List<StockBook>) bookStoreResponse.getList();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -0,0 +1,239 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.acertainbookstore.business.BookColumnStore;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.business.StockBook;
+
+/**
+ * {@link BookColumnStoreTest} tests the {@link BookColumnStore}.
+ *
+ * @see BookColumnStore
+ */
+public class BookColumnStoreTest {
+
+	/** The Constant TEST_ISBN. */
+	private static final int TEST_ISBN = 3044560;
+
+	/** The number of books added before every test case. */
+	private static final int NUM_BOOKS = 40;
+
+	/** The store. */
+	private BookColumnStore store;
+
+	/**
+	 * Gets the book added with the given index: its number of copies, ratings
+	 * and sale misses derive from the index, and every third book is an
+	 * editor pick.
+	 *
+	 * @param i
+	 *            the index
+	 * @return the book
+	 */
+	private static StockBook getBook(int i) {
+		return new ImmutableStockBook(TEST_ISBN + i, "Title " + i, "Author " + i, (float) i, i + 1, i, i + 2,
+				3 * (i + 2), i % 3 == 0);
+	}
+
+	/**
+	 * Adds the books, executed before every test case is run.
+	 */
+	@Before
+	public void addBooks() {
+		store = new BookColumnStore();
+
+		for (int i = 0; i < NUM_BOOKS; i++) {
+			assertEquals(i, store.add(getBook(i)));
+		}
+	}
+
+	/**
+	 * Tests that removing a book moves the book in the last slot into the
+	 * freed slot, keeping every field and the ISBN lookup of the moved book.
+	 */
+	@Test
+	public void testRemoveMovesLastBook() {
+		int removed = 5;
+		int last = NUM_BOOKS - 1;
+		int slot = store.getSlot(TEST_ISBN + removed);
+
+		store.remove(TEST_ISBN + removed);
+
+		assertEquals(NUM_BOOKS - 1, store.size());
+		assertFalse(store.contains(TEST_ISBN + removed));
+		assertEquals(-1, store.getSlot(TEST_ISBN + removed));
+		assertEquals(slot, store.getSlot(TEST_ISBN + last));
+		assertStockBook(getBook(last), store.immutableStockBook(slot));
+
+		// Removing the book in the last slot moves nothing
+		int lastSlot = store.size() - 1;
+		int lastISBN = store.getISBN(lastSlot);
+		store.remove(lastISBN);
+		assertEquals(NUM_BOOKS - 2, store.size());
+		assertFalse(store.contains(lastISBN));
+
+		// Removing a book twice has no effect
+		store.remove(TEST_ISBN + removed);
+		assertEquals(NUM_BOOKS - 2, store.size());
+	}
+
+	/**
+	 * Tests that the store stays consistent as all books are removed, in an
+	 * order other than the one they were added in.
+	 */
+	@Test
+	public void testRemoveAll() {
+		Set<Integer> remaining = new HashSet<>();
+
+		for (int i = 0; i < NUM_BOOKS; i++) {
+			remaining.add(i);
+		}
+
+		for (int step = 0; step < NUM_BOOKS; step++) {
+			int removed = (step * 7) % NUM_BOOKS;
+			store.remove(TEST_ISBN + removed);
+			remaining.remove(removed);
+
+			assertEquals(remaining.size(), store.size());
+			int numEditorPicks = 0;
+
+			for (int i : remaining) {
+				int slot = store.getSlot(TEST_ISBN + i);
+				assertTrue(slot >= 0 && slot < store.size());
+				assertStockBook(getBook(i), store.immutableStockBook(slot));
+
+				if (store.isEditorPick(slot)) {
+					numEditorPicks++;
+				}
+			}
+
+			assertEquals(numEditorPicks, store.getNumEditorPicks());
+		}
+	}
+
+	/**
+	 * Tests that the sorted ISBNs follow additions and removals, though the
+	 * removals move books between slots.
+	 */
+	@Test
+	public void testSortedISBNs() {
+		int[] isbns = store.getSortedISBNs();
+		assertEquals(NUM_BOOKS, isbns.length);
+
+		for (int i = 0; i < NUM_BOOKS; i++) {
+			assertEquals(TEST_ISBN + i, isbns[i]);
+		}
+
+		store.remove(TEST_ISBN + 3);
+		store.remove(TEST_ISBN);
+		store.add(getBook(-1));
+		isbns = store.getSortedISBNs();
+		assertEquals(NUM_BOOKS - 1, isbns.length);
+		assertEquals(TEST_ISBN - 1, isbns[0]);
+		assertEquals(TEST_ISBN + 1, isbns[1]);
+		assertEquals(TEST_ISBN + 4, isbns[3]);
+		assertEquals(TEST_ISBN + NUM_BOOKS - 1, isbns[NUM_BOOKS - 2]);
+
+		store.clear();
+		assertEquals(0, store.getSortedISBNs().length);
+	}
+
+	/**
+	 * Tests that a sample of editor picks holds distinct editor picks, all of
+	 * them if fewer are available, and follows removals and updates.
+	 */
+	@Test
+	public void testSampleEditorPicks() {
+		Random random = new Random(42);
+		int numEditorPicks = (NUM_BOOKS + 2) / 3;
+		assertEquals(numEditorPicks, store.getNumEditorPicks());
+
+		for (int run = 0; run < 100; run++) {
+			assertSample(store.sampleEditorPicks(5, random), 5);
+		}
+
+		assertSample(store.sampleEditorPicks(NUM_BOOKS, random), numEditorPicks);
+		assertEquals(0, store.sampleEditorPicks(0, random).length);
+
+		// An editor pick removed or unpicked is never sampled
+		store.remove(TEST_ISBN);
+		store.setEditorPick(store.getSlot(TEST_ISBN + 3), false);
+		store.setEditorPick(store.getSlot(TEST_ISBN + 1), true);
+		assertEquals(numEditorPicks - 1, store.getNumEditorPicks());
+
+		for (int run = 0; run < 100; run++) {
+			assertSample(store.sampleEditorPicks(5, random), 5);
+		}
+
+		Set<Integer> isbns = new HashSet<>();
+
+		for (int slot : store.sampleEditorPicks(NUM_BOOKS, random)) {
+			isbns.add(store.getISBN(slot));
+		}
+
+		assertFalse(isbns.contains(TEST_ISBN));
+		assertFalse(isbns.contains(TEST_ISBN + 3));
+		assertTrue(isbns.contains(TEST_ISBN + 1));
+	}
+
+	/**
+	 * Tests that every editor pick is about equally likely to be sampled.
+	 */
+	@Test
+	public void testSampleEditorPicksUniformly() {
+		Random random = new Random(42);
+		int numEditorPicks = store.getNumEditorPicks();
+		int[] counts = new int[NUM_BOOKS];
+		int numRuns = 10000;
+
+		for (int run = 0; run < numRuns; run++) {
+			for (int slot : store.sampleEditorPicks(2, random)) {
+				counts[store.getISBN(slot) - TEST_ISBN]++;
+			}
+		}
+
+		double expected = 2.0 * numRuns / numEditorPicks;
+
+		for (int i = 0; i < NUM_BOOKS; i++) {
+			if (i % 3 == 0) {
+				assertEquals(expected, counts[i], expected * 0.15);
+			} else {
+				assertEquals(0, counts[i]);
+			}
+		}
+	}
+
+	/**
+	 * Checks that the stock books are equal, field by field.
+	 */
+	private static void assertStockBook(StockBook expected, StockBook actual) {
+		assertEquals(expected, actual);
+		assertEquals(expected.getNumCopies(), actual.getNumCopies());
+		assertEquals(expected.getNumSaleMisses(), actual.getNumSaleMisses());
+		assertEquals(expected.getNumTimesRated(), actual.getNumTimesRated());
+		assertEquals(expected.getTotalRating(), actual.getTotalRating());
+		assertEquals(expected.isEditorPick(), actual.isEditorPick());
+	}
+
+	/**
+	 * Checks that the slots are distinct editor picks in the store.
+	 */
+	private void assertSample(int[] slots, int numBooks) {
+		assertEquals(numBooks, slots.length);
+		Set<Integer> distinct = new HashSet<>();
+
+		for (int slot : slots) {
+			assertTrue(slot >= 0 && slot < store.size());
+			assertTrue(store.isEditorPick(slot));
+			assertTrue(distinct.add(slot));
+		}
+	}
+}
@@ -537,6 +537,55 @@ public class BookStoreTest {
 				&& top1Book.getPrice() == (float) 300 && top1Book.getTitle().equals("The Art of Computer Programming"));
 	}
 
+	/**
+	 * Tests that the top rated books follow new ratings and removals.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testTopRatedBooksAfterRatingAndRemoval() throws BookStoreException {
+		addBooks(TEST_ISBN + 1, NUM_COPIES);
+		addBooks(TEST_ISBN + 2, NUM_COPIES);
+
+		HashSet<BookRating> booksToRate = new HashSet<BookRating>();
+		booksToRate.add(new BookRating(TEST_ISBN, 4));
+		booksToRate.add(new BookRating(TEST_ISBN + 1, 3));
+		client.rateBooks(booksToRate);
+		assertEquals(TEST_ISBN, client.getTopRatedBooks(1).get(0).getISBN());
+
+		// A new rating moves a book ahead
+		booksToRate.clear();
+		booksToRate.add(new BookRating(TEST_ISBN + 1, 5));
+		booksToRate.add(new BookRating(TEST_ISBN + 2, 1));
+		client.rateBooks(booksToRate);
+		booksToRate.clear();
+		booksToRate.add(new BookRating(TEST_ISBN + 1, 5));
+		client.rateBooks(booksToRate);
+
+		List<Book> topRatedBooks = client.getTopRatedBooks(3);
+		assertEquals(3, topRatedBooks.size());
+		assertEquals(TEST_ISBN + 1, topRatedBooks.get(0).getISBN());
+		assertEquals(TEST_ISBN, topRatedBooks.get(1).getISBN());
+		assertEquals(TEST_ISBN + 2, topRatedBooks.get(2).getISBN());
+
+		// A removed book is no longer ranked
+		Set<Integer> isbnSet = new HashSet<Integer>();
+		isbnSet.add(TEST_ISBN + 1);
+		storeManager.removeBooks(isbnSet);
+
+		topRatedBooks = client.getTopRatedBooks(3);
+		assertEquals(2, topRatedBooks.size());
+		assertEquals(TEST_ISBN, topRatedBooks.get(0).getISBN());
+		assertEquals(TEST_ISBN + 2, topRatedBooks.get(1).getISBN());
+
+		// A book added again under the same ISBN starts unrated, so it ranks last
+		addBooks(TEST_ISBN + 1, NUM_COPIES);
+		topRatedBooks = client.getTopRatedBooks(3);
+		assertEquals(3, topRatedBooks.size());
+		assertEquals(TEST_ISBN + 1, topRatedBooks.get(2).getISBN());
+	}
+
 	/**
 	 * Tests that you can't get negative number of top books.
 	 *
@@ -560,6 +609,143 @@ public class BookStoreTest {
 				&& booksInStorePreTest.size() == booksInStorePostTest.size());
 	}
 
+	/**
+	 * Tests the exact and prefix lookups of books by author and by title.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testGetBooksByAuthorAndTitle() throws BookStoreException {
+		Set<StockBook> booksToAdd = new HashSet<StockBook>();
+		booksToAdd.add(new ImmutableStockBook(TEST_ISBN + 1, "The Art of Computer Programming", "Donald Knuth",
+				(float) 300, NUM_COPIES, 0, 0, 0, false));
+		booksToAdd.add(new ImmutableStockBook(TEST_ISBN + 2, "The C++ Programming Language", "Bjarne Stroustrup",
+				(float) 50, NUM_COPIES, 0, 0, 0, false));
+		booksToAdd.add(new ImmutableStockBook(TEST_ISBN + 3, "The TeXbook", "Donald Knuth", (float) 40, NUM_COPIES,
+				0, 0, 0, false));
+		storeManager.addBooks(booksToAdd);
+
+		List<Book> books = client.getBooksByAuthor("Donald Knuth");
+		assertEquals(2, books.size());
+		assertEquals(TEST_ISBN + 1, books.get(0).getISBN());
+		assertEquals(TEST_ISBN + 3, books.get(1).getISBN());
+		assertTrue(client.getBooksByAuthor("Donald").isEmpty());
+
+		books = client.getBooksByAuthorPrefix("Don", 10);
+		assertEquals(2, books.size());
+		books = client.getBooksByAuthorPrefix("Don", 1);
+		assertEquals(1, books.size());
+		assertEquals(TEST_ISBN + 1, books.get(0).getISBN());
+
+		books = client.getBooksByTitle("The C++ Programming Language");
+		assertEquals(1, books.size());
+		assertEquals("Bjarne Stroustrup", books.get(0).getAuthor());
+
+		books = client.getBooksByTitlePrefix("The ", 10);
+		assertEquals(3, books.size());
+		assertEquals(TEST_ISBN + 1, books.get(0).getISBN());
+		books = client.getBooksByTitlePrefix("The ", 2);
+		assertEquals(2, books.size());
+		assertEquals(TEST_ISBN + 2, books.get(1).getISBN());
+		assertTrue(client.getBooksByTitlePrefix("The ", 0).isEmpty());
+
+		// An empty prefix would match the whole catalog
+		try {
+			client.getBooksByAuthorPrefix("", 10);
+			fail();
+		} catch (BookStoreException ex) {
+			;
+		}
+
+		try {
+			client.getBooksByTitlePrefix("The ", -1);
+			fail();
+		} catch (BookStoreException ex) {
+			;
+		}
+
+		Set<Integer> isbnsToRemove = new HashSet<Integer>();
+		isbnsToRemove.add(TEST_ISBN + 1);
+		storeManager.removeBooks(isbnsToRemove);
+
+		books = client.getBooksByAuthor("Donald Knuth");
+		assertEquals(1, books.size());
+		assertEquals(TEST_ISBN + 3, books.get(0).getISBN());
+	}
+
+	/**
+	 * Tests that getBooksByPriceRange returns the cheapest books in the range
+	 * first, and rejects an empty range.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testGetBooksByPriceRange() throws BookStoreException {
+		Set<StockBook> booksToAdd = new HashSet<StockBook>();
+		booksToAdd.add(new ImmutableStockBook(TEST_ISBN + 1, "The Art of Computer Programming", "Donald Knuth",
+				(float) 300, NUM_COPIES, 0, 0, 0, false));
+		booksToAdd.add(new ImmutableStockBook(TEST_ISBN + 2, "The C Programming Language",
+				"Dennis Ritchie and Brian Kerninghan", (float) 50, NUM_COPIES, 0, 0, 0, false));
+		booksToAdd.add(new ImmutableStockBook(TEST_ISBN + 3, "The TeXbook", "Donald Knuth", (float) 40, NUM_COPIES,
+				0, 0, 0, false));
+		storeManager.addBooks(booksToAdd);
+
+		// The default book costs 10
+		List<Book> books = client.getBooksByPriceRange(10, 50, 10);
+		assertEquals(3, books.size());
+		assertEquals(TEST_ISBN, books.get(0).getISBN());
+		assertEquals(TEST_ISBN + 3, books.get(1).getISBN());
+		assertEquals(TEST_ISBN + 2, books.get(2).getISBN());
+
+		books = client.getBooksByPriceRange(20, 1000, 2);
+		assertEquals(2, books.size());
+		assertEquals(TEST_ISBN + 3, books.get(0).getISBN());
+		assertEquals(TEST_ISBN + 2, books.get(1).getISBN());
+
+		try {
+			client.getBooksByPriceRange(50, 10, 10);
+			fail();
+		} catch (BookStoreException ex) {
+			;
+		}
+	}
+
+	/**
+	 * Tests that a book priced -0.0 falls in every range holding 0.0, whatever
+	 * the sign of the bounds.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testGetBooksByPriceRangeNegativeZero() throws BookStoreException {
+		Set<StockBook> booksToAdd = new HashSet<StockBook>();
+		booksToAdd.add(new ImmutableStockBook(TEST_ISBN + 1, "Free Software, Free Society", "Richard Stallman",
+				-0.0f, NUM_COPIES, 0, 0, 0, false));
+		booksToAdd.add(new ImmutableStockBook(TEST_ISBN + 2, "Producing Open Source Software", "Karl Fogel", 0.0f,
+				NUM_COPIES, 0, 0, 0, false));
+		storeManager.addBooks(booksToAdd);
+
+		for (float minPrice : new float[] { 0.0f, -0.0f }) {
+			for (float maxPrice : new float[] { 0.0f, -0.0f }) {
+				List<Book> books = client.getBooksByPriceRange(minPrice, maxPrice, 10);
+				assertEquals(2, books.size());
+				assertEquals(TEST_ISBN + 1, books.get(0).getISBN());
+				assertEquals(TEST_ISBN + 2, books.get(1).getISBN());
+			}
+		}
+
+		assertEquals(3, client.getBooksByPriceRange(0.0f, 10, 10).size());
+
+		// A book priced -0.0 is found again to be removed
+		Set<Integer> isbnsToRemove = new HashSet<Integer>();
+		isbnsToRemove.add(TEST_ISBN + 1);
+		storeManager.removeBooks(isbnsToRemove);
+		assertEquals(1, client.getBooksByPriceRange(-0.0f, 0.0f, 10).size());
+	}
+
 	/**
 	 * Tear down after class.
 	 *
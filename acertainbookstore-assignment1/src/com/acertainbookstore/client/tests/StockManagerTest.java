@@ -16,6 +16,7 @@ import org.junit.Test;
 import com.acertainbookstore.business.Book;
 import com.acertainbookstore.business.BookCopy;
 import com.acertainbookstore.business.BookEditorPick;
+import com.acertainbookstore.business.BookPage;
 import com.acertainbookstore.business.CertainBookStore;
 import com.acertainbookstore.business.ImmutableStockBook;
 import com.acertainbookstore.business.StockBook;
@@ -576,6 +577,95 @@ public class StockManagerTest {
 
 	}
 
+	/**
+	 * Tests that getBooksInDemand with a limit returns the books with the most
+	 * sale misses first, and that added copies take a book out of demand.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testGetTopBooksInDemand() throws BookStoreException {
+		Set<StockBook> booksToAdd = new HashSet<>();
+		booksToAdd.add(new ImmutableStockBook(TEST_ISBN + 1, "JAVA", "java",
+				(float) 300, NUM_COPIES, 2, 0, 0, false));
+		booksToAdd.add(new ImmutableStockBook(TEST_ISBN + 2, "Python", "python",
+				(float) 300, NUM_COPIES, 7, 0, 0, false));
+		booksToAdd.add(new ImmutableStockBook(TEST_ISBN + 3, "Rust", "rust",
+				(float) 300, NUM_COPIES, 4, 0, 0, false));
+		storeManager.addBooks(booksToAdd);
+
+		List<StockBook> booksInDemand = storeManager.getBooksInDemand(2);
+		assertEquals(2, booksInDemand.size());
+		assertEquals(TEST_ISBN + 2, booksInDemand.get(0).getISBN());
+		assertEquals(TEST_ISBN + 3, booksInDemand.get(1).getISBN());
+
+		Set<BookCopy> copiesToAdd = new HashSet<>();
+		copiesToAdd.add(new BookCopy(TEST_ISBN + 2, 1));
+		storeManager.addCopies(copiesToAdd);
+
+		booksInDemand = storeManager.getBooksInDemand(5);
+		assertEquals(2, booksInDemand.size());
+		assertEquals(TEST_ISBN + 3, booksInDemand.get(0).getISBN());
+		assertEquals(TEST_ISBN + 1, booksInDemand.get(1).getISBN());
+	}
+
+	/**
+	 * Tests that paging through the books and the books in demand visits every
+	 * book once, in ISBN order.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testGetBooksPage() throws BookStoreException {
+		Set<StockBook> booksToAdd = new HashSet<>();
+
+		for (int i = 1; i <= 4; i++) {
+			booksToAdd.add(new ImmutableStockBook(TEST_ISBN + i, "Book " + i, "author",
+					(float) 10, NUM_COPIES, i % 2, 0, 0, false));
+		}
+
+		storeManager.addBooks(booksToAdd);
+
+		List<Integer> pagedISBNs = new ArrayList<>();
+		BookPage<StockBook> page = storeManager.getBooksPage(BookPage.FIRST, 2);
+		assertEquals(2, page.getBooks().size());
+
+		while (true) {
+			for (StockBook book : page.getBooks()) {
+				pagedISBNs.add(book.getISBN());
+			}
+
+			if (!page.hasNextPage()) {
+				break;
+			}
+
+			page = storeManager.getBooksPage(page.getNextCursor(), 2);
+		}
+
+		List<Integer> expectedISBNs = new ArrayList<>();
+
+		for (int i = 0; i <= 4; i++) {
+			expectedISBNs.add(TEST_ISBN + i);
+		}
+
+		assertEquals(expectedISBNs, pagedISBNs);
+
+		page = storeManager.getBooksInDemandPage(BookPage.FIRST, 1);
+		assertEquals(TEST_ISBN + 1, page.getBooks().get(0).getISBN());
+		page = storeManager.getBooksInDemandPage(page.getNextCursor(), 1);
+		assertEquals(TEST_ISBN + 3, page.getBooks().get(0).getISBN());
+		assertFalse(page.hasNextPage());
+
+		try {
+			storeManager.getBooksPage(BookPage.FIRST, BookStoreConstants.MAX_PAGE_SIZE + 1);
+			fail();
+		} catch (BookStoreException ex) {
+			;
+		}
+	}
+
 	/**
 	 * Tests basic removeAllBooks functionality.
 	 *
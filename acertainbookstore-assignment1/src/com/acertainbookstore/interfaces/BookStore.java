@@ -46,6 +46,72 @@ public interface BookStore {
 	 */
 	public List<Book> getBooks(Set<Integer> ISBNList) throws BookStoreException;
 
+	/**
+	 * Gets the list of books written by the author.
+	 *
+	 * @param author
+	 *            the author, matched exactly
+	 * @return the books
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	public List<Book> getBooksByAuthor(String author) throws BookStoreException;
+
+	/**
+	 * Gets the list of at most numBooks books whose author starts with the
+	 * prefix, ordered by author.
+	 *
+	 * @param prefix
+	 *            the prefix of the author, not empty
+	 * @param numBooks
+	 *            the maximum number of books
+	 * @return the books
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	public List<Book> getBooksByAuthorPrefix(String prefix, int numBooks) throws BookStoreException;
+
+	/**
+	 * Gets the list of books with the title.
+	 *
+	 * @param title
+	 *            the title, matched exactly
+	 * @return the books
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	public List<Book> getBooksByTitle(String title) throws BookStoreException;
+
+	/**
+	 * Gets the list of at most numBooks books whose title starts with the
+	 * prefix, ordered by title.
+	 *
+	 * @param prefix
+	 *            the prefix of the title, not empty
+	 * @param numBooks
+	 *            the maximum number of books
+	 * @return the books
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	public List<Book> getBooksByTitlePrefix(String prefix, int numBooks) throws BookStoreException;
+
+	/**
+	 * Gets the list of at most numBooks books with a price in the range,
+	 * cheapest first.
+	 *
+	 * @param minPrice
+	 *            the lowest price, inclusive
+	 * @param maxPrice
+	 *            the highest price, inclusive
+	 * @param numBooks
+	 *            the maximum number of books
+	 * @return the books
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	public List<Book> getBooksByPriceRange(float minPrice, float maxPrice, int numBooks) throws BookStoreException;
+
 	/**
 	 * Gets a list of top rated numBooks books.
 	 *
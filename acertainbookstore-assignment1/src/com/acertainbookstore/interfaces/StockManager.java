@@ -5,6 +5,7 @@ import java.util.Set;
 
 import com.acertainbookstore.business.BookCopy;
 import com.acertainbookstore.business.BookEditorPick;
+import com.acertainbookstore.business.BookPage;
 import com.acertainbookstore.business.StockBook;
 import com.acertainbookstore.utils.BookStoreException;
 
@@ -43,6 +44,20 @@ public interface StockManager {
 	 */
 	public List<StockBook> getBooks() throws BookStoreException;
 
+	/**
+	 * Gets a page of the books in the bookstore, in ascending ISBN order.
+	 *
+	 * @param cursor
+	 *            the ISBN after which the page starts, {@link BookPage#FIRST}
+	 *            for the first page
+	 * @param pageSize
+	 *            the maximum number of books of the page
+	 * @return the page
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	public BookPage<StockBook> getBooksPage(int cursor, int pageSize) throws BookStoreException;
+
 	/**
 	 * Gets the books matching the set of ISBNs given, is different to getBooks
 	 * in the BookStore interface because of the return type of the books.
@@ -64,6 +79,32 @@ public interface StockManager {
 	 */
 	public List<StockBook> getBooksInDemand() throws BookStoreException;
 
+	/**
+	 * Gets the books which have the most sale misses, most sale misses first.
+	 *
+	 * @param numBooks
+	 *            the maximum number of books
+	 * @return the books in demand
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	public List<StockBook> getBooksInDemand(int numBooks) throws BookStoreException;
+
+	/**
+	 * Gets a page of the books which have sale misses, in ascending ISBN
+	 * order.
+	 *
+	 * @param cursor
+	 *            the ISBN after which the page starts, {@link BookPage#FIRST}
+	 *            for the first page
+	 * @param pageSize
+	 *            the maximum number of books of the page
+	 * @return the page
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	public BookPage<StockBook> getBooksInDemandPage(int cursor, int pageSize) throws BookStoreException;
+
 	/**
 	 * Updates the books by mark/unmark them as editor pick.
 	 *
@@ -107,6 +107,10 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 				listBooks(response);
 				break;
 
+			case LISTBOOKSPAGE:
+				listBooksPage(request, response);
+				break;
+
 			case UPDATEEDITORPICKS:
 				updateEditorPicks(request, response);
 				break;
@@ -119,6 +123,18 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 				getBooks(request, response);
 				break;
 
+			case GETBOOKSBYAUTHOR:
+				getBooksByAuthor(request, response);
+				break;
+
+			case GETBOOKSBYTITLE:
+				getBooksByTitle(request, response);
+				break;
+
+			case GETBOOKSBYPRICERANGE:
+				getBooksByPriceRange(request, response);
+				break;
+
 			case GETEDITORPICKS:
 				getEditorPicks(request, response);
 				break;
@@ -131,6 +147,14 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 				getBooksInDemand(response);
 				break;
 
+			case GETTOPBOOKSINDEMAND:
+				getTopBooksInDemand(request, response);
+				break;
+
+			case GETBOOKSINDEMANDPAGE:
+				getBooksInDemandPage(request, response);
+				break;
+
 			case RATEBOOKS:
 				rateBooks(request, response);
 				break;
@@ -171,6 +195,31 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 		response.getOutputStream().write(serializedResponseContent);
 	}
 
+	/**
+	 * Gets the stock books with the most sale misses.
+	 *
+	 * @param request
+	 *            the request
+	 * @param response
+	 *            the response
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void getTopBooksInDemand(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		String numBooksString = URLDecoder.decode(request.getParameter(BookStoreConstants.BOOK_NUM_PARAM), StandardCharsets.UTF_8);
+		BookStoreResponse bookStoreResponse = new BookStoreResponse();
+
+		try {
+			int numBooks = BookStoreUtility.convertStringToInt(numBooksString);
+			bookStoreResponse.setList(myBookStore.getBooksInDemand(numBooks));
+		} catch (BookStoreException ex) {
+			bookStoreResponse.setException(ex);
+		}
+
+		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
+		response.getOutputStream().write(serializedResponseContent);
+	}
+
 	/**
 	 * Gets the stock books by ISBN.
 	 *
@@ -223,6 +272,103 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 		response.getOutputStream().write(serializedResponseContent);
 	}
 
+	/**
+	 * Gets the books by author, or by the prefix of the author.
+	 *
+	 * @param request
+	 *            the request
+	 * @param response
+	 *            the response
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void getBooksByAuthor(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		// The parameters are already decoded, and decoding again would mangle
+		// texts such as "C++"
+		String author = request.getParameter(BookStoreConstants.SEARCH_TEXT_PARAM);
+		boolean prefix = Boolean.parseBoolean(request.getParameter(BookStoreConstants.SEARCH_PREFIX_PARAM));
+		BookStoreResponse bookStoreResponse = new BookStoreResponse();
+
+		try {
+			bookStoreResponse.setList(prefix ? myBookStore.getBooksByAuthorPrefix(author, getNumBooks(request))
+					: myBookStore.getBooksByAuthor(author));
+		} catch (BookStoreException ex) {
+			bookStoreResponse.setException(ex);
+		}
+
+		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
+		response.getOutputStream().write(serializedResponseContent);
+	}
+
+	/**
+	 * Gets the books by title, or by the prefix of the title.
+	 *
+	 * @param request
+	 *            the request
+	 * @param response
+	 *            the response
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void getBooksByTitle(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		String title = request.getParameter(BookStoreConstants.SEARCH_TEXT_PARAM);
+		boolean prefix = Boolean.parseBoolean(request.getParameter(BookStoreConstants.SEARCH_PREFIX_PARAM));
+		BookStoreResponse bookStoreResponse = new BookStoreResponse();
+
+		try {
+			bookStoreResponse.setList(prefix ? myBookStore.getBooksByTitlePrefix(title, getNumBooks(request))
+					: myBookStore.getBooksByTitle(title));
+		} catch (BookStoreException ex) {
+			bookStoreResponse.setException(ex);
+		}
+
+		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
+		response.getOutputStream().write(serializedResponseContent);
+	}
+
+	/**
+	 * Gets the maximum number of books of a search.
+	 *
+	 * @param request
+	 *            the request
+	 * @return the maximum number of books
+	 * @throws BookStoreException
+	 *             if the number is missing or cannot be parsed
+	 */
+	private static int getNumBooks(HttpServletRequest request) throws BookStoreException {
+		return BookStoreUtility.convertStringToInt(request.getParameter(BookStoreConstants.BOOK_NUM_PARAM));
+	}
+
+	/**
+	 * Gets the cheapest books in a price range.
+	 *
+	 * @param request
+	 *            the request
+	 * @param response
+	 *            the response
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void getBooksByPriceRange(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		String minPriceString = request.getParameter(BookStoreConstants.MIN_PRICE_PARAM);
+		String maxPriceString = request.getParameter(BookStoreConstants.MAX_PRICE_PARAM);
+		String numBooksString = request.getParameter(BookStoreConstants.BOOK_NUM_PARAM);
+		BookStoreResponse bookStoreResponse = new BookStoreResponse();
+
+		try {
+			// Unparsable prices become NaN, which the book store rejects
+			float minPrice = BookStoreUtility.convertStringToFloat(minPriceString, Float.NaN);
+			float maxPrice = BookStoreUtility.convertStringToFloat(maxPriceString, Float.NaN);
+			int numBooks = BookStoreUtility.convertStringToInt(numBooksString);
+			bookStoreResponse.setList(myBookStore.getBooksByPriceRange(minPrice, maxPrice, numBooks));
+		} catch (BookStoreException ex) {
+			bookStoreResponse.setException(ex);
+		}
+
+		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
+		response.getOutputStream().write(serializedResponseContent);
+	}
+
 	/**
 	 * Gets the books.
 	 *
@@ -321,6 +467,69 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 		response.getOutputStream().write(serializedResponseContent);
 	}
 
+	/**
+	 * Lists a page of the books.
+	 *
+	 * @param request
+	 *            the request
+	 * @param response
+	 *            the response
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void listBooksPage(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		BookStoreResponse bookStoreResponse = new BookStoreResponse();
+
+		try {
+			int cursor = BookStoreUtility.convertStringToInt(request.getParameter(BookStoreConstants.CURSOR_PARAM));
+			int pageSize = BookStoreUtility.convertStringToInt(request.getParameter(BookStoreConstants.BOOK_NUM_PARAM));
+			setPage(bookStoreResponse, myBookStore.getBooksPage(cursor, pageSize));
+		} catch (BookStoreException ex) {
+			bookStoreResponse.setException(ex);
+		}
+
+		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
+		response.getOutputStream().write(serializedResponseContent);
+	}
+
+	/**
+	 * Gets a page of the stock books in demand.
+	 *
+	 * @param request
+	 *            the request
+	 * @param response
+	 *            the response
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void getBooksInDemandPage(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		BookStoreResponse bookStoreResponse = new BookStoreResponse();
+
+		try {
+			int cursor = BookStoreUtility.convertStringToInt(request.getParameter(BookStoreConstants.CURSOR_PARAM));
+			int pageSize = BookStoreUtility.convertStringToInt(request.getParameter(BookStoreConstants.BOOK_NUM_PARAM));
+			setPage(bookStoreResponse, myBookStore.getBooksInDemandPage(cursor, pageSize));
+		} catch (BookStoreException ex) {
+			bookStoreResponse.setException(ex);
+		}
+
+		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
+		response.getOutputStream().write(serializedResponseContent);
+	}
+
+	/**
+	 * Puts the page in the response.
+	 *
+	 * @param bookStoreResponse
+	 *            the response
+	 * @param page
+	 *            the page
+	 */
+	private static void setPage(BookStoreResponse bookStoreResponse, BookPage<?> page) {
+		bookStoreResponse.setList(page.getBooks());
+		bookStoreResponse.setNextCursor(page.getNextCursor());
+	}
+
 	/**
 	 * Adds the copies.
 	 *
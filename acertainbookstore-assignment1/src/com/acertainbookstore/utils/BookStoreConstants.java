@@ -19,6 +19,21 @@ public final class BookStoreConstants {
 	/** The Constant BOOK_NUM_PARAM. */
 	public static final String BOOK_NUM_PARAM = "number_of_books";
 
+	/** The Constant SEARCH_TEXT_PARAM. */
+	public static final String SEARCH_TEXT_PARAM = "text";
+
+	/** The Constant SEARCH_PREFIX_PARAM. */
+	public static final String SEARCH_PREFIX_PARAM = "prefix";
+
+	/** The Constant MIN_PRICE_PARAM. */
+	public static final String MIN_PRICE_PARAM = "min_price";
+
+	/** The Constant MAX_PRICE_PARAM. */
+	public static final String MAX_PRICE_PARAM = "max_price";
+
+	/** The Constant CURSOR_PARAM. */
+	public static final String CURSOR_PARAM = "cursor";
+
 	/** The Constant XMLSTRINGLEN_PARAM. */
 	public static final String XMLSTRINGLEN_PARAM = "len";
 
@@ -28,6 +43,12 @@ public final class BookStoreConstants {
 	 */
 	public static final int INVALID_PARAMS = -1;
 
+	/**
+	 * The Constant MAX_PAGE_SIZE bounds the number of books of a page, and so
+	 * the memory a paged request takes.
+	 */
+	public static final int MAX_PAGE_SIZE = 1000;
+
 	// Constants used when creating exception messages
 
 	/** The Constant INVALID when the book has an invalid ISBN. */
@@ -12,12 +12,24 @@ public enum BookStoreMessageTag {
 	/** The tag for the list books message. */
 	LISTBOOKS,
 
+	/** The tag for the list books page message. */
+	LISTBOOKSPAGE,
+
 	/** The tag for the add copies message. */
 	ADDCOPIES,
 
 	/** The tag for the get books message. */
 	GETBOOKS,
 
+	/** The tag for the get books by author message. */
+	GETBOOKSBYAUTHOR,
+
+	/** The tag for the get books by title message. */
+	GETBOOKSBYTITLE,
+
+	/** The tag for the get books by price range message. */
+	GETBOOKSBYPRICERANGE,
+
 	/** The tag for the buy books message. */
 	BUYBOOKS,
 
@@ -43,5 +55,11 @@ public enum BookStoreMessageTag {
 	GETSTOCKBOOKSBYISBN,
 
 	/** The tag for the get books in demand message. */
-	GETBOOKSINDEMAND;
+	GETBOOKSINDEMAND,
+
+	/** The tag for the get top books in demand message. */
+	GETTOPBOOKSINDEMAND,
+
+	/** The tag for the get books in demand page message. */
+	GETBOOKSINDEMANDPAGE;
 }
@@ -17,6 +17,9 @@ public class BookStoreResponse {
 	/** The list. */
 	private List<?> list;
 
+	/** The cursor of the next page, for the paged messages. */
+	private int nextCursor;
+
 	/**
 	 * Instantiates a new {@link BookStoreResponse}.
 	 *
@@ -57,6 +60,25 @@ public class BookStoreResponse {
 		this.list = list;
 	}
 
+	/**
+	 * Gets the cursor of the next page.
+	 *
+	 * @return the next cursor
+	 */
+	public int getNextCursor() {
+		return nextCursor;
+	}
+
+	/**
+	 * Sets the cursor of the next page.
+	 *
+	 * @param nextCursor
+	 *            the new next cursor
+	 */
+	public void setNextCursor(int nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+
 	/**
 	 * Gets the exception.
 	 *
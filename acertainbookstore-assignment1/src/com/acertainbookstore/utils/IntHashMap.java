@@ -0,0 +1,333 @@
+package com.acertainbookstore.utils;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * {@link IntHashMap} maps <code>int</code> keys to values without boxing the
+ * keys. The keys and values are kept side by side in two arrays, probed
+ * linearly from the hash of the key, so a lookup touches one or two adjacent
+ * slots instead of chasing a chain of entry objects. Removals shift the
+ * following entries back instead of leaving tombstones.
+ *
+ * Values must not be null, as an empty slot is one without a value. The map is
+ * not thread-safe.
+ *
+ * @param <V>
+ *            the value type
+ */
+public class IntHashMap<V> {
+
+	/** The default number of entries the map is sized for. */
+	private static final int DEFAULT_EXPECTED_SIZE = 16;
+
+	/** The maximum ratio of entries to slots before the arrays grow. */
+	private static final float LOAD_FACTOR = 0.75f;
+
+	/** The maximum number of slots. */
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	/** The keys, by slot. */
+	private int[] keys;
+
+	/** The values, by slot, null for an empty slot. */
+	private Object[] values;
+
+	/** The number of entries. */
+	private int size = 0;
+
+	/** The number of entries beyond which the arrays grow. */
+	private int threshold;
+
+	/** The number of bits to shift a hashed key by to get its home slot. */
+	private int shift;
+
+	/** The view of the values. */
+	private Values valuesView;
+
+	/**
+	 * Instantiates a new empty {@link IntHashMap}.
+	 */
+	public IntHashMap() {
+		this(DEFAULT_EXPECTED_SIZE);
+	}
+
+	/**
+	 * Instantiates a new empty {@link IntHashMap}, sized to hold the given
+	 * number of entries without growing.
+	 *
+	 * @param expectedSize
+	 *            the expected number of entries
+	 */
+	public IntHashMap(int expectedSize) {
+		if (expectedSize < 0) {
+			throw new IllegalArgumentException("expectedSize = " + expectedSize + ", but it must not be negative");
+		}
+
+		int capacity = 2;
+
+		while (capacity < MAX_CAPACITY && capacity * LOAD_FACTOR < expectedSize) {
+			capacity <<= 1;
+		}
+
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = new Object[capacity];
+		threshold = (int) (capacity * LOAD_FACTOR);
+		shift = Integer.SIZE - Integer.numberOfTrailingZeros(capacity);
+	}
+
+	/**
+	 * Gets the home slot of the key. Keys such as ISBNs are often
+	 * consecutive, so they are hashed to spread them over the table.
+	 */
+	private int getHomeSlot(int key) {
+		return (key * 0x9E3779B9) >>> shift;
+	}
+
+	/**
+	 * Finds the slot of the key.
+	 *
+	 * @return the slot, or -1 if the key is not in the map
+	 */
+	private int find(int key) {
+		int mask = values.length - 1;
+
+		for (int slot = getHomeSlot(key); values[slot] != null; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return slot;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Gets the number of entries.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Checks if the map has no entries.
+	 *
+	 * @return true, if the map is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Checks if the key is in the map.
+	 *
+	 * @param key
+	 *            the key
+	 * @return true, if the key is in the map
+	 */
+	public boolean containsKey(int key) {
+		return find(key) >= 0;
+	}
+
+	/**
+	 * Gets the value of the key.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the value, or null if the key is not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		int slot = find(key);
+		return slot < 0 ? null : (V) values[slot];
+	}
+
+	/**
+	 * Maps the key to the value.
+	 *
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value, not null
+	 * @return the previous value of the key, or null if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("value must not be null");
+		}
+
+		int mask = values.length - 1;
+		int slot = getHomeSlot(key);
+
+		while (values[slot] != null) {
+			if (keys[slot] == key) {
+				V previous = (V) values[slot];
+				values[slot] = value;
+				return previous;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+
+		keys[slot] = key;
+		values[slot] = value;
+
+		if (++size > threshold) {
+			grow();
+		}
+
+		return null;
+	}
+
+	/**
+	 * Removes the key from the map.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the value of the key, or null if the key was not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key) {
+		int slot = find(key);
+
+		if (slot < 0) {
+			return null;
+		}
+
+		V previous = (V) values[slot];
+		int mask = values.length - 1;
+
+		// Shift back the following entries which would no longer be found
+		for (int next = (slot + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+			int home = getHomeSlot(keys[next]);
+
+			// Move the entry unless its home lies cyclically in (slot, next]
+			if (((next - home) & mask) >= ((next - slot) & mask)) {
+				keys[slot] = keys[next];
+				values[slot] = values[next];
+				slot = next;
+			}
+		}
+
+		values[slot] = null;
+		size--;
+		return previous;
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	/**
+	 * Calls the action with each key in the map.
+	 *
+	 * @param action
+	 *            the action
+	 */
+	public void forEachKey(IntConsumer action) {
+		Object[] currentValues = values;
+
+		for (int slot = 0; slot < currentValues.length; slot++) {
+			if (currentValues[slot] != null) {
+				action.accept(keys[slot]);
+			}
+		}
+	}
+
+	/**
+	 * Gets a view of the values, in no particular order. The view does not
+	 * support updates.
+	 *
+	 * @return the values
+	 */
+	public Collection<V> values() {
+		if (valuesView == null) {
+			valuesView = new Values();
+		}
+
+		return valuesView;
+	}
+
+	private void grow() {
+		if (values.length == MAX_CAPACITY) {
+			throw new IllegalStateException("The map cannot hold more than " + threshold + " entries");
+		}
+
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(oldValues.length << 1);
+		int mask = values.length - 1;
+
+		for (int oldSlot = 0; oldSlot < oldValues.length; oldSlot++) {
+			if (oldValues[oldSlot] != null) {
+				int slot = getHomeSlot(oldKeys[oldSlot]);
+
+				while (values[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+
+				keys[slot] = oldKeys[oldSlot];
+				values[slot] = oldValues[oldSlot];
+			}
+		}
+	}
+
+	/**
+	 * {@link Values} is the view of the values of the map.
+	 */
+	private final class Values extends AbstractCollection<V> {
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public Iterator<V> iterator() {
+			return new Iterator<V>() {
+
+				/** The slot of the next value, or the capacity at the end. */
+				private int nextSlot = skipEmpty(0);
+
+				private int skipEmpty(int slot) {
+					while (slot < values.length && values[slot] == null) {
+						slot++;
+					}
+
+					return slot;
+				}
+
+				@Override
+				public boolean hasNext() {
+					return nextSlot < values.length;
+				}
+
+				@Override
+				@SuppressWarnings("unchecked")
+				public V next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+
+					V value = (V) values[nextSlot];
+					nextSlot = skipEmpty(nextSlot + 1);
+					return value;
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package com.acertainbookstore.business;
+
+/**
+ * {@link DeadlockPolicy} defines how the {@link LockManager} keeps
+ * transactions from waiting for each other forever. Whatever the policy, a
+ * transaction also gives up after waiting for a lock longer than the lock
+ * timeout.
+ *
+ * @see LockManager
+ */
+public enum DeadlockPolicy {
+
+	/** Transactions only give up when the lock timeout expires. */
+	TIMEOUT,
+
+	/**
+	 * A transaction about to wait looks for a cycle through itself in the
+	 * waits-for graph, and aborts if it finds one.
+	 */
+	DETECTION,
+
+	/**
+	 * An older transaction wounds the younger transactions it waits for, which
+	 * abort at their next lock request, while a younger transaction waits.
+	 */
+	WOUND_WAIT,
+
+	/**
+	 * An older transaction waits for younger ones, while a younger transaction
+	 * aborts rather than wait for an older one.
+	 */
+	WAIT_DIE
+}
@@ -0,0 +1,198 @@
+package com.acertainbookstore.business;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+
+import com.acertainbookstore.utils.BookStoreException;
+
+/**
+ * {@link FlatCombiner} executes an operation for many concurrent callers
+ * with flat combining: callers publish their arguments, and whichever caller
+ * becomes the combiner applies all published arguments in a single critical
+ * section, while the others wait for their result. The lock is thus taken
+ * once per batch instead of once per call.
+ *
+ * Each argument is applied on its own, in the order it was published, so
+ * each caller gets the result it would get if it had taken the lock itself.
+ *
+ * @param <T>
+ *            the argument type
+ */
+public class FlatCombiner<T> {
+
+	/** How long a waiting caller sleeps before it checks its request again. */
+	private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+	/** The lock guarding the critical section. */
+	private final Lock lock;
+
+	/** The operation applied to each argument. */
+	private final Operation<T> operation;
+
+	/** The published requests, most recently published first. */
+	private final AtomicReference<Request<T>> pending = new AtomicReference<>();
+
+	/** Whether a caller is combining. */
+	private final AtomicBoolean combining = new AtomicBoolean(false);
+
+	/**
+	 * Instantiates a new {@link FlatCombiner}.
+	 *
+	 * @param lock
+	 *            the lock guarding the critical section
+	 * @param operation
+	 *            the operation applied to each argument, under the lock
+	 */
+	public FlatCombiner(Lock lock, Operation<T> operation) {
+		this.lock = lock;
+		this.operation = operation;
+	}
+
+	/**
+	 * An operation applied under the lock.
+	 *
+	 * @param <T>
+	 *            the argument type
+	 */
+	@FunctionalInterface
+	public interface Operation<T> {
+
+		/**
+		 * Applies the operation.
+		 *
+		 * @param argument
+		 *            the argument
+		 * @throws BookStoreException
+		 *             the book store exception
+		 */
+		void apply(T argument) throws BookStoreException;
+	}
+
+	/**
+	 * {@link Request} is an argument published by a caller, and its result.
+	 */
+	private static final class Request<T> {
+
+		/** The argument. */
+		private final T argument;
+
+		/** The thread of the caller. */
+		private final Thread thread = Thread.currentThread();
+
+		/** The request published before this one. */
+		private Request<T> next;
+
+		/** The book store exception thrown by the operation. */
+		private BookStoreException failure;
+
+		/** Any other throwable thrown by the operation. */
+		private Throwable error;
+
+		/** Whether the operation was applied; publishes the result. */
+		private volatile boolean done = false;
+
+		private Request(T argument) {
+			this.argument = argument;
+		}
+	}
+
+	/**
+	 * Applies the operation to the argument, either by combining or by
+	 * waiting for another caller to combine.
+	 *
+	 * @param argument
+	 *            the argument
+	 * @throws BookStoreException
+	 *             the book store exception thrown by the operation
+	 */
+	public void execute(T argument) throws BookStoreException {
+		Request<T> request = new Request<>(argument);
+		Request<T> head;
+
+		do {
+			head = pending.get();
+			request.next = head;
+		} while (!pending.compareAndSet(head, request));
+
+		while (!request.done) {
+			if (combining.compareAndSet(false, true)) {
+				try {
+					combine();
+				} finally {
+					combining.set(false);
+				}
+
+				// Hand over to a caller which published after the batch was taken
+				Request<T> waiting = pending.get();
+
+				if (waiting != null) {
+					LockSupport.unpark(waiting.thread);
+				}
+			} else {
+				LockSupport.parkNanos(this, PARK_NANOS);
+			}
+		}
+
+		if (request.error instanceof RuntimeException) {
+			throw (RuntimeException) request.error;
+		}
+
+		if (request.error instanceof Error) {
+			throw (Error) request.error;
+		}
+
+		if (request.error != null) {
+			throw new BookStoreException(request.error);
+		}
+
+		if (request.failure != null) {
+			throw request.failure;
+		}
+	}
+
+	/**
+	 * Applies the operation to all published requests under the lock. Each
+	 * request is completed whatever the operation throws, since its caller
+	 * waits until it is.
+	 */
+	private void combine() {
+		Request<T> published = pending.getAndSet(null);
+
+		if (published == null) {
+			return;
+		}
+
+		// Reverse the requests to apply them in the order they were published
+		Deque<Request<T>> batch = new ArrayDeque<>();
+
+		for (Request<T> request = published; request != null; request = request.next) {
+			batch.push(request);
+		}
+
+		lock.lock();
+
+		try {
+			for (Request<T> request : batch) {
+				try {
+					operation.apply(request.argument);
+				} catch (BookStoreException ex) {
+					request.failure = ex;
+				} catch (Throwable ex) {
+					request.error = ex;
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		for (Request<T> request : batch) {
+			request.done = true;
+			LockSupport.unpark(request.thread);
+		}
+	}
+}
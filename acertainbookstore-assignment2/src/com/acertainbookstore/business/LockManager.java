@@ -0,0 +1,506 @@
+package com.acertainbookstore.business;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.acertainbookstore.utils.TransactionAbortedException;
+
+/**
+ * {@link LockManager} implements multi-granularity locking over two levels:
+ * the database and its books. Every resource can be locked in any
+ * {@link LockMode}; a transaction announces the book locks it takes with an
+ * intention lock on the database, and may lock the whole database in S, SIX
+ * or X mode instead of locking its books one by one.
+ *
+ * Each resource grants its requests in FIFO order: a request is only granted
+ * when it is compatible with the modes held by other transactions and with
+ * every request queued ahead of it, so writers are not starved by a stream of
+ * readers. Upgrades of a lock already held are queued ahead of new requests.
+ *
+ * The book locks are striped: a fixed table of locks is shared by all ISBNs,
+ * each ISBN always mapping to the same stripe. The memory of the lock table is
+ * thus bounded no matter how many books were ever added or removed, at the
+ * price of books in the same stripe excluding each other.
+ *
+ * The locks are taken through a {@link Transaction}, which acquires the
+ * stripes in ascending order so that no two transactions can wait for each
+ * other, and which remembers every lock it acquired so that it releases
+ * exactly those.
+ *
+ * Ordered acquisition does not help when a transaction upgrades a lock it
+ * already holds, so a transaction that has to wait applies the
+ * {@link DeadlockPolicy} of the lock manager, and gives up after the lock
+ * timeout in any case. A transaction that gives up throws a
+ * {@link TransactionAbortedException} and must then be closed, which
+ * releases the locks it holds.
+ *
+ * @see LockMode
+ * @see DeadlockPolicy
+ * @see TwoLevelLockingConcurrentCertainBookStore
+ */
+public class LockManager {
+
+	/** The default number of book lock stripes. */
+	public static final int DEFAULT_NUM_STRIPES = 1024;
+
+	/** The default time a transaction waits for a lock before it aborts. */
+	public static final long DEFAULT_LOCK_TIMEOUT_MILLIS = 10000;
+
+	/** How often a waiting transaction checks whether it was wounded. */
+	private static final long WOUND_CHECK_INTERVAL_MILLIS = 10;
+
+	/** The policy applied by transactions before they wait. */
+	private final DeadlockPolicy deadlockPolicy;
+
+	/** The time a transaction waits for a lock before it aborts. */
+	private final long lockTimeoutNanos;
+
+	/** The timestamp of the next transaction, telling older from younger. */
+	private final AtomicLong nextTimestamp = new AtomicLong();
+
+	/** The lock of the database. */
+	private final Resource databaseLock = new Resource();
+
+	/** The stripes of locks shared by the books (items in the database). */
+	private final Resource[] bookLocks;
+
+	/** The number of bits to shift a hashed ISBN by to get its stripe. */
+	private final int stripeShift;
+
+	/**
+	 * Instantiates a new {@link LockManager} with
+	 * {@link #DEFAULT_NUM_STRIPES} book lock stripes, deadlock detection and
+	 * the default lock timeout.
+	 */
+	public LockManager() {
+		this(DeadlockPolicy.DETECTION, DEFAULT_LOCK_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * Instantiates a new {@link LockManager} with
+	 * {@link #DEFAULT_NUM_STRIPES} book lock stripes.
+	 *
+	 * @param deadlockPolicy
+	 *            the deadlock policy
+	 * @param lockTimeoutMillis
+	 *            the time a transaction waits for a lock before it aborts
+	 */
+	public LockManager(DeadlockPolicy deadlockPolicy, long lockTimeoutMillis) {
+		this(DEFAULT_NUM_STRIPES, deadlockPolicy, lockTimeoutMillis);
+	}
+
+	/**
+	 * Instantiates a new {@link LockManager}.
+	 *
+	 * @param numStripes
+	 *            the number of book lock stripes, a power of two
+	 * @param deadlockPolicy
+	 *            the deadlock policy
+	 * @param lockTimeoutMillis
+	 *            the time a transaction waits for a lock before it aborts
+	 */
+	public LockManager(int numStripes, DeadlockPolicy deadlockPolicy, long lockTimeoutMillis) {
+		if (numStripes < 1 || Integer.bitCount(numStripes) != 1) {
+			throw new IllegalArgumentException("numStripes = " + numStripes + ", but it must be a power of two");
+		}
+
+		if (deadlockPolicy == null) {
+			throw new IllegalArgumentException("deadlockPolicy must not be null");
+		}
+
+		if (lockTimeoutMillis <= 0) {
+			throw new IllegalArgumentException("lockTimeoutMillis = " + lockTimeoutMillis + ", but it must be positive");
+		}
+
+		this.deadlockPolicy = deadlockPolicy;
+		this.lockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(lockTimeoutMillis);
+
+		bookLocks = new Resource[numStripes];
+
+		for (int i = 0; i < numStripes; i++) {
+			bookLocks[i] = new Resource();
+		}
+
+		stripeShift = Integer.SIZE - Integer.numberOfTrailingZeros(numStripes);
+	}
+
+	/**
+	 * Starts a new {@link Transaction} which holds no locks yet.
+	 *
+	 * @return the transaction
+	 */
+	public Transaction begin() {
+		return new Transaction();
+	}
+
+	/**
+	 * Gets the stripe guarding the book. ISBNs are often consecutive, so they
+	 * are hashed to spread neighbours over different stripes.
+	 *
+	 * @param isbn
+	 *            the ISBN
+	 * @return the stripe
+	 */
+	private int getStripe(int isbn) {
+		return stripeShift == Integer.SIZE ? 0 : (isbn * 0x9E3779B9) >>> stripeShift;
+	}
+
+	/**
+	 * Applies the deadlock policy to a transaction that is about to wait.
+	 *
+	 * @param owner
+	 *            the waiting transaction
+	 * @param blockers
+	 *            the transactions it waits for
+	 * @throws TransactionAbortedException
+	 *             if the transaction has to abort
+	 */
+	private void applyDeadlockPolicy(Transaction owner, Set<Transaction> blockers)
+			throws TransactionAbortedException {
+		if (owner.wounded) {
+			throw new TransactionAbortedException("The transaction was wounded by an older transaction");
+		}
+
+		switch (deadlockPolicy) {
+		case DETECTION:
+			if (isDeadlocked(owner)) {
+				throw new TransactionAbortedException("The transaction was chosen as a deadlock victim");
+			}
+			break;
+		case WOUND_WAIT:
+			for (Transaction blocker : blockers) {
+				if (blocker.timestamp > owner.timestamp) {
+					blocker.wounded = true;
+				}
+			}
+			break;
+		case WAIT_DIE:
+			for (Transaction blocker : blockers) {
+				if (blocker.timestamp < owner.timestamp) {
+					throw new TransactionAbortedException("The transaction died instead of waiting for an older one");
+				}
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Checks if the transaction waits for itself, following the transactions
+	 * each waiting transaction last found blocking it.
+	 *
+	 * @param owner
+	 *            the transaction
+	 * @return true, if there is a cycle through the transaction
+	 */
+	private static boolean isDeadlocked(Transaction owner) {
+		Deque<Transaction> toVisit = new ArrayDeque<>(owner.blockers);
+		Set<Transaction> visited = new HashSet<>();
+
+		while (!toVisit.isEmpty()) {
+			Transaction transaction = toVisit.pop();
+
+			if (transaction == owner) {
+				return true;
+			}
+
+			if (visited.add(transaction)) {
+				toVisit.addAll(transaction.blockers);
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * {@link Resource} is a lockable resource with its granted group and its
+	 * queue of waiting requests, guarded by its monitor.
+	 */
+	private final class Resource {
+
+		/** The modes granted, by transaction. */
+		private final Map<Transaction, LockMode> granted = new HashMap<>();
+
+		/** The requests waiting to be granted, in the order they are served. */
+		private final LinkedList<Request> waiting = new LinkedList<>();
+
+		/**
+		 * Acquires the resource in the given mode, waiting until the request
+		 * reaches the front of the queue and is compatible with the granted
+		 * group.
+		 *
+		 * @param owner
+		 *            the transaction
+		 * @param mode
+		 *            the mode, including any mode already held by the owner
+		 * @throws TransactionAbortedException
+		 *             if the deadlock policy or the lock timeout aborts the
+		 *             transaction
+		 */
+		private synchronized void acquire(Transaction owner, LockMode mode) throws TransactionAbortedException {
+			boolean upgrade = granted.containsKey(owner);
+
+			if (waiting.isEmpty() && isCompatibleWithGranted(owner, mode)) {
+				granted.put(owner, mode);
+				return;
+			}
+
+			Request request = new Request(owner, mode);
+			enqueue(request, upgrade);
+
+			long deadline = System.nanoTime() + lockTimeoutNanos;
+			boolean interrupted = false;
+
+			try {
+				Set<Transaction> blockers;
+
+				while (!(blockers = getBlockers(request)).isEmpty()) {
+					owner.blockers = blockers;
+					applyDeadlockPolicy(owner, blockers);
+
+					long remainingNanos = deadline - System.nanoTime();
+
+					if (remainingNanos <= 0) {
+						throw new TransactionAbortedException("The transaction timed out waiting for a lock");
+					}
+
+					try {
+						// Wake up regularly, as wounds are not notified
+						wait(Math.min(TimeUnit.NANOSECONDS.toMillis(remainingNanos) + 1, WOUND_CHECK_INTERVAL_MILLIS));
+					} catch (InterruptedException ex) {
+						// Like Lock#lock(), keep waiting and restore the status
+						interrupted = true;
+					}
+				}
+
+				granted.put(owner, mode);
+			} finally {
+				waiting.remove(request);
+				owner.blockers = Collections.emptySet();
+
+				// Requests queued behind this one may be compatible now
+				notifyAll();
+
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		/**
+		 * Releases the mode held by the transaction.
+		 *
+		 * @param owner
+		 *            the transaction
+		 */
+		private synchronized void release(Transaction owner) {
+			granted.remove(owner);
+
+			if (!waiting.isEmpty()) {
+				notifyAll();
+			}
+		}
+
+		/**
+		 * Queues the request, upgrades behind earlier upgrades but ahead of
+		 * new requests.
+		 */
+		private void enqueue(Request request, boolean upgrade) {
+			if (!upgrade) {
+				waiting.addLast(request);
+				return;
+			}
+
+			ListIterator<Request> iterator = waiting.listIterator();
+
+			while (iterator.hasNext()) {
+				if (!granted.containsKey(iterator.next().owner)) {
+					iterator.previous();
+					break;
+				}
+			}
+
+			iterator.add(request);
+		}
+
+		/**
+		 * Gets the transactions the request waits for: those holding an
+		 * incompatible mode and those queued ahead for one.
+		 */
+		private Set<Transaction> getBlockers(Request request) {
+			Set<Transaction> blockers = new HashSet<>();
+
+			for (Map.Entry<Transaction, LockMode> entry : granted.entrySet()) {
+				if (entry.getKey() != request.owner && !request.mode.isCompatibleWith(entry.getValue())) {
+					blockers.add(entry.getKey());
+				}
+			}
+
+			// Do not overtake a conflicting request that waits longer
+			for (Request ahead : waiting) {
+				if (ahead == request) {
+					break;
+				}
+
+				if (!request.mode.isCompatibleWith(ahead.mode)) {
+					blockers.add(ahead.owner);
+				}
+			}
+
+			return blockers;
+		}
+
+		private boolean isCompatibleWithGranted(Transaction owner, LockMode mode) {
+			for (Map.Entry<Transaction, LockMode> entry : granted.entrySet()) {
+				if (entry.getKey() != owner && !mode.isCompatibleWith(entry.getValue())) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+	}
+
+	/**
+	 * {@link Request} is a transaction waiting for a resource.
+	 */
+	private static final class Request {
+
+		/** The transaction. */
+		private final Transaction owner;
+
+		/** The mode requested. */
+		private final LockMode mode;
+
+		private Request(Transaction owner, LockMode mode) {
+			this.owner = owner;
+			this.mode = mode;
+		}
+	}
+
+	/**
+	 * {@link Transaction} tracks the locks taken by one call into the book
+	 * store. It must only be used by one thread at a time, and is closed to
+	 * release its locks, in reverse acquisition order.
+	 */
+	public final class Transaction implements AutoCloseable {
+
+		/** The resources locked, most recently locked first. */
+		private final Deque<Resource> heldResources = new ArrayDeque<>();
+
+		/** The modes held, by resource. */
+		private final Map<Resource, LockMode> heldModes = new HashMap<>();
+
+		/** The timestamp, lower for older transactions. */
+		private final long timestamp = nextTimestamp.getAndIncrement();
+
+		/** The transactions the transaction waits for, while it waits. */
+		private volatile Set<Transaction> blockers = Collections.emptySet();
+
+		/** Whether an older transaction requested this one to abort. */
+		private volatile boolean wounded = false;
+
+		/**
+		 * Instantiates a new {@link Transaction}.
+		 */
+		private Transaction() {
+		}
+
+		/**
+		 * Locks the database, or upgrades the mode the database is held in.
+		 * An intention mode must be held before any book is locked.
+		 *
+		 * @param mode
+		 *            the mode
+		 * @throws TransactionAbortedException
+		 *             if the transaction has to abort
+		 */
+		public void lockDatabase(LockMode mode) throws TransactionAbortedException {
+			lock(databaseLock, mode);
+		}
+
+		/**
+		 * Locks the books in ascending stripe order. Books already covered by
+		 * the database lock are not locked again.
+		 *
+		 * @param isbns
+		 *            the ISBNs
+		 * @param mode
+		 *            the mode, S or X
+		 * @throws TransactionAbortedException
+		 *             if the transaction has to abort
+		 */
+		public void lockBooks(Collection<Integer> isbns, LockMode mode) throws TransactionAbortedException {
+			if (mode != LockMode.S && mode != LockMode.X) {
+				throw new IllegalArgumentException("Books can only be locked in S or X mode, not " + mode);
+			}
+
+			LockMode databaseMode = heldModes.get(databaseLock);
+			LockMode intention = mode == LockMode.S ? LockMode.IS : LockMode.IX;
+
+			if (databaseMode == null || !databaseMode.covers(intention)) {
+				throw new IllegalStateException("The database must be locked in " + intention + " mode first");
+			}
+
+			if (databaseMode.covers(mode)) {
+				return;
+			}
+
+			Set<Integer> stripes = new TreeSet<>();
+
+			for (Integer isbn : isbns) {
+				stripes.add(getStripe(isbn));
+			}
+
+			// Always acquire in the same global order to rule out deadlocks
+			for (Integer stripe : stripes) {
+				lock(bookLocks[stripe], mode);
+			}
+		}
+
+		private void lock(Resource resource, LockMode mode) throws TransactionAbortedException {
+			LockMode heldMode = heldModes.get(resource);
+
+			if (heldMode != null && heldMode.covers(mode)) {
+				return;
+			}
+
+			if (wounded) {
+				throw new TransactionAbortedException("The transaction was wounded by an older transaction");
+			}
+
+			LockMode newMode = heldMode == null ? mode : heldMode.combine(mode);
+			resource.acquire(this, newMode);
+
+			if (heldMode == null) {
+				heldResources.push(resource);
+			}
+
+			heldModes.put(resource, newMode);
+		}
+
+		/**
+		 * Releases all locks held by the transaction.
+		 */
+		@Override
+		public void close() {
+			while (!heldResources.isEmpty()) {
+				heldResources.pop().release(this);
+			}
+
+			heldModes.clear();
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package com.acertainbookstore.business;
+
+/**
+ * {@link LockMode} implements the lock modes of multi-granularity locking.
+ * Intention modes are taken on the database to announce locks on its books.
+ *
+ * @see LockManager
+ */
+public enum LockMode {
+
+	/** Intention shared: some books will be read-locked. */
+	IS,
+
+	/** Intention exclusive: some books will be write-locked. */
+	IX,
+
+	/** Shared: the whole resource is read-locked. */
+	S,
+
+	/** Shared and intention exclusive: the whole resource is read, some books are written. */
+	SIX,
+
+	/** Exclusive: the whole resource is write-locked. */
+	X;
+
+	/** The compatibility matrix, indexed by the ordinals of the modes. */
+	private static final boolean[][] COMPATIBLE = {
+			//       IS     IX     S      SIX    X
+			/* IS */ { true, true, true, true, false },
+			/* IX */ { true, true, false, false, false },
+			/* S */ { true, false, true, false, false },
+			/* SIX */ { true, false, false, false, false },
+			/* X */ { false, false, false, false, false } };
+
+	/**
+	 * Checks if the mode can be held on a resource by one transaction while
+	 * another transaction holds it in the other mode.
+	 *
+	 * @param other
+	 *            the other mode
+	 * @return true, if the modes are compatible
+	 */
+	public boolean isCompatibleWith(LockMode other) {
+		return COMPATIBLE[ordinal()][other.ordinal()];
+	}
+
+	/**
+	 * Gets the weakest mode granting everything both modes grant, i.e. the mode
+	 * a lock held in this mode is upgraded to when the other is requested.
+	 *
+	 * @param other
+	 *            the other mode
+	 * @return the combined mode
+	 */
+	public LockMode combine(LockMode other) {
+		if (this == other || other == IS) {
+			return this;
+		}
+
+		if (this == IS) {
+			return other;
+		}
+
+		if (this == X || other == X) {
+			return X;
+		}
+
+		// The remaining pairs are drawn from IX, S and SIX and differ
+		return SIX;
+	}
+
+	/**
+	 * Checks if holding the mode grants everything the other mode grants.
+	 *
+	 * @param other
+	 *            the other mode
+	 * @return true, if the mode covers the other
+	 */
+	public boolean covers(LockMode other) {
+		return combine(other) == this;
+	}
+}
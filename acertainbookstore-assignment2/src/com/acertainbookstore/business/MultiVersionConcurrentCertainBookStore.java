@@ -0,0 +1,756 @@
+package com.acertainbookstore.business;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+import com.acertainbookstore.interfaces.BookStore;
+import com.acertainbookstore.interfaces.StockManager;
+import com.acertainbookstore.utils.BookStoreConstants;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreUtility;
+
+/**
+ * {@link MultiVersionConcurrentCertainBookStore} implements the {@link BookStore}
+ * and {@link StockManager} functionalities using multi-version concurrency
+ * control.
+ *
+ * Every write creates new versions of the {@link BookStoreBook}s it touches and
+ * publishes them all at once by advancing the committed version. Readers take
+ * the committed version as their snapshot and never lock: for every book they
+ * return the newest version that is not newer than the snapshot. Writers are
+ * serialized by a single lock.
+ *
+ * Old versions are pruned once {@link #RETAINED_VERSIONS} newer commits exist.
+ * A reader whose snapshot became that old while it was running notices it
+ * through the prune watermark and retries with a fresh snapshot.
+ *
+ * @see BookStore
+ * @see StockManager
+ */
+public class MultiVersionConcurrentCertainBookStore implements BookStore, StockManager {
+
+	/** The number of commits for which a snapshot is guaranteed to be readable. */
+	private static final long RETAINED_VERSIONS = 64;
+
+	/** The number of lock-free attempts a reader makes before taking the write lock. */
+	private static final int MAX_SNAPSHOT_ATTEMPTS = 8;
+
+	/** The mapping of books from ISBN to the newest version of the book. */
+	private final ConcurrentMap<Integer, BookVersion> versionMap;
+
+	/** The removal markers which are not yet reclaimed, oldest first. */
+	private final Deque<BookVersion> removedVersions;
+
+	/**
+	 * The newest versions of the books ordered by average rating. It is kept
+	 * up to date by the commits, and read under the write lock.
+	 */
+	private final TopRatedIndex topRatedIndex = new TopRatedIndex();
+
+	/** The lock serializing the writers. */
+	private final ReentrantLock writeLock = new ReentrantLock();
+
+	/** The version of the newest committed snapshot. */
+	private volatile long committedVersion = 0;
+
+	/** Snapshots older than the watermark may miss pruned versions. */
+	private volatile long pruneWatermark = 0;
+
+	/**
+	 * A version of a book. A version without a book marks the removal of the
+	 * book from the store.
+	 */
+	private static final class BookVersion {
+
+		/** The ISBN. */
+		private final int isbn;
+
+		/** The version in which the book was written. */
+		private final long version;
+
+		/** The book, null if the book was removed. */
+		private final BookStoreBook book;
+
+		/** The previous version of the book. */
+		private volatile BookVersion previous;
+
+		/**
+		 * Instantiates a new {@link BookVersion}.
+		 *
+		 * @param isbn
+		 *            the ISBN
+		 * @param version
+		 *            the version
+		 * @param book
+		 *            the book, null if the book was removed
+		 * @param previous
+		 *            the previous version
+		 */
+		private BookVersion(int isbn, long version, BookStoreBook book, BookVersion previous) {
+			this.isbn = isbn;
+			this.version = version;
+			this.book = book;
+			this.previous = previous;
+		}
+	}
+
+	/**
+	 * A read which is evaluated against a snapshot.
+	 *
+	 * @param <T>
+	 *            the result type
+	 */
+	@FunctionalInterface
+	private interface SnapshotRead<T> {
+
+		/**
+		 * Evaluates the read.
+		 *
+		 * @param snapshot
+		 *            the snapshot version
+		 * @return the result
+		 * @throws BookStoreException
+		 *             the book store exception
+		 */
+		T apply(long snapshot) throws BookStoreException;
+	}
+
+	/**
+	 * Instantiates a new {@link MultiVersionConcurrentCertainBookStore}.
+	 */
+	public MultiVersionConcurrentCertainBookStore() {
+		// Constructors are not synchronized
+		versionMap = new ConcurrentHashMap<>();
+		removedVersions = new ArrayDeque<>();
+	}
+
+	private void validate(StockBook book) throws BookStoreException {
+		int isbn = book.getISBN();
+		String bookTitle = book.getTitle();
+		String bookAuthor = book.getAuthor();
+		int noCopies = book.getNumCopies();
+		float bookPrice = book.getPrice();
+
+		if (BookStoreUtility.isInvalidISBN(isbn)) { // Check if the book has valid ISBN
+			throw new BookStoreException(BookStoreConstants.ISBN + isbn + BookStoreConstants.INVALID);
+		}
+
+		if (BookStoreUtility.isEmpty(bookTitle)) { // Check if the book has valid title
+			throw new BookStoreException(BookStoreConstants.BOOK + book.toString() + BookStoreConstants.INVALID);
+		}
+
+		if (BookStoreUtility.isEmpty(bookAuthor)) { // Check if the book has valid author
+			throw new BookStoreException(BookStoreConstants.BOOK + book.toString() + BookStoreConstants.INVALID);
+		}
+
+		if (BookStoreUtility.isInvalidNoCopies(noCopies)) { // Check if the book has at least one copy
+			throw new BookStoreException(BookStoreConstants.BOOK + book.toString() + BookStoreConstants.INVALID);
+		}
+
+		if (bookPrice < 0.0) { // Check if the price of the book is valid
+			throw new BookStoreException(BookStoreConstants.BOOK + book.toString() + BookStoreConstants.INVALID);
+		}
+
+		if (getLatestBook(isbn) != null) {// Check if the book is not in stock
+			throw new BookStoreException(BookStoreConstants.ISBN + isbn + BookStoreConstants.DUPLICATED);
+		}
+	}
+
+	private void validate(BookCopy bookCopy) throws BookStoreException {
+		int isbn = bookCopy.getISBN();
+		int numCopies = bookCopy.getNumCopies();
+
+		validateISBNInStock(isbn, committedVersion); // Check if the book has valid ISBN and in stock
+
+		if (BookStoreUtility.isInvalidNoCopies(numCopies)) { // Check if the number of the book copy is larger than zero
+			throw new BookStoreException(BookStoreConstants.NUM_COPIES + numCopies + BookStoreConstants.INVALID);
+		}
+	}
+
+	private void validate(BookRating bookRating) throws BookStoreException {
+		int isbn = bookRating.getISBN();
+		int rating = bookRating.getRating();
+
+		validateISBNInStock(isbn, committedVersion); // Check if the book has valid ISBN and in stock
+
+		if (BookStoreUtility.isInvalidRating(rating)) { // Check if the rating is valid
+			throw new BookStoreException(BookStoreConstants.RATING + rating + BookStoreConstants.INVALID);
+		}
+	}
+
+	private void validate(BookEditorPick editorPickArg) throws BookStoreException {
+		int isbn = editorPickArg.getISBN();
+		validateISBNInStock(isbn, committedVersion); // Check if the book has valid ISBN and in stock
+	}
+
+	private BookStoreBook validateISBNInStock(Integer ISBN, long snapshot) throws BookStoreException {
+		if (BookStoreUtility.isInvalidISBN(ISBN)) { // Check if the book has valid ISBN
+			throw new BookStoreException(BookStoreConstants.ISBN + ISBN + BookStoreConstants.INVALID);
+		}
+
+		BookStoreBook book = getVisibleBook(versionMap.get(ISBN), snapshot);
+
+		if (book == null) {// Check if the book is in stock
+			throw new BookStoreException(BookStoreConstants.ISBN + ISBN + BookStoreConstants.NOT_AVAILABLE);
+		}
+
+		return book;
+	}
+
+	/**
+	 * Gets the version of the book which is visible in the snapshot.
+	 *
+	 * @param version
+	 *            the newest version of the book
+	 * @param snapshot
+	 *            the snapshot version
+	 * @return the book, or null if the book is not in the snapshot
+	 */
+	private static BookStoreBook getVisibleBook(BookVersion version, long snapshot) {
+		while (version != null && version.version > snapshot) {
+			version = version.previous;
+		}
+
+		return version == null ? null : version.book;
+	}
+
+	/**
+	 * Gets the newest version of the book. Must be called with the write lock
+	 * held.
+	 *
+	 * @param isbn
+	 *            the ISBN
+	 * @return the book, or null if the book is not in the store
+	 */
+	private BookStoreBook getLatestBook(int isbn) {
+		BookVersion version = versionMap.get(isbn);
+		return version == null ? null : version.book;
+	}
+
+	/**
+	 * Creates a new, not yet published, version of the book.
+	 *
+	 * @param book
+	 *            the book
+	 * @return the new version of the book
+	 */
+	private static BookStoreBook newVersion(BookStoreBook book) {
+		return new BookStoreBook(book.immutableStockBook());
+	}
+
+	/**
+	 * Evaluates a read against a consistent snapshot without locking. The read
+	 * is retried if versions it may have needed were pruned while it ran, and
+	 * evaluated under the write lock if that keeps happening.
+	 *
+	 * @param read
+	 *            the read
+	 * @return the result of the read
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	private <T> T readSnapshot(SnapshotRead<T> read) throws BookStoreException {
+		for (int attempt = 0; attempt < MAX_SNAPSHOT_ATTEMPTS; attempt++) {
+			long snapshot = committedVersion;
+
+			try {
+				T result = read.apply(snapshot);
+
+				if (snapshot >= pruneWatermark) {
+					return result;
+				}
+			} catch (BookStoreException ex) {
+				if (snapshot >= pruneWatermark) {
+					throw ex;
+				}
+			}
+		}
+
+		// The writers keep pruning the snapshots away, so read the newest one
+		// while holding them off.
+		writeLock.lock();
+
+		try {
+			return read.apply(committedVersion);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Publishes the new versions of the books as one snapshot, and prunes the
+	 * versions no longer needed. Must be called with the write lock held.
+	 *
+	 * @param writes
+	 *            the new versions by ISBN, null values remove the book
+	 */
+	private void commit(Map<Integer, BookStoreBook> writes) {
+		long version = committedVersion + 1;
+		long horizon = version - RETAINED_VERSIONS;
+
+		for (Map.Entry<Integer, BookStoreBook> write : writes.entrySet()) {
+			BookVersion previous = versionMap.get(write.getKey());
+			BookVersion next = new BookVersion(write.getKey(), version, write.getValue(), previous);
+			versionMap.put(write.getKey(), next);
+
+			if (write.getValue() == null) {
+				removedVersions.addLast(next);
+				topRatedIndex.remove(write.getKey());
+			} else {
+				topRatedIndex.put(write.getKey(), write.getValue().getAverageRating());
+			}
+
+			prune(previous, horizon);
+		}
+
+		// The new versions become visible to the readers at once
+		committedVersion = version;
+
+		// Reclaim the books removed before any readable snapshot
+		while (!removedVersions.isEmpty() && removedVersions.peekFirst().version <= horizon) {
+			BookVersion removed = removedVersions.pollFirst();
+			raisePruneWatermark(removed.version);
+			versionMap.remove(removed.isbn, removed);
+		}
+	}
+
+	/**
+	 * Drops the versions of a book which no snapshot newer than the horizon can
+	 * see.
+	 *
+	 * @param version
+	 *            the newest version of the book
+	 * @param horizon
+	 *            the oldest snapshot which must stay readable
+	 */
+	private void prune(BookVersion version, long horizon) {
+		while (version != null && version.version > horizon) {
+			version = version.previous;
+		}
+
+		if (version != null && version.previous != null) {
+			// Raise the watermark first, so a reader that sees the cut also
+			// sees that its snapshot is stale
+			raisePruneWatermark(horizon);
+			version.previous = null;
+		}
+	}
+
+	private void raisePruneWatermark(long version) {
+		if (version > pruneWatermark) {
+			pruneWatermark = version;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.StockManager#addBooks(java.util.Set)
+	 */
+	public void addBooks(Set<StockBook> bookSet) throws BookStoreException {
+		if (bookSet == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		writeLock.lock();
+
+		try {
+			// Check if all are there
+			for (StockBook book : bookSet) {
+				validate(book);
+			}
+
+			Map<Integer, BookStoreBook> writes = new HashMap<>();
+
+			for (StockBook book : bookSet) {
+				writes.put(book.getISBN(), new BookStoreBook(book));
+			}
+
+			commit(writes);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.StockManager#addCopies(java.util.Set)
+	 */
+	public void addCopies(Set<BookCopy> bookCopiesSet) throws BookStoreException {
+		if (bookCopiesSet == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		writeLock.lock();
+
+		try {
+			for (BookCopy bookCopy : bookCopiesSet) {
+				validate(bookCopy);
+			}
+
+			Map<Integer, BookStoreBook> writes = new HashMap<>();
+
+			// Update the number of copies
+			for (BookCopy bookCopy : bookCopiesSet) {
+				BookStoreBook book = writes.computeIfAbsent(bookCopy.getISBN(),
+						isbn -> newVersion(getLatestBook(isbn)));
+				book.addCopies(bookCopy.getNumCopies());
+			}
+
+			commit(writes);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.interfaces.StockManager#getBooks()
+	 */
+	public List<StockBook> getBooks() throws BookStoreException {
+		return readSnapshot(snapshot -> {
+			List<StockBook> books = new ArrayList<>();
+
+			for (BookVersion version : versionMap.values()) {
+				BookStoreBook book = getVisibleBook(version, snapshot);
+
+				if (book != null) {
+					books.add(book.immutableStockBook());
+				}
+			}
+
+			return books;
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.StockManager#updateEditorPicks(java.util
+	 * .Set)
+	 */
+	public void updateEditorPicks(Set<BookEditorPick> editorPicks) throws BookStoreException {
+		// Check that all ISBNs that we add/remove are there first.
+		if (editorPicks == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		writeLock.lock();
+
+		try {
+			for (BookEditorPick editorPickArg : editorPicks) {
+				validate(editorPickArg);
+			}
+
+			Map<Integer, BookStoreBook> writes = new HashMap<>();
+
+			for (BookEditorPick editorPickArg : editorPicks) {
+				BookStoreBook book = writes.computeIfAbsent(editorPickArg.getISBN(),
+						isbn -> newVersion(getLatestBook(isbn)));
+				book.setEditorPick(editorPickArg.isEditorPick());
+			}
+
+			commit(writes);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.interfaces.BookStore#buyBooks(java.util.Set)
+	 */
+	public void buyBooks(Set<BookCopy> bookCopiesToBuy) throws BookStoreException {
+		if (bookCopiesToBuy == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		writeLock.lock();
+
+		try {
+			// Check that all ISBNs that we buy are there first.
+			int isbn;
+			BookStoreBook book;
+			Boolean saleMiss = false;
+
+			Map<Integer, Integer> salesMisses = new HashMap<>();
+
+			for (BookCopy bookCopyToBuy : bookCopiesToBuy) {
+				isbn = bookCopyToBuy.getISBN();
+
+				validate(bookCopyToBuy);
+
+				book = getLatestBook(isbn);
+
+				if (!book.areCopiesInStore(bookCopyToBuy.getNumCopies())) {
+					// If we cannot sell the copies of the book, it is a miss.
+					salesMisses.put(isbn, bookCopyToBuy.getNumCopies() - book.getNumCopies());
+					saleMiss = true;
+				}
+			}
+
+			Map<Integer, BookStoreBook> writes = new HashMap<>();
+
+			// We throw exception now since we want to see how many books in the
+			// order incurred misses which is used by books in demand
+			if (saleMiss) {
+				for (Map.Entry<Integer, Integer> saleMissEntry : salesMisses.entrySet()) {
+					book = newVersion(getLatestBook(saleMissEntry.getKey()));
+					book.addSaleMiss(saleMissEntry.getValue());
+					writes.put(saleMissEntry.getKey(), book);
+				}
+
+				commit(writes);
+				throw new BookStoreException(BookStoreConstants.BOOK + BookStoreConstants.NOT_AVAILABLE);
+			}
+
+			// Then make the purchase.
+			for (BookCopy bookCopyToBuy : bookCopiesToBuy) {
+				book = writes.computeIfAbsent(bookCopyToBuy.getISBN(), key -> newVersion(getLatestBook(key)));
+				book.buyCopies(bookCopyToBuy.getNumCopies());
+			}
+
+			commit(writes);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.StockManager#getBooksByISBN(java.util.
+	 * Set)
+	 */
+	public List<StockBook> getBooksByISBN(Set<Integer> isbnSet) throws BookStoreException {
+		if (isbnSet == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		return readSnapshot(snapshot -> {
+			List<StockBook> books = new ArrayList<>();
+
+			for (Integer ISBN : isbnSet) {
+				books.add(validateISBNInStock(ISBN, snapshot).immutableStockBook());
+			}
+
+			return books;
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.interfaces.BookStore#getBooks(java.util.Set)
+	 */
+	public List<Book> getBooks(Set<Integer> isbnSet) throws BookStoreException {
+		if (isbnSet == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		return readSnapshot(snapshot -> {
+			List<Book> books = new ArrayList<>();
+
+			// Check that all ISBNs that we rate are there to start with.
+			for (Integer ISBN : isbnSet) {
+				books.add(validateISBNInStock(ISBN, snapshot).immutableBook());
+			}
+
+			return books;
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.interfaces.BookStore#getEditorPicks(int)
+	 */
+	public List<Book> getEditorPicks(int numBooks) throws BookStoreException {
+		if (numBooks < 0) {
+			throw new BookStoreException("numBooks = " + numBooks + ", but it must be positive");
+		}
+
+		return readSnapshot(snapshot -> {
+			List<BookStoreBook> listAllEditorPicks = new ArrayList<>();
+
+			for (BookVersion version : versionMap.values()) {
+				BookStoreBook book = getVisibleBook(version, snapshot);
+
+				if (book != null && book.isEditorPick()) {
+					listAllEditorPicks.add(book);
+				}
+			}
+
+			// Find numBooks random indices of books that will be picked.
+			Random rand = new Random();
+			Set<Integer> tobePicked = new HashSet<>();
+			int rangePicks = listAllEditorPicks.size();
+
+			if (rangePicks <= numBooks) {
+
+				// We need to add all books.
+				for (int i = 0; i < listAllEditorPicks.size(); i++) {
+					tobePicked.add(i);
+				}
+			} else {
+
+				// We need to pick randomly the books that need to be returned.
+				int randNum;
+
+				while (tobePicked.size() < numBooks) {
+					randNum = rand.nextInt(rangePicks);
+					tobePicked.add(randNum);
+				}
+			}
+
+			// Return all the books by the randomly chosen indices.
+			return tobePicked.stream()
+					.map(index -> (Book) listAllEditorPicks.get(index).immutableBook())
+					.collect(Collectors.toList());
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.interfaces.BookStore#getTopRatedBooks(int)
+	 */
+	@Override
+	public List<Book> getTopRatedBooks(int numBooks) throws BookStoreException {
+		if (numBooks < 0) {
+			throw new BookStoreException("numBooks = " + numBooks + ", but it must be positive");
+		}
+
+		// The index only holds the newest versions, so read it between commits
+		writeLock.lock();
+
+		try {
+			return topRatedIndex.getTopISBNs(numBooks).stream()
+					.map(isbn -> (Book) getLatestBook(isbn).immutableBook())
+					.collect(Collectors.toList());
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.interfaces.StockManager#getBooksInDemand()
+	 */
+	@Override
+	public List<StockBook> getBooksInDemand() throws BookStoreException {
+		throw new BookStoreException();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.interfaces.BookStore#rateBooks(java.util.Set)
+	 */
+	@Override
+	public void rateBooks(Set<BookRating> bookRating) throws BookStoreException {
+		if (bookRating == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		writeLock.lock();
+
+		try {
+			for (BookRating bookToRate : bookRating) {
+				// Check whether the book is in stock.
+				validate(bookToRate);
+			}
+
+			Map<Integer, BookStoreBook> writes = new HashMap<>();
+
+			// Then make the rating.
+			for (BookRating bookToRate : bookRating) {
+				BookStoreBook book = writes.computeIfAbsent(bookToRate.getISBN(),
+						isbn -> newVersion(getLatestBook(isbn)));
+				book.addRating(bookToRate.getRating());
+			}
+
+			commit(writes);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.interfaces.StockManager#removeAllBooks()
+	 */
+	public void removeAllBooks() throws BookStoreException {
+		writeLock.lock();
+
+		try {
+			Map<Integer, BookStoreBook> writes = new HashMap<>();
+
+			for (BookVersion version : versionMap.values()) {
+				if (version.book != null) {
+					writes.put(version.isbn, null);
+				}
+			}
+
+			commit(writes);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.StockManager#removeBooks(java.util.Set)
+	 */
+	public void removeBooks(Set<Integer> isbnSet) throws BookStoreException {
+		if (isbnSet == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		writeLock.lock();
+
+		try {
+			for (Integer ISBN : isbnSet) {
+				if (BookStoreUtility.isInvalidISBN(ISBN)) {
+					throw new BookStoreException(BookStoreConstants.ISBN + ISBN + BookStoreConstants.INVALID);
+				}
+
+				if (getLatestBook(ISBN) == null) {
+					throw new BookStoreException(BookStoreConstants.ISBN + ISBN + BookStoreConstants.NOT_AVAILABLE);
+				}
+			}
+
+			Map<Integer, BookStoreBook> writes = new HashMap<>();
+
+			for (int isbn : isbnSet) {
+				writes.put(isbn, null);
+			}
+
+			commit(writes);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+}
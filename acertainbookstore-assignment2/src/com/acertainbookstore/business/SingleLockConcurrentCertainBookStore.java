@@ -19,6 +19,7 @@ import com.acertainbookstore.interfaces.StockManager;
 import com.acertainbookstore.utils.BookStoreConstants;
 import com.acertainbookstore.utils.BookStoreException;
 import com.acertainbookstore.utils.BookStoreUtility;
+import com.acertainbookstore.utils.IntHashMap;
 
 /** {@link SingleLockConcurrentCertainBookStore} implements the {@link BookStore} and
  * {@link StockManager} functionalities.
@@ -29,17 +30,25 @@ import com.acertainbookstore.utils.BookStoreUtility;
 public class SingleLockConcurrentCertainBookStore implements BookStore, StockManager {
 
 	/** The mapping of books from ISBN to {@link BookStoreBook}. */
-	private Map<Integer, BookStoreBook> bookMap = null;
+	private IntHashMap<BookStoreBook> bookMap = null;
+
+	/** The books ordered by average rating. */
+	private TopRatedIndex topRatedIndex = null;
 
 	/** The read-write lock. */
 	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
+	/** The combiner applying concurrent purchases under one write lock acquisition. */
+	private final FlatCombiner<Set<BookCopy>> buyBooksCombiner = new FlatCombiner<>(lock.writeLock(),
+			this::buyBooksLocked);
+
 	/**
 	 * Instantiates a new {@link CertainBookStore}.
 	 */
 	public SingleLockConcurrentCertainBookStore() {
 		// Constructors are not synchronized
-		bookMap = new HashMap<>();
+		bookMap = new IntHashMap<>();
+		topRatedIndex = new TopRatedIndex();
 	}
 
 	private void validate(StockBook book) throws BookStoreException {
@@ -85,6 +94,17 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 		}
 	}
 	
+	private void validate(BookRating bookRating) throws BookStoreException {
+		int isbn = bookRating.getISBN();
+		int rating = bookRating.getRating();
+
+		validateISBNInStock(isbn); // Check if the book has valid ISBN and in stock
+
+		if (BookStoreUtility.isInvalidRating(rating)) { // Check if the rating is valid
+			throw new BookStoreException(BookStoreConstants.RATING + rating + BookStoreConstants.INVALID);
+		}
+	}
+
 	private void validate(BookEditorPick editorPickArg) throws BookStoreException {
 		int isbn = editorPickArg.getISBN();
 		validateISBNInStock(isbn); // Check if the book has valid ISBN and in stock
@@ -122,7 +142,9 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 
 			for (StockBook book : bookSet) {
 				int isbn = book.getISBN();
-				bookMap.put(isbn, new BookStoreBook(book));
+				BookStoreBook bookStoreBook = new BookStoreBook(book);
+				bookMap.put(isbn, bookStoreBook);
+				topRatedIndex.put(isbn, bookStoreBook.getAverageRating());
 			}
 		} finally {
 			// release lock
@@ -219,51 +241,58 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 	 * @see com.acertainbookstore.interfaces.BookStore#buyBooks(java.util.Set)
 	 */
 	public void buyBooks(Set<BookCopy> bookCopiesToBuy) throws BookStoreException {
-		lock.writeLock().lock();
+		if (bookCopiesToBuy == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
 
-		try {
-			if (bookCopiesToBuy == null) {
-				throw new BookStoreException(BookStoreConstants.NULL_INPUT);
-			}
+		// Concurrent purchases are applied together, each on its own
+		buyBooksCombiner.execute(bookCopiesToBuy);
+	}
 
-			// Check that all ISBNs that we buy are there first.
-			int isbn;
-			BookStoreBook book;
-			Boolean saleMiss = false;
+	/**
+	 * Buys the books, all or nothing, while the write lock is held.
+	 *
+	 * @param bookCopiesToBuy
+	 *            the book copies to buy
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	private void buyBooksLocked(Set<BookCopy> bookCopiesToBuy) throws BookStoreException {
+		// Check that all ISBNs that we buy are there first.
+		int isbn;
+		BookStoreBook book;
+		Boolean saleMiss = false;
 
-			Map<Integer, Integer> salesMisses = new HashMap<>();
+		Map<Integer, Integer> salesMisses = new HashMap<>();
 
-			for (BookCopy bookCopyToBuy : bookCopiesToBuy) {
-				isbn = bookCopyToBuy.getISBN();
+		for (BookCopy bookCopyToBuy : bookCopiesToBuy) {
+			isbn = bookCopyToBuy.getISBN();
 
-				validate(bookCopyToBuy);
+			validate(bookCopyToBuy);
 
-				book = bookMap.get(isbn);
+			book = bookMap.get(isbn);
 
-				if (!book.areCopiesInStore(bookCopyToBuy.getNumCopies())) {
-					// If we cannot sell the copies of the book, it is a miss.
-					salesMisses.put(isbn, bookCopyToBuy.getNumCopies() - book.getNumCopies());
-					saleMiss = true;
-				}
+			if (!book.areCopiesInStore(bookCopyToBuy.getNumCopies())) {
+				// If we cannot sell the copies of the book, it is a miss.
+				salesMisses.put(isbn, bookCopyToBuy.getNumCopies() - book.getNumCopies());
+				saleMiss = true;
 			}
+		}
 
-			// We throw exception now since we want to see how many books in the
-			// order incurred misses which is used by books in demand
-			if (saleMiss) {
-				for (Map.Entry<Integer, Integer> saleMissEntry : salesMisses.entrySet()) {
-					book = bookMap.get(saleMissEntry.getKey());
-					book.addSaleMiss(saleMissEntry.getValue());
-				}
-				throw new BookStoreException(BookStoreConstants.BOOK + BookStoreConstants.NOT_AVAILABLE);
+		// We throw exception now since we want to see how many books in the
+		// order incurred misses which is used by books in demand
+		if (saleMiss) {
+			for (Map.Entry<Integer, Integer> saleMissEntry : salesMisses.entrySet()) {
+				book = bookMap.get(saleMissEntry.getKey());
+				book.addSaleMiss(saleMissEntry.getValue());
 			}
+			throw new BookStoreException(BookStoreConstants.BOOK + BookStoreConstants.NOT_AVAILABLE);
+		}
 
-			// Then make the purchase.
-			for (BookCopy bookCopyToBuy : bookCopiesToBuy) {
-				book = bookMap.get(bookCopyToBuy.getISBN());
-				book.buyCopies(bookCopyToBuy.getNumCopies());
-			}
-		} finally {
-			lock.writeLock().unlock();
+		// Then make the purchase.
+		for (BookCopy bookCopyToBuy : bookCopiesToBuy) {
+			book = bookMap.get(bookCopyToBuy.getISBN());
+			book.buyCopies(bookCopyToBuy.getNumCopies());
 		}
 	}
 
@@ -333,8 +362,7 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 				throw new BookStoreException("numBooks = " + numBooks + ", but it must be positive");
 			}
 
-			List<BookStoreBook> listAllEditorPicks = bookMap.entrySet().stream()
-					.map(pair -> pair.getValue())
+			List<BookStoreBook> listAllEditorPicks = bookMap.values().stream()
 					.filter(book -> book.isEditorPick())
 					.collect(Collectors.toList());
 
@@ -376,7 +404,19 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 	 */
 	@Override
 	public List<Book> getTopRatedBooks(int numBooks) throws BookStoreException {
-		throw new BookStoreException();
+		if (numBooks < 0) {
+			throw new BookStoreException("numBooks = " + numBooks + ", but it must be positive");
+		}
+
+		lock.readLock().lock();
+
+		try {
+			return topRatedIndex.getTopISBNs(numBooks).stream()
+					.map(isbn -> bookMap.get(isbn).immutableBook())
+					.collect(Collectors.toList());
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
 	/*
@@ -396,7 +436,27 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 	 */
 	@Override
 	public void rateBooks(Set<BookRating> bookRating) throws BookStoreException {
-		throw new BookStoreException();
+		if (bookRating == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		lock.writeLock().lock();
+
+		try {
+			for (BookRating bookToRate : bookRating) {
+				// Check whether the book is in stock.
+				validate(bookToRate);
+			}
+
+			// Then make the rating.
+			for (BookRating bookToRate : bookRating) {
+				BookStoreBook book = bookMap.get(bookToRate.getISBN());
+				book.addRating(bookToRate.getRating());
+				topRatedIndex.put(bookToRate.getISBN(), book.getAverageRating());
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	/*
@@ -409,6 +469,7 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 
 		try {
 			bookMap.clear();
+			topRatedIndex.clear();
 		} finally {
 			lock.writeLock().unlock();
 		}
@@ -441,6 +502,7 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 
 			for (int isbn : isbnSet) {
 				bookMap.remove(isbn);
+				topRatedIndex.remove(isbn);
 			}
 		} finally {
 			lock.writeLock().unlock();
@@ -0,0 +1,830 @@
+package com.acertainbookstore.business;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+import com.acertainbookstore.interfaces.BookStore;
+import com.acertainbookstore.interfaces.StockManager;
+import com.acertainbookstore.utils.BookStoreConstants;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreUtility;
+import com.acertainbookstore.utils.IntHashMap;
+
+/**
+ * {@link SingleWriterConcurrentCertainBookStore} implements the
+ * {@link BookStore} and {@link StockManager} functionalities.
+ *
+ * All updates are put as commands on a bounded ring buffer, and applied one
+ * after the other by a single writer thread, which alone owns the
+ * unsynchronized mapping of books. After each batch of commands, the writer
+ * publishes an immutable {@link Snapshot} of the books, on which all reads are
+ * evaluated without taking any lock. A caller of an update waits until its
+ * command is applied and published, so it reads its own writes.
+ *
+ * The writer thread runs until {@link #shutdown()} is called; the updates
+ * submitted before are still applied, and those submitted after fail.
+ *
+ * @see BookStore
+ * @see StockManager
+ */
+public class SingleWriterConcurrentCertainBookStore implements BookStore, StockManager {
+
+	/** The number of commands the ring buffer holds, a power of two. */
+	private static final int RING_CAPACITY = 1024;
+
+	/** The maximum number of commands applied before a snapshot is published. */
+	private static final int MAX_BATCH_SIZE = 256;
+
+	/** The number of segments of a snapshot, a power of two. */
+	private static final int NUM_SEGMENTS = 64;
+
+	/**
+	 * The mapping of books from ISBN to {@link BookStoreBook}, only accessed
+	 * by the writer thread.
+	 */
+	private final IntHashMap<BookStoreBook> bookMap = new IntHashMap<>();
+
+	/**
+	 * The books ordered by average rating, only accessed by the writer
+	 * thread.
+	 */
+	private final TopRatedIndex topRatedIndex = new TopRatedIndex();
+
+	/** The commands waiting to be applied. */
+	private final CommandRing commands = new CommandRing(RING_CAPACITY);
+
+	/** The latest published snapshot. */
+	private volatile Snapshot snapshot = new Snapshot();
+
+	/** The writer thread. */
+	private final Thread writer;
+
+	/** Whether the store is shut down. */
+	private volatile boolean shutDown = false;
+
+	/**
+	 * The number of callers submitting a command; the writer does not stop
+	 * while a caller may still put a command on the ring buffer.
+	 */
+	private final AtomicInteger submitting = new AtomicInteger();
+
+	/**
+	 * Instantiates a new {@link SingleWriterConcurrentCertainBookStore} and
+	 * starts its writer thread, which does not keep the JVM alive.
+	 */
+	public SingleWriterConcurrentCertainBookStore() {
+		writer = new Thread(this::runWriter, "SingleWriterConcurrentCertainBookStore-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Shuts the store down: the updates already submitted are applied, the
+	 * writer thread stops, and the updates submitted afterwards fail. Reads
+	 * keep being served from the last snapshot. Waits until the writer thread
+	 * has stopped.
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the writer thread
+	 */
+	public void shutdown() throws InterruptedException {
+		shutDown = true;
+		LockSupport.unpark(writer);
+		writer.join();
+	}
+
+	/**
+	 * An update, applied by the writer thread.
+	 */
+	@FunctionalInterface
+	private interface Update {
+
+		/**
+		 * Applies the update to the books.
+		 *
+		 * @param updatedISBNs
+		 *            the set the ISBNs of the books added, changed or removed
+		 *            are added to, even if the update then fails
+		 * @throws BookStoreException
+		 *             the book store exception
+		 */
+		void apply(Set<Integer> updatedISBNs) throws BookStoreException;
+	}
+
+	/**
+	 * {@link Command} is an update on the ring buffer, with the future its
+	 * caller waits on.
+	 */
+	private static final class Command {
+
+		/** The update. */
+		private final Update update;
+
+		/** Completed once the update is published, or failed. */
+		private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+		private Command(Update update) {
+			this.update = update;
+		}
+	}
+
+	/**
+	 * {@link CommandRing} is a bounded lock-free queue of commands with many
+	 * producers and a single consumer, the writer thread. Each slot has a
+	 * sequence number, telling the producer which round of the ring may fill
+	 * the slot and the consumer when it is filled.
+	 */
+	private static final class CommandRing {
+
+		/** The slots. */
+		private final Command[] slots;
+
+		/** The sequence numbers of the slots. */
+		private final AtomicLongArray sequences;
+
+		/** The mask mapping a position to its slot. */
+		private final int mask;
+
+		/** The next position to fill. */
+		private final AtomicLong tail = new AtomicLong();
+
+		/** The next position to take, only accessed by the consumer. */
+		private long head = 0;
+
+		private CommandRing(int capacity) {
+			slots = new Command[capacity];
+			sequences = new AtomicLongArray(capacity);
+			mask = capacity - 1;
+
+			for (int i = 0; i < capacity; i++) {
+				sequences.set(i, i);
+			}
+		}
+
+		/**
+		 * Puts the command on the ring, unless it is full.
+		 *
+		 * @param command
+		 *            the command
+		 * @return true, if the command was put
+		 */
+		private boolean offer(Command command) {
+			while (true) {
+				long position = tail.get();
+				int index = (int) position & mask;
+				long sequence = sequences.get(index);
+
+				if (sequence == position) {
+					if (tail.compareAndSet(position, position + 1)) {
+						slots[index] = command;
+						// Publishes the command to the consumer
+						sequences.set(index, position + 1);
+						return true;
+					}
+				} else if (sequence < position) {
+					// The slot was not consumed since the last round
+					return false;
+				}
+			}
+		}
+
+		/**
+		 * Takes the next command from the ring.
+		 *
+		 * @return the command, or null if the ring is empty
+		 */
+		private Command poll() {
+			int index = (int) head & mask;
+
+			if (sequences.get(index) != head + 1) {
+				return null;
+			}
+
+			Command command = slots[index];
+			slots[index] = null;
+			// Frees the slot for the next round
+			sequences.set(index, head + slots.length);
+			head++;
+			return command;
+		}
+	}
+
+	/**
+	 * {@link Snapshot} is an immutable mapping of books from ISBN to
+	 * {@link StockBook}. It is split in segments, so that publishing a new
+	 * snapshot only copies the segments holding updated books.
+	 */
+	private static final class Snapshot {
+
+		/** The segments. */
+		private final List<Map<Integer, StockBook>> segments;
+
+		/**
+		 * Instantiates a new empty {@link Snapshot}.
+		 */
+		private Snapshot() {
+			List<Map<Integer, StockBook>> emptySegments = new ArrayList<>(NUM_SEGMENTS);
+
+			for (int i = 0; i < NUM_SEGMENTS; i++) {
+				emptySegments.add(Collections.emptyMap());
+			}
+
+			segments = emptySegments;
+		}
+
+		private Snapshot(List<Map<Integer, StockBook>> segments) {
+			this.segments = segments;
+		}
+
+		private static int getSegment(int isbn) {
+			return isbn & (NUM_SEGMENTS - 1);
+		}
+
+		private StockBook get(int isbn) {
+			return segments.get(getSegment(isbn)).get(isbn);
+		}
+
+		private List<StockBook> getAll() {
+			List<StockBook> books = new ArrayList<>();
+
+			for (Map<Integer, StockBook> segment : segments) {
+				books.addAll(segment.values());
+			}
+
+			return books;
+		}
+
+		/**
+		 * Derives the snapshot of the books after an update.
+		 *
+		 * @param bookMap
+		 *            the books after the update
+		 * @param updatedISBNs
+		 *            the ISBNs of the books added, changed or removed
+		 * @return the new snapshot
+		 */
+		private Snapshot update(IntHashMap<BookStoreBook> bookMap, Set<Integer> updatedISBNs) {
+			List<Map<Integer, StockBook>> newSegments = new ArrayList<>(segments);
+			Set<Integer> copiedSegments = new HashSet<>();
+
+			for (Integer isbn : updatedISBNs) {
+				int index = getSegment(isbn);
+
+				if (copiedSegments.add(index)) {
+					newSegments.set(index, new HashMap<>(segments.get(index)));
+				}
+
+				BookStoreBook book = bookMap.get(isbn);
+
+				if (book == null) {
+					newSegments.get(index).remove(isbn);
+				} else {
+					newSegments.get(index).put(isbn, book.immutableStockBook());
+				}
+			}
+
+			return new Snapshot(newSegments);
+		}
+	}
+
+	/**
+	 * Runs the writer thread: applies the commands in batches, and publishes a
+	 * snapshot after each batch before completing its commands. Stops once the
+	 * store is shut down and no command is left.
+	 */
+	private void runWriter() {
+		List<Command> batch = new ArrayList<>(MAX_BATCH_SIZE);
+		List<Throwable> failures = new ArrayList<>(MAX_BATCH_SIZE);
+		Set<Integer> updatedISBNs = new HashSet<>();
+
+		while (true) {
+			Command command = commands.poll();
+
+			if (command == null) {
+				// A caller seeing the store up has put its command by now
+				if (shutDown && submitting.get() == 0 && (command = commands.poll()) == null) {
+					return;
+				}
+
+				if (command == null) {
+					// Woken up by the producers
+					LockSupport.park(this);
+					continue;
+				}
+			}
+
+			while (command != null) {
+				batch.add(command);
+
+				try {
+					command.update.apply(updatedISBNs);
+					failures.add(null);
+				} catch (BookStoreException ex) {
+					failures.add(ex);
+				} catch (RuntimeException ex) {
+					failures.add(new BookStoreException(ex));
+				} catch (Throwable ex) {
+					failures.add(ex);
+				}
+
+				command = batch.size() < MAX_BATCH_SIZE ? commands.poll() : null;
+			}
+
+			try {
+				if (!updatedISBNs.isEmpty()) {
+					snapshot = snapshot.update(bookMap, updatedISBNs);
+				}
+			} catch (Throwable ex) {
+				// The updates are applied, but cannot be read
+				for (int i = 0; i < batch.size(); i++) {
+					failures.set(i, ex);
+				}
+			}
+
+			for (int i = 0; i < batch.size(); i++) {
+				if (failures.get(i) == null) {
+					batch.get(i).result.complete(null);
+				} else {
+					batch.get(i).result.completeExceptionally(failures.get(i));
+				}
+			}
+
+			batch.clear();
+			failures.clear();
+			updatedISBNs.clear();
+		}
+	}
+
+	/**
+	 * Puts the update on the ring buffer and waits until it is applied and
+	 * published.
+	 *
+	 * @param update
+	 *            the update
+	 * @throws BookStoreException
+	 *             the book store exception of the update, or if the store is
+	 *             shut down
+	 */
+	private void submit(Update update) throws BookStoreException {
+		Command command = new Command(update);
+		submitting.incrementAndGet();
+
+		try {
+			if (shutDown) {
+				throw new BookStoreException(BookStoreConstants.SHUT_DOWN);
+			}
+
+			// Back off while the writer catches up with a full ring
+			while (!commands.offer(command)) {
+				LockSupport.unpark(writer);
+				Thread.yield();
+			}
+		} finally {
+			submitting.decrementAndGet();
+			LockSupport.unpark(writer);
+		}
+
+		try {
+			command.result.join();
+		} catch (CompletionException ex) {
+			Throwable cause = ex.getCause();
+
+			if (cause instanceof BookStoreException) {
+				throw (BookStoreException) cause;
+			}
+
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+
+			throw new BookStoreException(cause);
+		}
+	}
+
+	private void validate(StockBook book) throws BookStoreException {
+		int isbn = book.getISBN();
+		String bookTitle = book.getTitle();
+		String bookAuthor = book.getAuthor();
+		int noCopies = book.getNumCopies();
+		float bookPrice = book.getPrice();
+
+		if (BookStoreUtility.isInvalidISBN(isbn)) { // Check if the book has valid ISBN
+			throw new BookStoreException(BookStoreConstants.ISBN + isbn + BookStoreConstants.INVALID);
+		}
+
+		if (BookStoreUtility.isEmpty(bookTitle)) { // Check if the book has valid title
+			throw new BookStoreException(BookStoreConstants.BOOK + book.toString() + BookStoreConstants.INVALID);
+		}
+
+		if (BookStoreUtility.isEmpty(bookAuthor)) { // Check if the book has valid author
+			throw new BookStoreException(BookStoreConstants.BOOK + book.toString() + BookStoreConstants.INVALID);
+		}
+
+		if (BookStoreUtility.isInvalidNoCopies(noCopies)) { // Check if the book has at least one copy
+			throw new BookStoreException(BookStoreConstants.BOOK + book.toString() + BookStoreConstants.INVALID);
+		}
+
+		if (bookPrice < 0.0) { // Check if the price of the book is valid
+			throw new BookStoreException(BookStoreConstants.BOOK + book.toString() + BookStoreConstants.INVALID);
+		}
+
+		if (bookMap.containsKey(isbn)) {// Check if the book is not in stock
+			throw new BookStoreException(BookStoreConstants.ISBN + isbn + BookStoreConstants.DUPLICATED);
+		}
+	}
+
+	private void validate(BookCopy bookCopy) throws BookStoreException {
+		int isbn = bookCopy.getISBN();
+		int numCopies = bookCopy.getNumCopies();
+
+		validateISBNInStock(isbn); // Check if the book has valid ISBN and in stock
+
+		if (BookStoreUtility.isInvalidNoCopies(numCopies)) { // Check if the number of the book copy is larger than zero
+			throw new BookStoreException(BookStoreConstants.NUM_COPIES + numCopies + BookStoreConstants.INVALID);
+		}
+	}
+
+	private void validate(BookRating bookRating) throws BookStoreException {
+		int isbn = bookRating.getISBN();
+		int rating = bookRating.getRating();
+
+		validateISBNInStock(isbn); // Check if the book has valid ISBN and in stock
+
+		if (BookStoreUtility.isInvalidRating(rating)) { // Check if the rating is valid
+			throw new BookStoreException(BookStoreConstants.RATING + rating + BookStoreConstants.INVALID);
+		}
+	}
+
+	private void validate(BookEditorPick editorPickArg) throws BookStoreException {
+		int isbn = editorPickArg.getISBN();
+		validateISBNInStock(isbn); // Check if the book has valid ISBN and in stock
+	}
+
+	private void validateISBNInStock(Integer ISBN) throws BookStoreException {
+		if (BookStoreUtility.isInvalidISBN(ISBN)) { // Check if the book has valid ISBN
+			throw new BookStoreException(BookStoreConstants.ISBN + ISBN + BookStoreConstants.INVALID);
+		}
+		if (!bookMap.containsKey(ISBN)) {// Check if the book is in stock
+			throw new BookStoreException(BookStoreConstants.ISBN + ISBN + BookStoreConstants.NOT_AVAILABLE);
+		}
+	}
+
+	private static StockBook validateISBNInStock(Integer ISBN, Snapshot snapshot) throws BookStoreException {
+		if (BookStoreUtility.isInvalidISBN(ISBN)) { // Check if the book has valid ISBN
+			throw new BookStoreException(BookStoreConstants.ISBN + ISBN + BookStoreConstants.INVALID);
+		}
+
+		StockBook book = snapshot.get(ISBN);
+
+		if (book == null) {// Check if the book is in stock
+			throw new BookStoreException(BookStoreConstants.ISBN + ISBN + BookStoreConstants.NOT_AVAILABLE);
+		}
+
+		return book;
+	}
+
+	private static Book immutableBook(StockBook book) {
+		return new ImmutableBook(book.getISBN(), book.getTitle(), book.getAuthor(), book.getPrice());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.StockManager#addBooks(java.util.Set)
+	 */
+	public void addBooks(Set<StockBook> bookSet) throws BookStoreException {
+		if (bookSet == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		submit(updatedISBNs -> {
+			// Check if all are there
+			for (StockBook book : bookSet) {
+				validate(book);
+			}
+
+			for (StockBook book : bookSet) {
+				int isbn = book.getISBN();
+				BookStoreBook bookStoreBook = new BookStoreBook(book);
+				bookMap.put(isbn, bookStoreBook);
+				topRatedIndex.put(isbn, bookStoreBook.getAverageRating());
+				updatedISBNs.add(isbn);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.StockManager#addCopies(java.util.Set)
+	 */
+	public void addCopies(Set<BookCopy> bookCopiesSet) throws BookStoreException {
+		if (bookCopiesSet == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		submit(updatedISBNs -> {
+			for (BookCopy bookCopy : bookCopiesSet) {
+				validate(bookCopy);
+			}
+
+			// Update the number of copies
+			for (BookCopy bookCopy : bookCopiesSet) {
+				int isbn = bookCopy.getISBN();
+				bookMap.get(isbn).addCopies(bookCopy.getNumCopies());
+				updatedISBNs.add(isbn);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.interfaces.StockManager#getBooks()
+	 */
+	public List<StockBook> getBooks() throws BookStoreException {
+		return snapshot.getAll();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.StockManager#updateEditorPicks(java.util
+	 * .Set)
+	 */
+	public void updateEditorPicks(Set<BookEditorPick> editorPicks) throws BookStoreException {
+		// Check that all ISBNs that we add/remove are there first.
+		if (editorPicks == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		submit(updatedISBNs -> {
+			for (BookEditorPick editorPickArg : editorPicks) {
+				validate(editorPickArg);
+			}
+
+			for (BookEditorPick editorPickArg : editorPicks) {
+				int isbn = editorPickArg.getISBN();
+				bookMap.get(isbn).setEditorPick(editorPickArg.isEditorPick());
+				updatedISBNs.add(isbn);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.interfaces.BookStore#buyBooks(java.util.Set)
+	 */
+	public void buyBooks(Set<BookCopy> bookCopiesToBuy) throws BookStoreException {
+		if (bookCopiesToBuy == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		submit(updatedISBNs -> {
+			// Check that all ISBNs that we buy are there first.
+			int isbn;
+			BookStoreBook book;
+			Boolean saleMiss = false;
+
+			Map<Integer, Integer> salesMisses = new HashMap<>();
+
+			for (BookCopy bookCopyToBuy : bookCopiesToBuy) {
+				isbn = bookCopyToBuy.getISBN();
+
+				validate(bookCopyToBuy);
+
+				book = bookMap.get(isbn);
+
+				if (!book.areCopiesInStore(bookCopyToBuy.getNumCopies())) {
+					// If we cannot sell the copies of the book, it is a miss.
+					salesMisses.put(isbn, bookCopyToBuy.getNumCopies() - book.getNumCopies());
+					saleMiss = true;
+				}
+			}
+
+			// We throw exception now since we want to see how many books in the
+			// order incurred misses which is used by books in demand
+			if (saleMiss) {
+				for (Map.Entry<Integer, Integer> saleMissEntry : salesMisses.entrySet()) {
+					book = bookMap.get(saleMissEntry.getKey());
+					book.addSaleMiss(saleMissEntry.getValue());
+					updatedISBNs.add(saleMissEntry.getKey());
+				}
+				throw new BookStoreException(BookStoreConstants.BOOK + BookStoreConstants.NOT_AVAILABLE);
+			}
+
+			// Then make the purchase.
+			for (BookCopy bookCopyToBuy : bookCopiesToBuy) {
+				isbn = bookCopyToBuy.getISBN();
+				bookMap.get(isbn).buyCopies(bookCopyToBuy.getNumCopies());
+				updatedISBNs.add(isbn);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.StockManager#getBooksByISBN(java.util.
+	 * Set)
+	 */
+	public List<StockBook> getBooksByISBN(Set<Integer> isbnSet) throws BookStoreException {
+		if (isbnSet == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		Snapshot current = snapshot;
+		List<StockBook> books = new ArrayList<>();
+
+		for (Integer ISBN : isbnSet) {
+			books.add(validateISBNInStock(ISBN, current));
+		}
+
+		return books;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.interfaces.BookStore#getBooks(java.util.Set)
+	 */
+	public List<Book> getBooks(Set<Integer> isbnSet) throws BookStoreException {
+		if (isbnSet == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		Snapshot current = snapshot;
+		List<Book> books = new ArrayList<>();
+
+		// Check that all ISBNs that we rate are there to start with.
+		for (Integer ISBN : isbnSet) {
+			books.add(immutableBook(validateISBNInStock(ISBN, current)));
+		}
+
+		return books;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.interfaces.BookStore#getEditorPicks(int)
+	 */
+	public List<Book> getEditorPicks(int numBooks) throws BookStoreException {
+		if (numBooks < 0) {
+			throw new BookStoreException("numBooks = " + numBooks + ", but it must be positive");
+		}
+
+		List<StockBook> listAllEditorPicks = snapshot.getAll().stream()
+				.filter(book -> book.isEditorPick())
+				.collect(Collectors.toList());
+
+		// Find numBooks random indices of books that will be picked.
+		Random rand = new Random();
+		Set<Integer> tobePicked = new HashSet<>();
+		int rangePicks = listAllEditorPicks.size();
+
+		if (rangePicks <= numBooks) {
+
+			// We need to add all books.
+			for (int i = 0; i < listAllEditorPicks.size(); i++) {
+				tobePicked.add(i);
+			}
+		} else {
+
+			// We need to pick randomly the books that need to be returned.
+			int randNum;
+
+			while (tobePicked.size() < numBooks) {
+				randNum = rand.nextInt(rangePicks);
+				tobePicked.add(randNum);
+			}
+		}
+
+		// Return all the books by the randomly chosen indices.
+		return tobePicked.stream()
+				.map(index -> immutableBook(listAllEditorPicks.get(index)))
+				.collect(Collectors.toList());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.interfaces.BookStore#getTopRatedBooks(int)
+	 */
+	@Override
+	public List<Book> getTopRatedBooks(int numBooks) throws BookStoreException {
+		if (numBooks < 0) {
+			throw new BookStoreException("numBooks = " + numBooks + ", but it must be positive");
+		}
+
+		List<Book> topRatedBooks = new ArrayList<>();
+
+		// The index belongs to the writer thread, so it is read by a command
+		submit(updatedISBNs -> {
+			for (int isbn : topRatedIndex.getTopISBNs(numBooks)) {
+				topRatedBooks.add(bookMap.get(isbn).immutableBook());
+			}
+		});
+
+		return topRatedBooks;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.interfaces.StockManager#getBooksInDemand()
+	 */
+	@Override
+	public List<StockBook> getBooksInDemand() throws BookStoreException {
+		throw new BookStoreException();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.interfaces.BookStore#rateBooks(java.util.Set)
+	 */
+	@Override
+	public void rateBooks(Set<BookRating> bookRating) throws BookStoreException {
+		if (bookRating == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		submit(updatedISBNs -> {
+			for (BookRating bookToRate : bookRating) {
+				// Check whether the book is in stock.
+				validate(bookToRate);
+			}
+
+			// Then make the rating.
+			for (BookRating bookToRate : bookRating) {
+				int isbn = bookToRate.getISBN();
+				BookStoreBook book = bookMap.get(isbn);
+				book.addRating(bookToRate.getRating());
+				topRatedIndex.put(isbn, book.getAverageRating());
+				updatedISBNs.add(isbn);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.interfaces.StockManager#removeAllBooks()
+	 */
+	public void removeAllBooks() throws BookStoreException {
+		submit(updatedISBNs -> {
+			bookMap.forEachKey(updatedISBNs::add);
+			bookMap.clear();
+			topRatedIndex.clear();
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.StockManager#removeBooks(java.util.Set)
+	 */
+	public void removeBooks(Set<Integer> isbnSet) throws BookStoreException {
+		if (isbnSet == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		submit(updatedISBNs -> {
+			for (Integer ISBN : isbnSet) {
+				if (BookStoreUtility.isInvalidISBN(ISBN)) {
+					throw new BookStoreException(BookStoreConstants.ISBN + ISBN + BookStoreConstants.INVALID);
+				}
+
+				if (!bookMap.containsKey(ISBN)) {
+					throw new BookStoreException(BookStoreConstants.ISBN + ISBN + BookStoreConstants.NOT_AVAILABLE);
+				}
+			}
+
+			for (int isbn : isbnSet) {
+				bookMap.remove(isbn);
+				topRatedIndex.remove(isbn);
+				updatedISBNs.add(isbn);
+			}
+		});
+	}
+}
@@ -1,10 +1,5 @@
 package com.acertainbookstore.business;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.concurrent.locks.Lock;
-
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -15,6 +10,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import com.acertainbookstore.interfaces.BookStore;
@@ -22,6 +18,7 @@ import com.acertainbookstore.interfaces.StockManager;
 import com.acertainbookstore.utils.BookStoreConstants;
 import com.acertainbookstore.utils.BookStoreException;
 import com.acertainbookstore.utils.BookStoreUtility;
+import com.acertainbookstore.utils.IntHashMap;
 
 /** {@link TwoLevelLockingConcurrentCertainBookStore} implements the {@link BookStore} and
  * {@link StockManager} functionalities.
@@ -32,26 +29,40 @@ import com.acertainbookstore.utils.BookStoreUtility;
 public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, StockManager {
 
 	/** The mapping of books from ISBN to {@link BookStoreBook}. */
-	private Map<Integer, BookStoreBook> bookMap = null;
+	private IntHashMap<BookStoreBook> bookMap = null;
 
-	// the mapping of books (items in the database) from ISBN to their read-write lock
-	// and use the ConcurrentMap for the Concurrency control
-	private ConcurrentMap<Integer, ReentrantReadWriteLock> lockBookMap;
+	/**
+	 * The books ordered by average rating. Raters of different books hold
+	 * only intention locks on the database, so they update it under its
+	 * monitor.
+	 */
+	private final TopRatedIndex topRatedIndex = new TopRatedIndex();
 
-	/** The intention locks */
-	private final ReentrantReadWriteLock rWLock = new ReentrantReadWriteLock();
-	// IX lock
-	private final Lock intentionXLock = rWLock.writeLock();
-	// IS lock
-	private final Lock intentionSLock = rWLock.readLock();
+	/** The lock manager handing out the database and book locks. */
+	private final LockManager lockManager;
 
 	/**
 	 * Instantiates a new {@link CertainBookStore}.
 	 */
 	public TwoLevelLockingConcurrentCertainBookStore() {
+		this(DeadlockPolicy.DETECTION, LockManager.DEFAULT_LOCK_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * Instantiates a new {@link CertainBookStore}. Operations aborted by the
+	 * deadlock policy or the lock timeout throw a
+	 * {@link com.acertainbookstore.utils.TransactionAbortedException} and can
+	 * be retried.
+	 *
+	 * @param deadlockPolicy
+	 *            the deadlock policy
+	 * @param lockTimeoutMillis
+	 *            the time an operation waits for a lock before it aborts
+	 */
+	public TwoLevelLockingConcurrentCertainBookStore(DeadlockPolicy deadlockPolicy, long lockTimeoutMillis) {
 		// Constructors are not synchronized
-		bookMap = new HashMap<>();
-		lockBookMap = new ConcurrentHashMap<>();
+		bookMap = new IntHashMap<>();
+		lockManager = new LockManager(deadlockPolicy, lockTimeoutMillis);
 	}
 	
 	private void validate(StockBook book) throws BookStoreException {
@@ -97,6 +108,17 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 		}
 	}
 	
+	private void validate(BookRating bookRating) throws BookStoreException {
+		int isbn = bookRating.getISBN();
+		int rating = bookRating.getRating();
+
+		validateISBNInStock(isbn); // Check if the book has valid ISBN and in stock
+
+		if (BookStoreUtility.isInvalidRating(rating)) { // Check if the rating is valid
+			throw new BookStoreException(BookStoreConstants.RATING + rating + BookStoreConstants.INVALID);
+		}
+	}
+
 	private void validate(BookEditorPick editorPickArg) throws BookStoreException {
 		int isbn = editorPickArg.getISBN();
 		validateISBNInStock(isbn); // Check if the book has valid ISBN and in stock
@@ -111,55 +133,17 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 		}
 	}
 
-	private void setLocalReadLock(int isbn) throws BookStoreException {
-		validateISBNInStock(isbn);
-
-		ReentrantReadWriteLock lock = lockBookMap.get(isbn);
-
-		// add IS lock on database
-		intentionSLock.lock();
-		// add read lock on item(each book)
-		lock.readLock().lock();
-	}
-
-	private void releaseLocalReadLock(int isbn) {
-		if (!lockBookMap.containsKey(isbn)) {
-			return;
-		}
-
-		ReentrantReadWriteLock lock = lockBookMap.get(isbn);
-
-		try {
-			// release read lock on each book
-			lock.readLock().unlock();
-			// release read lock on database
-			intentionSLock.unlock();
-		} catch (IllegalMonitorStateException e) {
-			;
-		}
-	}
-
-	private void setLocalWriteLock(int isbn) throws BookStoreException {
-		validateISBNInStock(isbn);
-
-		ReentrantReadWriteLock lock = lockBookMap.get(isbn);
-
-		intentionSLock.lock();
-		lock.writeLock().lock();
-	}
-
-	private void releaseLocalWriteLock(int isbn) {
-		if (!lockBookMap.containsKey(isbn)) {
-			return;
-		}
-		ReentrantReadWriteLock lock = lockBookMap.get(isbn);
-
-		try {
-			lock.writeLock().unlock();
-			intentionSLock.unlock();
-		} catch (IllegalMonitorStateException e) {
-			;
-		}
+	/**
+	 * Collects the ISBNs of the books the arguments refer to.
+	 *
+	 * @param arguments
+	 *            the arguments
+	 * @param getISBN
+	 *            the function extracting the ISBN of an argument
+	 * @return the ISBNs
+	 */
+	private static <T> Set<Integer> getISBNs(Set<T> arguments, Function<T, Integer> getISBN) {
+		return arguments.stream().map(getISBN).collect(Collectors.toSet());
 	}
 
 	/*
@@ -173,11 +157,11 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
 		}
 
-		// add exclusive mode lock(IX lock) on database
-		intentionXLock.lock();
+		// use try-with-resources to ensure the locks are released in any situation
+		try (LockManager.Transaction transaction = lockManager.begin()) {
+			// take the database exclusively, as the set of books changes
+			transaction.lockDatabase(LockMode.X);
 
-		// use try-final method to ensure the lock can be released successfully in any situation
-		try {
 			// Check if all are there
 			for (StockBook book : bookSet) {
 				validate(book);
@@ -185,12 +169,10 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 
 			for (StockBook book : bookSet) {
 				int isbn = book.getISBN();
-				bookMap.put(isbn, new BookStoreBook(book));
-				// add a read-write lock to the book
-				lockBookMap.put(isbn, new ReentrantReadWriteLock());
+				BookStoreBook bookStoreBook = new BookStoreBook(book);
+				bookMap.put(isbn, bookStoreBook);
+				topRatedIndex.put(isbn, bookStoreBook.getAverageRating());
 			}
-		} finally {
-			intentionXLock.unlock();
 		}
 	}
 
@@ -208,12 +190,15 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
 		}
 
-		try {
+		try (LockManager.Transaction transaction = lockManager.begin()) {
+			transaction.lockDatabase(LockMode.IX);
+
 			for (BookCopy bookCopy : bookCopiesSet) {
-				setLocalWriteLock(bookCopy.getISBN());
 				validate(bookCopy);
 			}
 
+			transaction.lockBooks(getISBNs(bookCopiesSet, BookCopy::getISBN), LockMode.X);
+
 			BookStoreBook book;
 
 			// Update the number of copies
@@ -223,10 +208,6 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 				book = bookMap.get(isbn);
 				book.addCopies(numCopies);
 			}
-		} finally {
-			for (BookCopy bookCopy : bookCopiesSet) {
-				releaseLocalWriteLock(bookCopy.getISBN());
-			}
 		}
 	}
 
@@ -236,22 +217,16 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 	 * @see com.acertainbookstore.interfaces.StockManager#getBooks()
 	 */
 	public List<StockBook> getBooks() throws BookStoreException {
-		Collection<BookStoreBook> bookMapValues = bookMap.values();
+		try (LockManager.Transaction transaction = lockManager.begin()) {
+			// Reading the whole catalog takes one lock instead of one per book
+			transaction.lockDatabase(LockMode.S);
 
-		try {
-			for (BookStoreBook book : bookMapValues) {
-				setLocalReadLock(book.getISBN());
-			}
+			Collection<BookStoreBook> bookMapValues = bookMap.values();
 
 			return bookMapValues.stream()
 					.map(book -> book.immutableStockBook())
 					.collect(Collectors.toList());
-		} finally {
-			for (BookStoreBook book : bookMapValues) {
-				releaseLocalReadLock(book.getISBN());
-			}
 		}
-
 	}
 
 	/*
@@ -267,19 +242,18 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
 		}
 
-		try {
+		try (LockManager.Transaction transaction = lockManager.begin()) {
+			transaction.lockDatabase(LockMode.IX);
+
 			for (BookEditorPick editorPickArg : editorPicks) {
-				setLocalWriteLock(editorPickArg.getISBN());
 				validate(editorPickArg);
 			}
 
+			transaction.lockBooks(getISBNs(editorPicks, BookEditorPick::getISBN), LockMode.X);
+
 			for (BookEditorPick editorPickArg : editorPicks) {
 				bookMap.get(editorPickArg.getISBN()).setEditorPick(editorPickArg.isEditorPick());
 			}
-		} finally {
-			for (BookEditorPick editorPick : editorPicks) {
-				releaseLocalWriteLock(editorPick.getISBN());
-			}
 		}
 	}
 
@@ -300,12 +274,17 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 
 		Map<Integer, Integer> salesMisses = new HashMap<>();
 
-		try {
+		try (LockManager.Transaction transaction = lockManager.begin()) {
+			transaction.lockDatabase(LockMode.IX);
+
 			for (BookCopy bookCopyToBuy : bookCopiesToBuy) {
-				isbn = bookCopyToBuy.getISBN();
-				setLocalWriteLock(isbn);
 				validate(bookCopyToBuy);
+			}
+
+			transaction.lockBooks(getISBNs(bookCopiesToBuy, BookCopy::getISBN), LockMode.X);
 
+			for (BookCopy bookCopyToBuy : bookCopiesToBuy) {
+				isbn = bookCopyToBuy.getISBN();
 				book = bookMap.get(isbn);
 
 				if (!book.areCopiesInStore(bookCopyToBuy.getNumCopies())) {
@@ -330,10 +309,6 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 				book = bookMap.get(bookCopyToBuy.getISBN());
 				book.buyCopies(bookCopyToBuy.getNumCopies());
 			}
-		} finally {
-			for (BookCopy bookCopy : bookCopiesToBuy) {
-				releaseLocalWriteLock(bookCopy.getISBN());
-			}
 		}
 	}
 
@@ -349,22 +324,19 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
 		}
 
-		try {
+		try (LockManager.Transaction transaction = lockManager.begin()) {
+			transaction.lockDatabase(LockMode.IS);
+
 			for (Integer ISBN : isbnSet) {
-				setLocalReadLock(ISBN);
 				validateISBNInStock(ISBN);
 			}
 
+			transaction.lockBooks(isbnSet, LockMode.S);
+
 			return isbnSet.stream()
 					.map(isbn -> bookMap.get(isbn).immutableStockBook())
 					.collect(Collectors.toList());
-		} finally {
-			for (Integer ISBN : isbnSet) {
-				releaseLocalReadLock(ISBN);
-			}
 		}
-
-
 	}
 
 	/*
@@ -377,22 +349,20 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
 		}
 
-		try {
+		try (LockManager.Transaction transaction = lockManager.begin()) {
+			transaction.lockDatabase(LockMode.IS);
+
 			// Check that all ISBNs that we rate are there to start with.
 			for (Integer ISBN : isbnSet) {
-				setLocalReadLock(ISBN);
 				validateISBNInStock(ISBN);
 			}
 
+			transaction.lockBooks(isbnSet, LockMode.S);
+
 			return isbnSet.stream()
 					.map(isbn -> bookMap.get(isbn).immutableBook())
 					.collect(Collectors.toList());
-		} finally {
-			for (Integer isbn : isbnSet) {
-				releaseLocalReadLock(isbn);
-			}
 		}
-
 	}
 
 	/*
@@ -405,16 +375,14 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 			throw new BookStoreException("numBooks = " + numBooks + ", but it must be positive");
 		}
 
-		try {
-			List<BookStoreBook> listAllEditorPicks = bookMap.entrySet().stream()
-					.map(pair -> pair.getValue())
+		try (LockManager.Transaction transaction = lockManager.begin()) {
+			// Whether a book is an editor pick is read for the whole catalog
+			transaction.lockDatabase(LockMode.S);
+
+			List<BookStoreBook> listAllEditorPicks = bookMap.values().stream()
 					.filter(book -> book.isEditorPick())
 					.collect(Collectors.toList());
 
-			for(Book book : listAllEditorPicks) {
-				setLocalReadLock(book.getISBN());
-			}
-
 			// Find numBooks random indices of books that will be picked.
 			Random rand = new Random();
 			Set<Integer> tobePicked = new HashSet<>();
@@ -441,10 +409,6 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 			return tobePicked.stream()
 					.map(index -> listAllEditorPicks.get(index).immutableBook())
 					.collect(Collectors.toList());
-		} finally {
-			for (Book book : bookMap.values()) {
-				releaseLocalReadLock(book.getISBN());
-			}
 		}
 	}
 
@@ -455,7 +419,18 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 	 */
 	@Override
 	public List<Book> getTopRatedBooks(int numBooks) throws BookStoreException {
-		throw new BookStoreException();
+		if (numBooks < 0) {
+			throw new BookStoreException("numBooks = " + numBooks + ", but it must be positive");
+		}
+
+		try (LockManager.Transaction transaction = lockManager.begin()) {
+			// read the ranking of all books while no rating changes
+			transaction.lockDatabase(LockMode.S);
+
+			return topRatedIndex.getTopISBNs(numBooks).stream()
+					.map(isbn -> bookMap.get(isbn).immutableBook())
+					.collect(Collectors.toList());
+		}
 	}
 
 	/*
@@ -475,7 +450,30 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 	 */
 	@Override
 	public void rateBooks(Set<BookRating> bookRating) throws BookStoreException {
-		throw new BookStoreException();
+		if (bookRating == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		try (LockManager.Transaction transaction = lockManager.begin()) {
+			transaction.lockDatabase(LockMode.IX);
+
+			for (BookRating bookToRate : bookRating) {
+				// Check whether the book is in stock.
+				validate(bookToRate);
+			}
+
+			transaction.lockBooks(getISBNs(bookRating, BookRating::getISBN), LockMode.X);
+
+			// Then make the rating.
+			for (BookRating bookToRate : bookRating) {
+				BookStoreBook book = bookMap.get(bookToRate.getISBN());
+				book.addRating(bookToRate.getRating());
+
+				synchronized (topRatedIndex) {
+					topRatedIndex.put(bookToRate.getISBN(), book.getAverageRating());
+				}
+			}
+		}
 	}
 
 	/*
@@ -484,12 +482,10 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 	 * @see com.acertainbookstore.interfaces.StockManager#removeAllBooks()
 	 */
 	public void removeAllBooks() throws BookStoreException {
-		intentionXLock.lock();
-		try {
+		try (LockManager.Transaction transaction = lockManager.begin()) {
+			transaction.lockDatabase(LockMode.X);
 			bookMap.clear();
-			lockBookMap.clear();
-		} finally {
-			intentionXLock.unlock();
+			topRatedIndex.clear();
 		}
 	}
 
@@ -504,9 +500,9 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
 		}
 
-		intentionXLock.lock();
+		try (LockManager.Transaction transaction = lockManager.begin()) {
+			transaction.lockDatabase(LockMode.X);
 
-		try {
 			for (Integer ISBN : isbnSet) {
 				if (BookStoreUtility.isInvalidISBN(ISBN)) {
 					throw new BookStoreException(BookStoreConstants.ISBN + ISBN + BookStoreConstants.INVALID);
@@ -519,10 +515,8 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 
 			for (int isbn : isbnSet) {
 				bookMap.remove(isbn);
+				topRatedIndex.remove(isbn);
 			}
-		} finally {
-			intentionXLock.unlock();
 		}
-
 	}
 }
@@ -6,6 +6,8 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.acertainbookstore.business.*;
 import org.junit.After;
@@ -40,6 +42,15 @@ public class BookStoreTest {
 
 	/** Single lock test */
 	private static boolean singleLock = true;
+
+	/** Multi-version test */
+	private static boolean multiVersion = false;
+
+	/** Stamped lock test */
+	private static boolean stampedLock = false;
+
+	/** Single writer test */
+	private static boolean singleWriter = false;
 	
 	/** The store manager. */
 	private static StockManager storeManager;
@@ -59,8 +70,29 @@ public class BookStoreTest {
 			String singleLockProperty = System.getProperty(BookStoreConstants.PROPERTY_KEY_SINGLE_LOCK);
 			singleLock = (singleLockProperty != null) ? Boolean.parseBoolean(singleLockProperty) : singleLock;
 
+			String multiVersionProperty = System.getProperty(BookStoreConstants.PROPERTY_KEY_MULTI_VERSION);
+			multiVersion = (multiVersionProperty != null) ? Boolean.parseBoolean(multiVersionProperty) : multiVersion;
+
+			String stampedLockProperty = System.getProperty(BookStoreConstants.PROPERTY_KEY_STAMPED_LOCK);
+			stampedLock = (stampedLockProperty != null) ? Boolean.parseBoolean(stampedLockProperty) : stampedLock;
+
+			String singleWriterProperty = System.getProperty(BookStoreConstants.PROPERTY_KEY_SINGLE_WRITER);
+			singleWriter = (singleWriterProperty != null) ? Boolean.parseBoolean(singleWriterProperty) : singleWriter;
+
 			if (localTest) {
-				if (singleLock) {
+				if (multiVersion) {
+					MultiVersionConcurrentCertainBookStore store = new MultiVersionConcurrentCertainBookStore();
+					storeManager = store;
+					client = store;
+				} else if (singleWriter) {
+					SingleWriterConcurrentCertainBookStore store = new SingleWriterConcurrentCertainBookStore();
+					storeManager = store;
+					client = store;
+				} else if (stampedLock) {
+					StampedLockConcurrentCertainBookStore store = new StampedLockConcurrentCertainBookStore();
+					storeManager = store;
+					client = store;
+				} else if (singleLock) {
 					SingleLockConcurrentCertainBookStore store = new SingleLockConcurrentCertainBookStore();
 					storeManager = store;
 					client = store;
@@ -676,19 +708,114 @@ public class BookStoreTest {
 		assertEquals(numberOfCopies, booksInStore.get(1).getNumCopies());
 	}
 
+	/**
+	 * Tests that concurrent purchases, which may be applied together, each
+	 * succeed or fail on their own, all or nothing, and each record their own
+	 * sale misses.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testConcurrentBuyBooks() throws Exception {
+		addBooks(TEST_ISBN + 1, NUM_COPIES * 20);
+
+		Set<BookCopy> books = new HashSet<>();
+		books.add(new BookCopy(TEST_ISBN, 1));
+		books.add(new BookCopy(TEST_ISBN + 1, 1));
+
+		int numBuyers = 20;
+		CountDownLatch ready = new CountDownLatch(numBuyers);
+		AtomicInteger purchases = new AtomicInteger();
+		AtomicInteger failures = new AtomicInteger();
+		List<Thread> buyers = new ArrayList<>();
+
+		for (int i = 0; i < numBuyers; i++) {
+			Thread buyer = new Thread(() -> {
+				try {
+					ready.countDown();
+					ready.await();
+					client.buyBooks(books);
+					purchases.incrementAndGet();
+				} catch (BookStoreException ex) {
+					failures.incrementAndGet();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			buyers.add(buyer);
+			buyer.start();
+		}
+
+		for (Thread buyer : buyers) {
+			buyer.join();
+		}
+
+		// Only the default book runs out, after NUM_COPIES purchases
+		assertEquals(NUM_COPIES, purchases.get());
+		assertEquals(numBuyers - NUM_COPIES, failures.get());
+
+		Set<Integer> isbnList = new HashSet<Integer>();
+		isbnList.add(TEST_ISBN);
+		isbnList.add(TEST_ISBN + 1);
+
+		for (StockBook book : storeManager.getBooksByISBN(isbnList)) {
+			if (book.getISBN() == TEST_ISBN) {
+				assertEquals(0, book.getNumCopies());
+				assertEquals(numBuyers - NUM_COPIES, book.getNumSaleMisses());
+			} else {
+				// The failed purchases left the other book alone
+				assertEquals(NUM_COPIES * 20 - NUM_COPIES, book.getNumCopies());
+				assertEquals(0, book.getNumSaleMisses());
+			}
+		}
+	}
+
+	/**
+	 * Tests that a shut down single writer store applies the updates submitted
+	 * before, rejects those submitted after, and still serves reads.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testSingleWriterShutdown() throws Exception {
+		SingleWriterConcurrentCertainBookStore store = new SingleWriterConcurrentCertainBookStore();
+		Set<StockBook> booksToAdd = new HashSet<StockBook>();
+		booksToAdd.add(getDefaultBook());
+		store.addBooks(booksToAdd);
+		store.shutdown();
+
+		Set<BookCopy> booksToBuy = new HashSet<BookCopy>();
+		booksToBuy.add(new BookCopy(TEST_ISBN, 1));
+
+		try {
+			store.buyBooks(booksToBuy);
+			fail();
+		} catch (BookStoreException ex) {
+			assertEquals(BookStoreConstants.SHUT_DOWN, ex.getMessage());
+		}
+
+		List<StockBook> books = store.getBooks();
+		assertEquals(1, books.size());
+		assertEquals(NUM_COPIES, books.get(0).getNumCopies());
+	}
+
 	/**
 	 * Tear down after class.
 	 *
-	 * @throws BookStoreException
-	 *             the book store exception
+	 * @throws Exception
+	 *             the exception
 	 */
 	@AfterClass
-	public static void tearDownAfterClass() throws BookStoreException {
+	public static void tearDownAfterClass() throws Exception {
 		storeManager.removeAllBooks();
 
 		if (!localTest) {
 			((BookStoreHTTPProxy) client).stop();
 			((StockManagerHTTPProxy) storeManager).stop();
+		} else if (storeManager instanceof SingleWriterConcurrentCertainBookStore) {
+			((SingleWriterConcurrentCertainBookStore) storeManager).shutdown();
 		}
 	}
 }
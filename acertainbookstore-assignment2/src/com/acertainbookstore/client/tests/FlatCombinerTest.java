@@ -0,0 +1,97 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.Test;
+
+import com.acertainbookstore.business.FlatCombiner;
+import com.acertainbookstore.utils.BookStoreException;
+
+/**
+ * {@link FlatCombinerTest} tests the {@link FlatCombiner}.
+ *
+ * @see FlatCombiner
+ */
+public class FlatCombinerTest {
+
+	/** The number of concurrent callers. */
+	private static final int NUM_CALLERS = 16;
+
+	/** The time a caller is given to return, in milliseconds. */
+	private static final long TIMEOUT_MILLIS = 10000;
+
+	/**
+	 * Tests that each caller gets the outcome of its own argument, including
+	 * an error, and that an error does not leave the other callers waiting.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testEachCallerGetsItsOwnOutcome() throws Exception {
+		FlatCombiner<Integer> combiner = new FlatCombiner<>(new ReentrantLock(), argument -> {
+			switch (argument % 4) {
+			case 0:
+				throw new AssertionError("error " + argument);
+			case 1:
+				throw new BookStoreException("failure " + argument);
+			case 2:
+				throw new IllegalStateException("runtime " + argument);
+			default:
+				break;
+			}
+		});
+
+		CountDownLatch ready = new CountDownLatch(NUM_CALLERS);
+		AtomicReferenceArray<Throwable> outcomes = new AtomicReferenceArray<>(NUM_CALLERS);
+		List<Thread> callers = new ArrayList<>();
+
+		for (int i = 0; i < NUM_CALLERS; i++) {
+			int argument = i;
+			Thread caller = new Thread(() -> {
+				try {
+					ready.countDown();
+					ready.await();
+					combiner.execute(argument);
+				} catch (Throwable ex) {
+					outcomes.set(argument, ex);
+				}
+			});
+			callers.add(caller);
+			caller.start();
+		}
+
+		for (Thread caller : callers) {
+			caller.join(TIMEOUT_MILLIS);
+			assertFalse(caller.isAlive());
+		}
+
+		for (int i = 0; i < NUM_CALLERS; i++) {
+			Throwable outcome = outcomes.get(i);
+
+			switch (i % 4) {
+			case 0:
+				assertTrue(outcome instanceof AssertionError);
+				assertEquals("error " + i, outcome.getMessage());
+				break;
+			case 1:
+				assertTrue(outcome instanceof BookStoreException);
+				assertEquals("failure " + i, outcome.getMessage());
+				break;
+			case 2:
+				assertTrue(outcome instanceof IllegalStateException);
+				assertEquals("runtime " + i, outcome.getMessage());
+				break;
+			default:
+				assertNull(outcome);
+				break;
+			}
+		}
+	}
+}
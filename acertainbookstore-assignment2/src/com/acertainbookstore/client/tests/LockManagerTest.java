@@ -0,0 +1,494 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.acertainbookstore.business.DeadlockPolicy;
+import com.acertainbookstore.business.LockManager;
+import com.acertainbookstore.business.LockManager.Transaction;
+import com.acertainbookstore.business.LockMode;
+import com.acertainbookstore.utils.TransactionAbortedException;
+
+/**
+ * {@link LockManagerTest} tests how the {@link LockManager} breaks deadlocks
+ * under each {@link DeadlockPolicy}, and its lock timeout. It also tests the
+ * ordered acquisition of book locks, the sharing of lock stripes, the
+ * compatibility of the lock modes and the FIFO order of grants.
+ *
+ * The deadlocks are upgrade deadlocks: two transactions hold a book in S
+ * mode, and both request it in X mode.
+ *
+ * @see LockManager
+ * @see DeadlockPolicy
+ */
+public class LockManagerTest {
+
+	/** The ISBN of the book both transactions lock. */
+	private static final int TEST_ISBN = 3044560;
+
+	/** The lock timeout when the test does not expect it to fire. */
+	private static final long LONG_TIMEOUT_MILLIS = 10000;
+
+	/** The lock timeout when the test expects it to fire. */
+	private static final long SHORT_TIMEOUT_MILLIS = 500;
+
+	/** The time a thread is given to start waiting or to finish. */
+	private static final long WAIT_MILLIS = 5000;
+
+	/** The lock timeout when a request is only checked for being granted. */
+	private static final long TRY_TIMEOUT_MILLIS = 50;
+
+	/**
+	 * {@link Upgrade} is a thread upgrading the lock of a transaction on the
+	 * book to X mode, then releasing its locks.
+	 */
+	private static final class Upgrade extends Thread {
+
+		/** The transaction. */
+		private final Transaction transaction;
+
+		/** Whether the upgrade was granted. */
+		private volatile boolean granted = false;
+
+		/** The exception thrown by the upgrade, if any. */
+		private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		private Upgrade(Transaction transaction) {
+			this.transaction = transaction;
+		}
+
+		@Override
+		public void run() {
+			try {
+				transaction.lockBooks(book(), LockMode.X);
+				granted = true;
+			} catch (Throwable ex) {
+				failure.set(ex);
+			} finally {
+				transaction.close();
+			}
+		}
+
+		/**
+		 * Starts the upgrade and waits until it waits for the lock.
+		 *
+		 * @throws InterruptedException
+		 *             the interrupted exception
+		 */
+		private void startWaiting() throws InterruptedException {
+			LockManagerTest.startWaiting(this);
+		}
+
+		/**
+		 * Waits until the upgrade is done.
+		 *
+		 * @throws InterruptedException
+		 *             the interrupted exception
+		 */
+		private void finish() throws InterruptedException {
+			join(WAIT_MILLIS);
+			assertFalse(isAlive());
+		}
+	}
+
+	/**
+	 * {@link DatabaseLocker} is a thread locking the database in a mode, then
+	 * recording that it was granted and releasing its locks.
+	 */
+	private static final class DatabaseLocker extends Thread {
+
+		/** The transaction. */
+		private final Transaction transaction;
+
+		/** The mode. */
+		private final LockMode mode;
+
+		/** The order in which the lockers were granted their mode. */
+		private final List<DatabaseLocker> grants;
+
+		private DatabaseLocker(Transaction transaction, LockMode mode, List<DatabaseLocker> grants) {
+			this.transaction = transaction;
+			this.mode = mode;
+			this.grants = grants;
+		}
+
+		@Override
+		public void run() {
+			try {
+				transaction.lockDatabase(mode);
+				grants.add(this);
+			} catch (TransactionAbortedException ex) {
+				;
+			} finally {
+				transaction.close();
+			}
+		}
+	}
+
+	/**
+	 * Starts the thread and waits until it waits for a lock.
+	 *
+	 * @param thread
+	 *            the thread
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	private static void startWaiting(Thread thread) throws InterruptedException {
+		thread.start();
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WAIT_MILLIS);
+
+		while (thread.getState() != Thread.State.TIMED_WAITING) {
+			assertTrue(thread.isAlive() && System.nanoTime() < deadline);
+			Thread.sleep(1);
+		}
+	}
+
+	/**
+	 * Gets the book both transactions lock.
+	 *
+	 * @return the ISBNs of the book
+	 */
+	private static List<Integer> book() {
+		return Collections.singletonList(TEST_ISBN);
+	}
+
+	/**
+	 * Starts a transaction holding the book in S mode.
+	 *
+	 * @param lockManager
+	 *            the lock manager
+	 * @return the transaction
+	 * @throws TransactionAbortedException
+	 *             the transaction aborted exception
+	 */
+	private static Transaction beginReading(LockManager lockManager) throws TransactionAbortedException {
+		Transaction transaction = lockManager.begin();
+		transaction.lockDatabase(LockMode.IX);
+		transaction.lockBooks(book(), LockMode.S);
+		return transaction;
+	}
+
+	/**
+	 * Tests that deadlock detection aborts the transaction closing the cycle,
+	 * and lets the other one upgrade.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testDetection() throws Exception {
+		LockManager lockManager = new LockManager(DeadlockPolicy.DETECTION, LONG_TIMEOUT_MILLIS);
+		Transaction older = beginReading(lockManager);
+		Transaction younger = beginReading(lockManager);
+
+		Upgrade olderUpgrade = new Upgrade(older);
+		olderUpgrade.startWaiting();
+
+		try {
+			younger.lockBooks(book(), LockMode.X);
+			fail();
+		} catch (TransactionAbortedException ex) {
+			;
+		} finally {
+			younger.close();
+		}
+
+		olderUpgrade.finish();
+		assertTrue(olderUpgrade.granted);
+	}
+
+	/**
+	 * Tests that under wound-wait an older transaction wounds the younger one
+	 * it waits for, even while the younger one waits, and then upgrades.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testWoundWait() throws Exception {
+		LockManager lockManager = new LockManager(DeadlockPolicy.WOUND_WAIT, LONG_TIMEOUT_MILLIS);
+		Transaction older = beginReading(lockManager);
+		Transaction younger = beginReading(lockManager);
+
+		// The younger transaction waits for the older one
+		Upgrade youngerUpgrade = new Upgrade(younger);
+		youngerUpgrade.startWaiting();
+
+		older.lockBooks(book(), LockMode.X);
+		older.close();
+
+		youngerUpgrade.finish();
+		assertFalse(youngerUpgrade.granted);
+		assertTrue(youngerUpgrade.failure.get() instanceof TransactionAbortedException);
+	}
+
+	/**
+	 * Tests that under wait-die a younger transaction dies rather than wait
+	 * for an older one, which waits for it and then upgrades.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testWaitDie() throws Exception {
+		LockManager lockManager = new LockManager(DeadlockPolicy.WAIT_DIE, LONG_TIMEOUT_MILLIS);
+		Transaction older = beginReading(lockManager);
+		Transaction younger = beginReading(lockManager);
+
+		// The older transaction waits for the younger one
+		Upgrade olderUpgrade = new Upgrade(older);
+		olderUpgrade.startWaiting();
+
+		try {
+			younger.lockBooks(book(), LockMode.X);
+			fail();
+		} catch (TransactionAbortedException ex) {
+			;
+		} finally {
+			younger.close();
+		}
+
+		olderUpgrade.finish();
+		assertTrue(olderUpgrade.granted);
+	}
+
+	/**
+	 * Tests that with timeouts only, the transaction which waited longest
+	 * aborts when the lock timeout expires, and lets the other one upgrade.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testTimeout() throws Exception {
+		LockManager lockManager = new LockManager(DeadlockPolicy.TIMEOUT, SHORT_TIMEOUT_MILLIS);
+		Transaction first = beginReading(lockManager);
+		Transaction second = beginReading(lockManager);
+
+		Upgrade firstUpgrade = new Upgrade(first);
+		firstUpgrade.startWaiting();
+
+		// Leave the first upgrade well ahead of the second one's deadline
+		Thread.sleep(SHORT_TIMEOUT_MILLIS / 5);
+
+		second.lockBooks(book(), LockMode.X);
+		second.close();
+
+		firstUpgrade.finish();
+		assertFalse(firstUpgrade.granted);
+		assertTrue(firstUpgrade.failure.get() instanceof TransactionAbortedException);
+	}
+
+	/**
+	 * Tests that a transaction waiting for a lock held too long aborts after
+	 * the lock timeout, whatever the policy, though there is no deadlock.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testLockTimeout() throws Exception {
+		for (DeadlockPolicy deadlockPolicy : DeadlockPolicy.values()) {
+			LockManager lockManager = new LockManager(deadlockPolicy, SHORT_TIMEOUT_MILLIS);
+
+			// The reader is older, so that it waits rather than die
+			Transaction reader = lockManager.begin();
+			Transaction writer = lockManager.begin();
+			writer.lockDatabase(LockMode.X);
+
+			long start = System.nanoTime();
+
+			try {
+				reader.lockDatabase(LockMode.S);
+				fail();
+			} catch (TransactionAbortedException ex) {
+				;
+			} finally {
+				reader.close();
+				writer.close();
+			}
+
+			assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(SHORT_TIMEOUT_MILLIS));
+		}
+	}
+
+	/**
+	 * Tests that transactions locking the same books listed in opposite
+	 * orders never deadlock, as the stripes are acquired in ascending order.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testLockOrdering() throws Exception {
+		LockManager lockManager = new LockManager(DeadlockPolicy.TIMEOUT, SHORT_TIMEOUT_MILLIS);
+		List<Integer> books = new ArrayList<>();
+
+		for (int i = 0; i < 8; i++) {
+			books.add(TEST_ISBN + i);
+		}
+
+		List<Integer> reversedBooks = new ArrayList<>(books);
+		Collections.reverse(reversedBooks);
+		AtomicInteger numAborted = new AtomicInteger();
+		List<Thread> threads = new ArrayList<>();
+
+		for (List<Integer> isbns : Arrays.asList(books, reversedBooks)) {
+			Thread thread = new Thread(() -> {
+				for (int run = 0; run < 200; run++) {
+					try (Transaction transaction = lockManager.begin()) {
+						transaction.lockDatabase(LockMode.IX);
+						transaction.lockBooks(isbns, LockMode.X);
+					} catch (TransactionAbortedException ex) {
+						numAborted.incrementAndGet();
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+
+		for (Thread thread : threads) {
+			thread.join(WAIT_MILLIS * 4);
+			assertFalse(thread.isAlive());
+		}
+
+		assertEquals(0, numAborted.get());
+	}
+
+	/**
+	 * Tests that books sharing a stripe exclude each other, that the stripe
+	 * is free again once released, and that the number of stripes is checked.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testStripeReuse() throws Exception {
+		LockManager lockManager = new LockManager(1, DeadlockPolicy.TIMEOUT, TRY_TIMEOUT_MILLIS);
+		List<Integer> otherBook = Collections.singletonList(TEST_ISBN + 1);
+
+		Transaction writer = lockManager.begin();
+		writer.lockDatabase(LockMode.IX);
+		writer.lockBooks(book(), LockMode.X);
+
+		// With a single stripe, every book maps to the lock held by the writer
+		Transaction other = lockManager.begin();
+		other.lockDatabase(LockMode.IX);
+
+		try {
+			other.lockBooks(otherBook, LockMode.X);
+			fail();
+		} catch (TransactionAbortedException ex) {
+			;
+		} finally {
+			other.close();
+		}
+
+		writer.close();
+
+		// The released stripe serves any book, over and over
+		for (int i = 0; i < 100; i++) {
+			try (Transaction transaction = lockManager.begin()) {
+				transaction.lockDatabase(LockMode.IX);
+				transaction.lockBooks(Collections.singletonList(TEST_ISBN + i), LockMode.X);
+			}
+		}
+
+		for (int numStripes : new int[] { 0, 3, 1000 }) {
+			try {
+				new LockManager(numStripes, DeadlockPolicy.TIMEOUT, TRY_TIMEOUT_MILLIS);
+				fail();
+			} catch (IllegalArgumentException ex) {
+				;
+			}
+		}
+	}
+
+	/**
+	 * Tests that a mode is granted on the database while another transaction
+	 * holds it in a second mode exactly when the modes are compatible.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testCompatibilityMatrix() throws Exception {
+		LockMode[] modes = { LockMode.IS, LockMode.IX, LockMode.S, LockMode.SIX, LockMode.X };
+		boolean[][] compatible = {
+				//       IS     IX     S      SIX    X
+				/* IS */ { true, true, true, true, false },
+				/* IX */ { true, true, false, false, false },
+				/* S */ { true, false, true, false, false },
+				/* SIX */ { true, false, false, false, false },
+				/* X */ { false, false, false, false, false } };
+		LockManager lockManager = new LockManager(DeadlockPolicy.TIMEOUT, TRY_TIMEOUT_MILLIS);
+
+		for (int held = 0; held < modes.length; held++) {
+			for (int requested = 0; requested < modes.length; requested++) {
+				assertEquals(compatible[held][requested], modes[requested].isCompatibleWith(modes[held]));
+
+				Transaction holder = lockManager.begin();
+				Transaction requester = lockManager.begin();
+				boolean granted;
+
+				try {
+					holder.lockDatabase(modes[held]);
+					requester.lockDatabase(modes[requested]);
+					granted = true;
+				} catch (TransactionAbortedException ex) {
+					granted = false;
+				} finally {
+					requester.close();
+					holder.close();
+				}
+
+				assertEquals(modes[held] + " held, " + modes[requested] + " requested", compatible[held][requested],
+						granted);
+			}
+		}
+	}
+
+	/**
+	 * Tests that waiting requests are granted in FIFO order: a request
+	 * compatible with the granted group still waits behind an earlier
+	 * conflicting request.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testFifoGrantOrder() throws Exception {
+		LockManager lockManager = new LockManager(DeadlockPolicy.TIMEOUT, LONG_TIMEOUT_MILLIS);
+		List<DatabaseLocker> grants = Collections.synchronizedList(new ArrayList<>());
+		Transaction writer = lockManager.begin();
+		writer.lockDatabase(LockMode.X);
+
+		DatabaseLocker firstReader = new DatabaseLocker(lockManager.begin(), LockMode.S, grants);
+		DatabaseLocker secondWriter = new DatabaseLocker(lockManager.begin(), LockMode.X, grants);
+		DatabaseLocker secondReader = new DatabaseLocker(lockManager.begin(), LockMode.S, grants);
+		List<DatabaseLocker> lockers = Arrays.asList(firstReader, secondWriter, secondReader);
+
+		for (DatabaseLocker locker : lockers) {
+			startWaiting(locker);
+		}
+
+		writer.close();
+
+		for (DatabaseLocker locker : lockers) {
+			locker.join(WAIT_MILLIS);
+			assertFalse(locker.isAlive());
+		}
+
+		assertEquals(lockers, grants);
+	}
+}
@@ -0,0 +1,149 @@
+package com.acertainbookstore.client.workloads;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import com.acertainbookstore.utils.IntHashMap;
+
+/**
+ *
+ * CatalogMapBenchmark compares the catalog structures of the book store, a
+ * {@link HashMap} from boxed ISBNs and an {@link IntHashMap}, at 1K, 100K and
+ * 10M books. For each size it reports the heap retained by the map and the
+ * average time of a lookup of a random ISBN in stock, measured after warm-up
+ * rounds so that the JIT compiled the lookups. All books share one value, so
+ * only the structure is measured. The 10M catalogs need a heap of about 2 GB,
+ * e.g. -Xmx3g.
+ *
+ */
+public class CatalogMapBenchmark {
+	private static final int[] NUM_BOOKS = { 1000, 100000, 10000000 };
+	private static final int NUM_LOOKUPS = 10000000;
+	private static final int WARMUP_ROUNDS = 5;
+	private static final int MEASURED_ROUNDS = 5;
+	private static final Object BOOK = new Object();
+
+	/** Keeps the lookups from being optimized away */
+	private static int sink = 0;
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) throws Exception {
+		Runtime runtime = Runtime.getRuntime();
+
+		System.out.println("books\tmap\tretained heap (bytes/book)\tlookup (ns)");
+
+		for (int numBooks : NUM_BOOKS) {
+			int[] isbns = newISBNs(numBooks);
+			int[] lookups = newLookups(isbns);
+
+			long heapBefore = usedHeap(runtime);
+			Map<Integer, Object> hashMap = new HashMap<>();
+			for (int isbn : isbns) {
+				hashMap.put(isbn, BOOK);
+			}
+			long hashMapHeap = usedHeap(runtime) - heapBefore;
+			report(numBooks, "HashMap", hashMapHeap, timeLookups(hashMap, lookups));
+			hashMap = null;
+
+			heapBefore = usedHeap(runtime);
+			IntHashMap<Object> intHashMap = new IntHashMap<>();
+			for (int isbn : isbns) {
+				intHashMap.put(isbn, BOOK);
+			}
+			long intHashMapHeap = usedHeap(runtime) - heapBefore;
+			report(numBooks, "IntHashMap", intHashMapHeap, timeLookups(intHashMap, lookups));
+			intHashMap = null;
+		}
+
+		System.out.println(sink == 42 ? "" : "done");
+	}
+
+	private static void report(int numBooks, String map, long heap, double lookupNanos) {
+		System.out.println(numBooks + "\t" + map + "\t" + String.format("%.1f", (double) heap / numBooks) + "\t"
+				+ String.format("%.1f", lookupNanos));
+	}
+
+	/**
+	 * Draws distinct random ISBNs
+	 */
+	private static int[] newISBNs(int numBooks) {
+		Random random = new Random(numBooks);
+		IntHashMap<Object> drawn = new IntHashMap<>(numBooks);
+		int[] isbns = new int[numBooks];
+
+		for (int i = 0; i < numBooks;) {
+			int isbn = 1 + random.nextInt(Integer.MAX_VALUE - 1);
+
+			if (drawn.put(isbn, BOOK) == null) {
+				isbns[i++] = isbn;
+			}
+		}
+
+		return isbns;
+	}
+
+	private static int[] newLookups(int[] isbns) {
+		Random random = new Random(isbns.length + 1);
+		int[] lookups = new int[NUM_LOOKUPS];
+
+		for (int i = 0; i < NUM_LOOKUPS; i++) {
+			lookups[i] = isbns[random.nextInt(isbns.length)];
+		}
+
+		return lookups;
+	}
+
+	private static double timeLookups(Map<Integer, Object> map, int[] lookups) {
+		for (int round = 0; round < WARMUP_ROUNDS; round++) {
+			lookupAll(map, lookups);
+		}
+
+		long start = System.nanoTime();
+		for (int round = 0; round < MEASURED_ROUNDS; round++) {
+			lookupAll(map, lookups);
+		}
+		return (double) (System.nanoTime() - start) / ((long) MEASURED_ROUNDS * lookups.length);
+	}
+
+	private static double timeLookups(IntHashMap<Object> map, int[] lookups) {
+		for (int round = 0; round < WARMUP_ROUNDS; round++) {
+			lookupAll(map, lookups);
+		}
+
+		long start = System.nanoTime();
+		for (int round = 0; round < MEASURED_ROUNDS; round++) {
+			lookupAll(map, lookups);
+		}
+		return (double) (System.nanoTime() - start) / ((long) MEASURED_ROUNDS * lookups.length);
+	}
+
+	private static void lookupAll(Map<Integer, Object> map, int[] lookups) {
+		for (int isbn : lookups) {
+			if (map.get(isbn) != null) {
+				sink++;
+			}
+		}
+	}
+
+	private static void lookupAll(IntHashMap<Object> map, int[] lookups) {
+		for (int isbn : lookups) {
+			if (map.get(isbn) != null) {
+				sink++;
+			}
+		}
+	}
+
+	/**
+	 * Measures the heap in use after a full collection
+	 */
+	private static long usedHeap(Runtime runtime) throws InterruptedException {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
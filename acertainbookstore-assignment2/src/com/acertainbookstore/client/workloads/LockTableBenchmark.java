@@ -0,0 +1,90 @@
+package com.acertainbookstore.client.workloads;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.business.TwoLevelLockingConcurrentCertainBookStore;
+import com.acertainbookstore.utils.BookStoreException;
+
+/**
+ *
+ * LockTableBenchmark churns the catalog of a
+ * {@link TwoLevelLockingConcurrentCertainBookStore} through millions of add,
+ * update and remove cycles, each on a never seen ISBN, and reports the heap in
+ * use after every round. The lock table is bounded, so the heap should stay
+ * flat instead of growing with the number of ISBNs that ever existed.
+ *
+ */
+public class LockTableBenchmark {
+	private static final int NUM_ROUNDS = 20;
+	private static final int CYCLES_PER_ROUND = 250000;
+	private static final int BOOKS_IN_STOCK = 1000;
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) throws Exception {
+		TwoLevelLockingConcurrentCertainBookStore store = new TwoLevelLockingConcurrentCertainBookStore();
+		Runtime runtime = Runtime.getRuntime();
+
+		// Keep a steady catalog next to the churning books
+		Set<StockBook> stockBooks = new HashSet<>();
+		for (int isbn = 1; isbn <= BOOKS_IN_STOCK; isbn++) {
+			stockBooks.add(newBook(isbn));
+		}
+		store.addBooks(stockBooks);
+
+		int nextISBN = BOOKS_IN_STOCK + 1;
+		long baselineHeap = usedHeap(runtime);
+
+		System.out.println("cycles\tused heap (KB)\tgrowth (KB)");
+		System.out.println(0 + "\t" + baselineHeap / 1024 + "\t" + 0);
+
+		for (int round = 1; round <= NUM_ROUNDS; round++) {
+			for (int cycle = 0; cycle < CYCLES_PER_ROUND; cycle++) {
+				runCycle(store, nextISBN++);
+			}
+
+			long heap = usedHeap(runtime);
+			System.out.println((long) round * CYCLES_PER_ROUND + "\t" + heap / 1024 + "\t"
+					+ (heap - baselineHeap) / 1024);
+		}
+	}
+
+	/**
+	 * Adds a book, locks it by updating it, and removes it again
+	 */
+	private static void runCycle(TwoLevelLockingConcurrentCertainBookStore store, int isbn)
+			throws BookStoreException {
+		Set<StockBook> books = new HashSet<>();
+		books.add(newBook(isbn));
+		store.addBooks(books);
+
+		Set<BookCopy> bookCopies = new HashSet<>();
+		bookCopies.add(new BookCopy(isbn, 1));
+		store.addCopies(bookCopies);
+		store.buyBooks(bookCopies);
+
+		Set<Integer> isbns = new HashSet<>();
+		isbns.add(isbn);
+		store.removeBooks(isbns);
+	}
+
+	private static StockBook newBook(int isbn) {
+		return new ImmutableStockBook(isbn, "Title " + isbn, "Author", 10f, 1, 0, 0, 0, false);
+	}
+
+	/**
+	 * Measures the heap in use after a full collection
+	 */
+	private static long usedHeap(Runtime runtime) throws InterruptedException {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
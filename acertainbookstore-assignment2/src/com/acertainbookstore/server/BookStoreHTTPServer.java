@@ -1,6 +1,11 @@
 package com.acertainbookstore.server;
 
+import com.acertainbookstore.business.DeadlockPolicy;
+import com.acertainbookstore.business.LockManager;
+import com.acertainbookstore.business.MultiVersionConcurrentCertainBookStore;
 import com.acertainbookstore.business.SingleLockConcurrentCertainBookStore;
+import com.acertainbookstore.business.SingleWriterConcurrentCertainBookStore;
+import com.acertainbookstore.business.StampedLockConcurrentCertainBookStore;
 import com.acertainbookstore.business.TwoLevelLockingConcurrentCertainBookStore;
 
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
@@ -17,10 +22,22 @@ public class BookStoreHTTPServer {
 	private static final int MIN_THREADPOOL_SIZE = 10;
 	private static final int MAX_THREADPOOL_SIZE = 100;
 	
-	/** The constant, defining which locking scheme implementation to use
-	 *  true - single lock 
-	 *  false - two-level locking */
-	private static final boolean SINGLE_LOCK = true;
+	/** The locking scheme implementations the server can run with. */
+	private enum LockingScheme {
+		/** A single read-write lock over the whole store. */
+		SINGLE_LOCK,
+		/** A single stamped lock over the whole store, with optimistic reads. */
+		STAMPED_LOCK,
+		/** Intention locks on the store and read-write locks on each book. */
+		TWO_LEVEL_LOCKING,
+		/** Versioned books with lock-free snapshot reads. */
+		MULTI_VERSION,
+		/** A single writer thread applying queued updates, with lock-free snapshot reads. */
+		SINGLE_WRITER
+	}
+
+	/** The constant, defining which locking scheme implementation to use. */
+	private static final LockingScheme LOCKING_SCHEME = LockingScheme.SINGLE_LOCK;
 
 	/**
 	 * Prevents the instantiation of a new {@link BookStoreHTTPServer}.
@@ -29,6 +46,46 @@ public class BookStoreHTTPServer {
 		// Prevent instances from being created.
 	}
 
+	/**
+	 * Gets the deadlock policy of the two-level locking store from the system
+	 * properties, defaulting to deadlock detection.
+	 *
+	 * @return the deadlock policy
+	 */
+	private static DeadlockPolicy getDeadlockPolicy() {
+		String deadlockPolicyString = System.getProperty(BookStoreConstants.PROPERTY_KEY_DEADLOCK_POLICY);
+
+		if (deadlockPolicyString != null) {
+			try {
+				return DeadlockPolicy.valueOf(deadlockPolicyString.toUpperCase());
+			} catch (IllegalArgumentException ex) {
+				System.err.println("Unsupported deadlock policy");
+			}
+		}
+
+		return DeadlockPolicy.DETECTION;
+	}
+
+	/**
+	 * Gets the lock timeout of the two-level locking store from the system
+	 * properties.
+	 *
+	 * @return the lock timeout in milliseconds
+	 */
+	private static long getLockTimeoutMillis() {
+		String lockTimeoutString = System.getProperty(BookStoreConstants.PROPERTY_KEY_LOCK_TIMEOUT);
+
+		if (lockTimeoutString != null) {
+			try {
+				return Long.parseLong(lockTimeoutString);
+			} catch (NumberFormatException ex) {
+				System.err.println("Unsupported lock timeout");
+			}
+		}
+
+		return LockManager.DEFAULT_LOCK_TIMEOUT_MILLIS;
+	}
+
 	/**
 	 * The main method.
 	 *
@@ -40,15 +97,36 @@ public class BookStoreHTTPServer {
 		
 		BookStoreHTTPMessageHandler handler = null;
 		
-		if (SINGLE_LOCK) {
+		switch (LOCKING_SCHEME) {
+		case SINGLE_LOCK: {
 			SingleLockConcurrentCertainBookStore bookStore = new SingleLockConcurrentCertainBookStore();
 			/* we pass bookStore to BookStoreHTTPMessageHandler constructor twice, 
 			 * since it implements both interfaces: BookStore and StockManager */
 			handler = new BookStoreHTTPMessageHandler(bookStore, bookStore);
-		} else {
-			TwoLevelLockingConcurrentCertainBookStore bookStore = new TwoLevelLockingConcurrentCertainBookStore();
+			break;
+		}
+		case STAMPED_LOCK: {
+			StampedLockConcurrentCertainBookStore bookStore = new StampedLockConcurrentCertainBookStore();
+			handler = new BookStoreHTTPMessageHandler(bookStore, bookStore);
+			break;
+		}
+		case TWO_LEVEL_LOCKING: {
+			TwoLevelLockingConcurrentCertainBookStore bookStore = new TwoLevelLockingConcurrentCertainBookStore(
+					getDeadlockPolicy(), getLockTimeoutMillis());
+			handler = new BookStoreHTTPMessageHandler(bookStore, bookStore);
+			break;
+		}
+		case SINGLE_WRITER: {
+			SingleWriterConcurrentCertainBookStore bookStore = new SingleWriterConcurrentCertainBookStore();
+			handler = new BookStoreHTTPMessageHandler(bookStore, bookStore);
+			break;
+		}
+		default: {
+			MultiVersionConcurrentCertainBookStore bookStore = new MultiVersionConcurrentCertainBookStore();
 			handler = new BookStoreHTTPMessageHandler(bookStore, bookStore);
-		}		
+			break;
+		}
+		}
 		
 		String serverPortString = System.getProperty(BookStoreConstants.PROPERTY_KEY_SERVER_PORT);
 
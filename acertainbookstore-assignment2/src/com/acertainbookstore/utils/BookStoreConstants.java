@@ -54,12 +54,30 @@ public final class BookStoreConstants {
 	/** The Constant NULL_INPUT. */
 	public static final String NULL_INPUT = "null input parameters";
 
+	/** The Constant SHUT_DOWN when the book store no longer accepts updates. */
+	public static final String SHUT_DOWN = "the book store is shut down";
+
 	/** The Constant PROPERTY_KEY_LOCAL_TEST. */
 	public static final String PROPERTY_KEY_LOCAL_TEST = "localtest";
 	
 	/** The Constant PROPERTY_KEY_SINGLE_LOCK. */
 	public static final String PROPERTY_KEY_SINGLE_LOCK = "singlelock";
 
+	/** The Constant PROPERTY_KEY_MULTI_VERSION. */
+	public static final String PROPERTY_KEY_MULTI_VERSION = "multiversion";
+
+	/** The Constant PROPERTY_KEY_STAMPED_LOCK. */
+	public static final String PROPERTY_KEY_STAMPED_LOCK = "stampedlock";
+
+	/** The Constant PROPERTY_KEY_SINGLE_WRITER. */
+	public static final String PROPERTY_KEY_SINGLE_WRITER = "singlewriter";
+
+	/** The Constant PROPERTY_KEY_DEADLOCK_POLICY. */
+	public static final String PROPERTY_KEY_DEADLOCK_POLICY = "deadlockpolicy";
+
+	/** The Constant PROPERTY_KEY_LOCK_TIMEOUT. */
+	public static final String PROPERTY_KEY_LOCK_TIMEOUT = "locktimeout";
+
 	/** The Constant PROPERTY_KEY_SERVER_PORT. */
 	public static final String PROPERTY_KEY_SERVER_PORT = "port";
 
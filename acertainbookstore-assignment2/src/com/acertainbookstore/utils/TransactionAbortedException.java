@@ -0,0 +1,30 @@
+package com.acertainbookstore.utils;
+
+/**
+ * {@link TransactionAbortedException} signals that an operation was aborted
+ * by the book store to break a (possible) deadlock, without any of its
+ * effects being applied. Unlike other {@link BookStoreException}s, the
+ * operation can be retried as is.
+ */
+public class TransactionAbortedException extends BookStoreException {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Instantiates a new {@link TransactionAbortedException}.
+	 */
+	public TransactionAbortedException() {
+		super();
+	}
+
+	/**
+	 * Instantiates a new {@link TransactionAbortedException}.
+	 *
+	 * @param message
+	 *            the message
+	 */
+	public TransactionAbortedException(String message) {
+		super(message);
+	}
+}
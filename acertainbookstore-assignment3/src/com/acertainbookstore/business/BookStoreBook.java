@@ -28,6 +28,15 @@ public class BookStoreBook extends ImmutableBook {
 	/** Whether the book is editor picked. */
 	private boolean editorPick;
 
+	/**
+	 * The version of the book, set when it is added to the store: the
+	 * {@link Book} parts of it never change afterwards.
+	 */
+	private long bookVersion;
+
+	/** The version of the stock of the book, set whenever the book changes. */
+	private long stockVersion;
+
 	/**
 	 * Instantiates a new {@link BookStoreBook}.
 	 *
@@ -123,6 +132,46 @@ public class BookStoreBook extends ImmutableBook {
 		return editorPick;
 	}
 
+	/**
+	 * Gets the version of the {@link Book} parts of the book.
+	 *
+	 * @return the book version
+	 */
+	public long getBookVersion() {
+		return bookVersion;
+	}
+
+	/**
+	 * Gets the version of the {@link StockBook} parts of the book.
+	 *
+	 * @return the stock version
+	 */
+	public long getStockVersion() {
+		return stockVersion;
+	}
+
+	/**
+	 * Sets the version of the book as it is added to the store, which is also
+	 * the first version of its stock.
+	 *
+	 * @param version
+	 *            the version
+	 */
+	public void setBookVersion(long version) {
+		this.bookVersion = version;
+		this.stockVersion = version;
+	}
+
+	/**
+	 * Sets the version of the stock of the book after a change.
+	 *
+	 * @param version
+	 *            the version
+	 */
+	public void setStockVersion(long version) {
+		this.stockVersion = version;
+	}
+
 	/**
 	 * Sets the total rating of the book.
 	 *
@@ -0,0 +1,94 @@
+package com.acertainbookstore.business;
+
+/**
+ * {@link BookVersion} is used to represent the book and the version of it that
+ * a client holds. Every change to a book in the store gives it a new, higher
+ * version, so a client can ask for the books it holds an older version of.
+ */
+public class BookVersion {
+
+	/** The version of a book the client does not hold. */
+	public static final long NO_VERSION = 0;
+
+	/** The ISBN. */
+	private int isbn;
+
+	/** The version. */
+	private long version;
+
+	/**
+	 * Instantiates a new {@link BookVersion} with <code>version</code> of
+	 * <code>ISBN</code>.
+	 *
+	 * @param isbn
+	 *            the ISBN
+	 * @param version
+	 *            the version
+	 */
+	public BookVersion(int isbn, long version) {
+		this.setISBN(isbn);
+		this.setVersion(version);
+	}
+
+	/**
+	 * Gets the ISBN of the book.
+	 *
+	 * @return the ISBN
+	 */
+	public int getISBN() {
+		return isbn;
+	}
+
+	/**
+	 * Gets the version of the book.
+	 *
+	 * @return the version
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Sets the ISBN of the book.
+	 *
+	 * @param isbn
+	 *            the new ISBN
+	 */
+	public void setISBN(int isbn) {
+		this.isbn = isbn;
+	}
+
+	/**
+	 * Sets the version of the book.
+	 *
+	 * @param version
+	 *            the new version
+	 */
+	public void setVersion(long version) {
+		this.version = version;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+
+		return this.getISBN() == ((BookVersion) obj).getISBN();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return getISBN();
+	}
+}
@@ -1,6 +1,7 @@
 package com.acertainbookstore.business;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -10,12 +11,15 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 
 import com.acertainbookstore.interfaces.BookStore;
 import com.acertainbookstore.interfaces.StockManager;
 import com.acertainbookstore.utils.BookStoreConstants;
 import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreResponse;
 import com.acertainbookstore.utils.BookStoreUtility;
 
 /**
@@ -30,6 +34,12 @@ public class CertainBookStore implements BookStore, StockManager {
 	/** The mapping of books from ISBN to {@link BookStoreBook}. */
 	private Map<Integer, BookStoreBook> bookMap = null;
 
+	/**
+	 * The version of the store, incremented by every change so that the books
+	 * changed are stamped with a version higher than any seen before.
+	 */
+	private long version = 0;
+
 	/**
 	 * Instantiates a new {@link CertainBookStore}.
 	 */
@@ -38,6 +48,26 @@ public class CertainBookStore implements BookStore, StockManager {
 		// Constructors are not synchronized
 		bookMap = new HashMap<>();
 	}
+
+	/**
+	 * Gets the version of the store. The books listed by {@link #getBooks()}
+	 * stay the same as long as the version does.
+	 *
+	 * @return the version
+	 */
+	public synchronized long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Increments the version of the store.
+	 *
+	 * @return the new version
+	 */
+	private long nextVersion() {
+		return ++version;
+	}
+
 	private synchronized void validate(StockBook book) throws BookStoreException {
 		int isbn = book.getISBN();
 		String bookTitle = book.getTitle();
@@ -110,9 +140,13 @@ public class CertainBookStore implements BookStore, StockManager {
 			validate(book);
 		}
 
+		long bookVersion = nextVersion();
+
 		for (StockBook book : bookSet) {
 			int isbn = book.getISBN();
-			bookMap.put(isbn, new BookStoreBook(book));
+			BookStoreBook bookStoreBook = new BookStoreBook(book);
+			bookStoreBook.setBookVersion(bookVersion);
+			bookMap.put(isbn, bookStoreBook);
 		}
 	}
 
@@ -135,6 +169,7 @@ public class CertainBookStore implements BookStore, StockManager {
 		}
 
 		BookStoreBook book;
+		long stockVersion = nextVersion();
 
 		// Update the number of copies
 		for (BookCopy bookCopy : bookCopiesSet) {
@@ -142,6 +177,7 @@ public class CertainBookStore implements BookStore, StockManager {
 			numCopies = bookCopy.getNumCopies();
 			book = bookMap.get(isbn);
 			book.addCopies(numCopies);
+			book.setStockVersion(stockVersion);
 		}
 	}
 
@@ -178,8 +214,12 @@ public class CertainBookStore implements BookStore, StockManager {
 			validate(editorPickArg);
 		}
 
+		long stockVersion = nextVersion();
+
 		for (BookEditorPick editorPickArg : editorPicks) {
-			bookMap.get(editorPickArg.getISBN()).setEditorPick(editorPickArg.isEditorPick());
+			BookStoreBook book = bookMap.get(editorPickArg.getISBN());
+			book.setEditorPick(editorPickArg.isEditorPick());
+			book.setStockVersion(stockVersion);
 		}
 	}
 
@@ -216,10 +256,13 @@ public class CertainBookStore implements BookStore, StockManager {
 
 		// We throw exception now since we want to see how many books in the
 		// order incurred misses which is used by books in demand
+		long stockVersion = nextVersion();
+
 		if (saleMiss) {
 			for (Map.Entry<Integer, Integer> saleMissEntry : salesMisses.entrySet()) {
 				book = bookMap.get(saleMissEntry.getKey());
 				book.addSaleMiss(saleMissEntry.getValue());
+				book.setStockVersion(stockVersion);
 			}
 			throw new BookStoreException(BookStoreConstants.BOOK + BookStoreConstants.NOT_AVAILABLE);
 		}
@@ -228,6 +271,7 @@ public class CertainBookStore implements BookStore, StockManager {
 		for (BookCopy bookCopyToBuy : bookCopiesToBuy) {
 			book = bookMap.get(bookCopyToBuy.getISBN());
 			book.buyCopies(bookCopyToBuy.getNumCopies());
+			book.setStockVersion(stockVersion);
 		}
 	}
 
@@ -273,6 +317,81 @@ public class CertainBookStore implements BookStore, StockManager {
 				.collect(Collectors.toList());
 	}
 
+	/**
+	 * Gets the books of which the client holds an older version, with their
+	 * versions. The books the client holds the current version of are left
+	 * out. As with {@link #getBooks(Set)}, the lookup fails if any of the
+	 * ISBNs is invalid or not in the store.
+	 *
+	 * @param bookVersions
+	 *            the ISBNs, with the versions of the books the client holds
+	 * @return the response holding the books and their versions
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	public synchronized BookStoreResponse getModifiedBooks(Set<BookVersion> bookVersions)
+			throws BookStoreException {
+		return getModified(bookVersions, BookStoreBook::getBookVersion, BookStoreBook::immutableBook);
+	}
+
+	/**
+	 * Gets the stock books of which the client holds an older version, with
+	 * their versions. The books the client holds the current version of are
+	 * left out. As with {@link #getBooksByISBN(Set)}, the lookup fails if any
+	 * of the ISBNs is invalid or not in the store.
+	 *
+	 * @param bookVersions
+	 *            the ISBNs, with the versions of the books the client holds
+	 * @return the response holding the stock books and their versions
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	public synchronized BookStoreResponse getModifiedStockBooks(Set<BookVersion> bookVersions)
+			throws BookStoreException {
+		return getModified(bookVersions, BookStoreBook::getStockVersion, BookStoreBook::immutableStockBook);
+	}
+
+	/**
+	 * Gets the books of which the client holds an older version.
+	 *
+	 * @param bookVersions
+	 *            the ISBNs, with the versions of the books the client holds
+	 * @param versionOf
+	 *            the version of the view of the book
+	 * @param viewOf
+	 *            the view of the book returned
+	 * @return the response holding the books and their versions
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	private BookStoreResponse getModified(Set<BookVersion> bookVersions, ToLongFunction<BookStoreBook> versionOf,
+			Function<BookStoreBook, ? extends Book> viewOf) throws BookStoreException {
+		if (bookVersions == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		for (BookVersion bookVersion : bookVersions) {
+			validateISBNInStock(bookVersion.getISBN());
+		}
+
+		List<Book> books = new ArrayList<>();
+		long[] versions = new long[bookVersions.size()];
+
+		for (BookVersion bookVersion : bookVersions) {
+			BookStoreBook book = bookMap.get(bookVersion.getISBN());
+			long currentVersion = versionOf.applyAsLong(book);
+
+			if (currentVersion != bookVersion.getVersion()) {
+				versions[books.size()] = currentVersion;
+				books.add(viewOf.apply(book));
+			}
+		}
+
+		BookStoreResponse response = new BookStoreResponse(null, books);
+		response.setVersions(Arrays.copyOf(versions, books.size()));
+		return response;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -354,6 +473,7 @@ public class CertainBookStore implements BookStore, StockManager {
 	 */
 	public synchronized void removeAllBooks() throws BookStoreException {
 		bookMap.clear();
+		nextVersion();
 	}
 
 	/*
@@ -380,5 +500,7 @@ public class CertainBookStore implements BookStore, StockManager {
 		for (int isbn : isbnSet) {
 			bookMap.remove(isbn);
 		}
+
+		nextVersion();
 	}
 }
@@ -0,0 +1,152 @@
+package com.acertainbookstore.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import com.acertainbookstore.business.Book;
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.interfaces.BookStore;
+import com.acertainbookstore.utils.BookStoreBatchCall;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreMessageTag;
+import com.acertainbookstore.utils.BookStoreResponse;
+
+/**
+ * {@link BookStoreBatch} collects {@link BookStore} operations and sends them
+ * to the server in a single HTTP request. Every operation returns a future,
+ * which completes with the result of the operation once the batch is sent.
+ * The server runs the operations in order, each independently of the others,
+ * so the batch is not atomic. A batch is not thread-safe.
+ *
+ * @see BookStoreHTTPProxy#newBatch()
+ */
+public class BookStoreBatch {
+
+	/** The proxy sending the batch. */
+	private final BookStoreHTTPProxy proxy;
+
+	/** The operations collected so far. */
+	private final List<BookStoreBatchCall> calls = new ArrayList<>();
+
+	/** The future result of every operation collected so far. */
+	private final List<CompletableFuture<List<?>>> results = new ArrayList<>();
+
+	/**
+	 * Instantiates a new {@link BookStoreBatch}.
+	 *
+	 * @param proxy
+	 *            the proxy sending the batch
+	 */
+	BookStoreBatch(BookStoreHTTPProxy proxy) {
+		this.proxy = proxy;
+	}
+
+	/**
+	 * Adds a purchase to the batch.
+	 *
+	 * @param bookCopiesToBuy
+	 *            the book copies to buy
+	 * @return the future completing once the books are bought
+	 * @see BookStore#buyBooks(Set)
+	 */
+	public CompletableFuture<Void> buyBooks(Set<BookCopy> bookCopiesToBuy) {
+		return add(BookStoreMessageTag.BUYBOOKS, bookCopiesToBuy).thenAccept(list -> {
+		});
+	}
+
+	/**
+	 * Adds a lookup of books to the batch.
+	 *
+	 * @param isbnSet
+	 *            the ISBNs
+	 * @return the future books
+	 * @see BookStore#getBooks(Set)
+	 */
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<List<Book>> getBooks(Set<Integer> isbnSet) {
+		return add(BookStoreMessageTag.GETBOOKS, isbnSet).thenApply(list -> (List<Book>) list);
+	}
+
+	/**
+	 * Adds a lookup of editor picks to the batch.
+	 *
+	 * @param numBooks
+	 *            the number of books
+	 * @return the future editor picks
+	 * @see BookStore#getEditorPicks(int)
+	 */
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<List<Book>> getEditorPicks(int numBooks) {
+		return add(BookStoreMessageTag.GETEDITORPICKS, numBooks).thenApply(list -> (List<Book>) list);
+	}
+
+	/**
+	 * Gets the number of operations collected so far.
+	 *
+	 * @return the number of operations
+	 */
+	public int size() {
+		return calls.size();
+	}
+
+	/**
+	 * Sends the operations collected so far in one request, and completes
+	 * their futures. The batch is empty afterwards, and can be reused.
+	 *
+	 * @throws BookStoreException
+	 *             if the request itself failed, or its response does not hold
+	 *             one response per operation, in which case every future
+	 *             fails with the same exception
+	 */
+	public void send() throws BookStoreException {
+		if (calls.isEmpty()) {
+			return;
+		}
+
+		List<CompletableFuture<List<?>>> pendingResults = new ArrayList<>(results);
+		List<BookStoreResponse> responses;
+
+		try {
+			responses = proxy.performBatch(new ArrayList<>(calls));
+
+			if (responses == null || responses.size() != pendingResults.size()
+					|| !responses.stream().allMatch(BookStoreResponse.class::isInstance)) {
+				throw new BookStoreException(BookStoreClientConstants.STR_ERR_CLIENT_RESPONSE_DECODING);
+			}
+		} catch (BookStoreException ex) {
+			pendingResults.forEach(result -> result.completeExceptionally(ex));
+			throw ex;
+		} finally {
+			calls.clear();
+			results.clear();
+		}
+
+		for (int i = 0; i < pendingResults.size(); i++) {
+			BookStoreResponse response = responses.get(i);
+
+			if (response.getException() != null) {
+				pendingResults.get(i).completeExceptionally(response.getException());
+			} else {
+				pendingResults.get(i).complete(response.getList());
+			}
+		}
+	}
+
+	/**
+	 * Adds an operation to the batch.
+	 *
+	 * @param tag
+	 *            the message tag of the operation
+	 * @param inputValue
+	 *            the input value
+	 * @return the future list returned by the operation
+	 */
+	private CompletableFuture<List<?>> add(BookStoreMessageTag tag, Object inputValue) {
+		CompletableFuture<List<?>> result = new CompletableFuture<>();
+		calls.add(new BookStoreBatchCall(tag, inputValue));
+		results.add(result);
+		return result;
+	}
+}
@@ -0,0 +1,223 @@
+package com.acertainbookstore.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.acertainbookstore.business.Book;
+import com.acertainbookstore.business.BookVersion;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreResponse;
+
+/**
+ * {@link BookStoreCache} keeps the books last fetched from the server, with
+ * their versions, evicting the least recently used books beyond its maximum
+ * size. A lookup whose books were all validated within the maximum age is
+ * served without asking the server. Otherwise, the server is asked for the
+ * books of which the cache holds an older version, and only those are sent
+ * back: the books the cache holds the current version of are not.
+ *
+ * Since the server sees every ISBN of the lookup, an invalid or missing book
+ * fails the lookup as it would without the cache.
+ *
+ * @param <T>
+ *            the type of the books
+ */
+final class BookStoreCache<T extends Book> {
+
+	/**
+	 * {@link Lookup} is a lookup of the books modified since the versions held.
+	 */
+	interface Lookup {
+
+		/**
+		 * Looks the modified books up.
+		 *
+		 * @param bookVersions
+		 *            the ISBNs, with the versions held
+		 * @return the response holding the modified books and their versions
+		 * @throws BookStoreException
+		 *             the book store exception
+		 */
+		BookStoreResponse lookup(Set<BookVersion> bookVersions) throws BookStoreException;
+	}
+
+	/**
+	 * {@link Entry} is a book in the cache.
+	 *
+	 * @param <T>
+	 *            the type of the book
+	 */
+	private static final class Entry<T> {
+
+		/** The book. */
+		private final T book;
+
+		/** The version. */
+		private final long version;
+
+		/** The time the version was last known to be current, in nanoseconds. */
+		private final long validatedAt;
+
+		private Entry(T book, long version, long validatedAt) {
+			this.book = book;
+			this.version = version;
+			this.validatedAt = validatedAt;
+		}
+	}
+
+	/** The lookup. */
+	private final Lookup lookup;
+
+	/** The time a book is served without being validated, in nanoseconds. */
+	private final long maxAgeNanos;
+
+	/** The books by ISBN, least recently used first, guarded by the cache. */
+	private final Map<Integer, Entry<T>> entries;
+
+	/** The number of times the cache was cleared, guarded by the cache. */
+	private long generation = 0;
+
+	/**
+	 * Instantiates a new {@link BookStoreCache}.
+	 *
+	 * @param lookup
+	 *            the lookup
+	 * @param maxSize
+	 *            the maximum number of books
+	 * @param maxAgeMillis
+	 *            the time a book is served without being validated
+	 */
+	BookStoreCache(Lookup lookup, int maxSize, long maxAgeMillis) {
+		this.lookup = lookup;
+		this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+		this.entries = new LinkedHashMap<Integer, Entry<T>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Entry<T>> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Gets the books, from the cache where possible.
+	 *
+	 * @param isbnSet
+	 *            the ISBNs
+	 * @return the books
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@SuppressWarnings("unchecked")
+	List<T> getBooks(Set<Integer> isbnSet) throws BookStoreException {
+		if (isbnSet == null) {
+			// The server rejects the lookup
+			lookup.lookup(null);
+			return null;
+		}
+
+		Map<Integer, Entry<T>> held = new HashMap<>();
+		long now = System.nanoTime();
+		boolean fresh = true;
+		long lookupGeneration;
+
+		synchronized (this) {
+			lookupGeneration = generation;
+
+			for (Integer isbn : isbnSet) {
+				Entry<T> entry = entries.get(isbn);
+
+				if (entry != null) {
+					held.put(isbn, entry);
+				}
+
+				fresh &= entry != null && now - entry.validatedAt < maxAgeNanos;
+			}
+		}
+
+		if (!fresh) {
+			Set<BookVersion> bookVersions = new HashSet<>();
+
+			for (Integer isbn : isbnSet) {
+				Entry<T> entry = held.get(isbn);
+				bookVersions.add(new BookVersion(isbn, entry == null ? BookVersion.NO_VERSION : entry.version));
+			}
+
+			BookStoreResponse response = lookup.lookup(bookVersions);
+			List<?> books = response.getList();
+			long[] versions = response.getVersions();
+
+			if (books == null || versions == null || versions.length != books.size()) {
+				throw new BookStoreException(BookStoreClientConstants.STR_ERR_CLIENT_RESPONSE_DECODING);
+			}
+
+			// The books left out are still current
+			for (Map.Entry<Integer, Entry<T>> heldEntry : held.entrySet()) {
+				Entry<T> entry = heldEntry.getValue();
+				heldEntry.setValue(new Entry<>(entry.book, entry.version, now));
+			}
+
+			for (int i = 0; i < versions.length; i++) {
+				T book = (T) books.get(i);
+				held.put(book.getISBN(), new Entry<>(book, versions[i], now));
+			}
+
+			update(held, lookupGeneration);
+		}
+
+		List<T> booksFound = new ArrayList<>(isbnSet.size());
+
+		for (Integer isbn : isbnSet) {
+			Entry<T> entry = held.get(isbn);
+
+			if (entry == null) {
+				throw new BookStoreException(BookStoreClientConstants.STR_ERR_CLIENT_RESPONSE_DECODING);
+			}
+
+			booksFound.add(entry.book);
+		}
+
+		return booksFound;
+	}
+
+	/**
+	 * Removes all the books from the cache.
+	 */
+	synchronized void clear() {
+		entries.clear();
+		generation++;
+	}
+
+	/**
+	 * Puts the books validated by a lookup into the cache, unless a concurrent
+	 * lookup put a newer version meanwhile. Nothing is put if the cache was
+	 * cleared since the lookup started, since the books may predate the change
+	 * that cleared it.
+	 *
+	 * @param validated
+	 *            the books validated
+	 * @param lookupGeneration
+	 *            the generation of the cache when the lookup started
+	 */
+	private synchronized void update(Map<Integer, Entry<T>> validated, long lookupGeneration) {
+		if (generation != lookupGeneration) {
+			return;
+		}
+
+		for (Map.Entry<Integer, Entry<T>> validatedEntry : validated.entrySet()) {
+			Entry<T> entry = entries.get(validatedEntry.getKey());
+
+			if (entry == null || entry.version <= validatedEntry.getValue().version) {
+				entries.put(validatedEntry.getKey(), validatedEntry.getValue());
+			}
+		}
+	}
+}
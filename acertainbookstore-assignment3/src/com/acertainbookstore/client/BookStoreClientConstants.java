@@ -17,6 +17,12 @@ public final class BookStoreClientConstants {
 	/** The Constant CLIENT_MAX_TIMEOUT_MILLISECS. */
 	public static final int CLIENT_MAX_TIMEOUT_MILLISECS = 30000;
 
+	/**
+	 * The Constant CLIENT_COALESCING_WINDOW_MILLIS is the time concurrent
+	 * lookups of books are collected before being sent as one request.
+	 */
+	public static final long CLIENT_COALESCING_WINDOW_MILLIS = 2;
+
 	/** The Constant strERR_CLIENT_REQUEST_SENDING. */
 	public static final String STR_ERR_CLIENT_REQUEST_SENDING = "ERR_CLIENT_REQUEST_SENDING";
 
@@ -3,28 +3,33 @@ package com.acertainbookstore.client;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
 import com.acertainbookstore.business.Book;
 import com.acertainbookstore.business.BookCopy;
 import com.acertainbookstore.business.BookRating;
+import com.acertainbookstore.business.BookVersion;
 import com.acertainbookstore.interfaces.BookStore;
-import com.acertainbookstore.utils.BookStoreKryoSerializer;
 import com.acertainbookstore.interfaces.BookStoreSerializer;
-import com.acertainbookstore.utils.BookStoreXStreamSerializer;
+import com.acertainbookstore.utils.BookStoreBatchCall;
 import com.acertainbookstore.utils.BookStoreConstants;
 import com.acertainbookstore.utils.BookStoreException;
 import com.acertainbookstore.utils.BookStoreMessageTag;
 import com.acertainbookstore.utils.BookStoreRequest;
 import com.acertainbookstore.utils.BookStoreResponse;
+import com.acertainbookstore.utils.BookStoreSerializationFormat;
 import com.acertainbookstore.utils.BookStoreUtility;
 
 /**
  * {@link BookStoreHTTPProxy} implements the client level synchronous
- * {@link CertainBookStore} API declared in the {@link BookStore} class.
+ * {@link CertainBookStore} API declared in the {@link BookStore} class. The
+ * asynchronous variants of the operations return a {@link CompletableFuture}
+ * instead of blocking the caller, so many calls can be outstanding at once.
  * 
  * @see BookStore
  * @see CertainBookStore
@@ -38,10 +43,25 @@ public class BookStoreHTTPProxy implements BookStore {
 	protected String serverAddress;
 
 	/** The serializer. */
-	private static ThreadLocal<BookStoreSerializer> serializer;
+	private final ThreadLocal<BookStoreSerializer> serializer;
+
+	/** Whether concurrent reads are coalesced. */
+	private volatile boolean readCoalescing = false;
+
+	/** The editor pick lookups in flight. */
+	private final BookStoreSingleFlight<Integer, List<Book>> editorPicksFlights = new BookStoreSingleFlight<>(
+			BookStoreClientConstants.CLIENT_COALESCING_WINDOW_MILLIS);
+
+	/** The coalescer of the lookups of books by ISBN. */
+	private final BookStoreReadCoalescer<Book> booksCoalescer = new BookStoreReadCoalescer<>(this::fetchBooks,
+			BookStoreClientConstants.CLIENT_COALESCING_WINDOW_MILLIS);
+
+	/** The cache of the books, or null if the books are not cached. */
+	private volatile BookStoreCache<Book> cache = null;
 
 	/**
-	 * Initializes a new {@link BookStoreHTTPProxy}.
+	 * Initializes a new {@link BookStoreHTTPProxy} using the default serialization
+	 * format.
 	 *
 	 * @param serverAddress
 	 *            the server address
@@ -49,13 +69,24 @@ public class BookStoreHTTPProxy implements BookStore {
 	 *             the exception
 	 */
 	public BookStoreHTTPProxy(String serverAddress) throws Exception {
+		this(serverAddress, BookStoreConstants.SERIALIZATION);
+	}
+
+	/**
+	 * Initializes a new {@link BookStoreHTTPProxy} exchanging messages with the server
+	 * in the given serialization format.
+	 *
+	 * @param serverAddress
+	 *            the server address
+	 * @param format
+	 *            the serialization format
+	 * @throws Exception
+	 *             the exception
+	 */
+	public BookStoreHTTPProxy(String serverAddress, BookStoreSerializationFormat format) throws Exception {
 
 		// Setup the type of serializer.
-		if (BookStoreConstants.BINARY_SERIALIZATION) {
-			serializer = ThreadLocal.withInitial(BookStoreKryoSerializer::new);
-		} else {
-			serializer = ThreadLocal.withInitial(BookStoreXStreamSerializer::new);
-		}
+		serializer = ThreadLocal.withInitial(format::newSerializer);
 
 		setServerAddress(serverAddress);
 		client = new HttpClient();
@@ -91,15 +122,90 @@ public class BookStoreHTTPProxy implements BookStore {
 		this.serverAddress = serverAddress;
 	}
 
+	/**
+	 * Checks if concurrent reads are coalesced.
+	 *
+	 * @return true, if concurrent reads are coalesced
+	 */
+	public boolean isReadCoalescing() {
+		return readCoalescing;
+	}
+
+	/**
+	 * Sets whether concurrent reads are coalesced. When they are, concurrent
+	 * lookups of editor picks of the same size made within a short window
+	 * share one request, and the lookups of books by ISBN made within a short
+	 * window are merged into one request. A read never shares a request sent
+	 * before it was made. Reads are not coalesced by default.
+	 *
+	 * @param readCoalescing
+	 *            whether concurrent reads are coalesced
+	 */
+	public void setReadCoalescing(boolean readCoalescing) {
+		this.readCoalescing = readCoalescing;
+	}
+
+	/**
+	 * Sets the window within which concurrent reads are coalesced, which is
+	 * {@link BookStoreClientConstants#CLIENT_COALESCING_WINDOW_MILLIS} by
+	 * default. A longer window lets more reads share a request, at the cost of
+	 * delaying each of them.
+	 *
+	 * @param windowMillis
+	 *            the window, in milliseconds
+	 */
+	public void setReadCoalescingWindow(long windowMillis) {
+		editorPicksFlights.setWindowMillis(windowMillis);
+		booksCoalescer.setWindowMillis(windowMillis);
+	}
+
+	/**
+	 * Caches the books looked up by ISBN, replacing the current cache if any.
+	 * The books validated within <code>maxAgeMillis</code> are served without
+	 * asking the server; the others are validated against the versions held
+	 * by the server, which only sends back the books that changed. A book
+	 * changes only when it is removed and added again. Cached lookups are not
+	 * coalesced.
+	 *
+	 * @param maxSize
+	 *            the maximum number of books cached
+	 * @param maxAgeMillis
+	 *            the time a book is served without being validated
+	 */
+	public void enableCache(int maxSize, long maxAgeMillis) {
+		cache = new BookStoreCache<>(this::fetchModifiedBooks, maxSize, maxAgeMillis);
+	}
+
+	/**
+	 * Stops caching the books, dropping the books cached.
+	 */
+	public void disableCache() {
+		cache = null;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
 	 * @see com.acertainbookstore.interfaces.BookStore#buyBooks(java.util.Set)
 	 */
 	public void buyBooks(Set<BookCopy> isbnSet) throws BookStoreException {
+		BookStoreUtility.getResult(buyBooksAsync(isbnSet));
+	}
+
+	/**
+	 * Buys the books without blocking the caller.
+	 *
+	 * @param isbnSet
+	 *            the book copies to buy
+	 * @return the future completing once the books are bought
+	 * @see #buyBooks(Set)
+	 */
+	public CompletableFuture<Void> buyBooksAsync(Set<BookCopy> isbnSet) {
 		String urlString = serverAddress + "/" + BookStoreMessageTag.BUYBOOKS;
 		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, isbnSet);
-		BookStoreUtility.performHttpExchange(client, bookStoreRequest, serializer.get());
+		return BookStoreUtility.performHttpExchangeAsync(client, bookStoreRequest, serializer::get)
+				.thenAccept(bookStoreResponse -> {
+				});
 	}
 
 	/*
@@ -107,13 +213,58 @@ public class BookStoreHTTPProxy implements BookStore {
 	 * 
 	 * @see com.acertainbookstore.interfaces.BookStore#getBooks(java.util.Set)
 	 */
-	@SuppressWarnings("unchecked")
 	public List<Book> getBooks(Set<Integer> isbnSet) throws BookStoreException {
+		BookStoreCache<Book> bookCache = cache;
+
+		if (bookCache != null) {
+			return bookCache.getBooks(isbnSet);
+		}
+
+		return readCoalescing ? booksCoalescer.getBooks(isbnSet) : fetchBooks(isbnSet);
+	}
+
+	/**
+	 * Fetches the books from the server.
+	 *
+	 * @param isbnSet
+	 *            the ISBNs
+	 * @return the books
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	private List<Book> fetchBooks(Set<Integer> isbnSet) throws BookStoreException {
+		return BookStoreUtility.getResult(getBooksAsync(isbnSet));
+	}
+
+	/**
+	 * Fetches from the server the books of which an older version is held.
+	 *
+	 * @param bookVersions
+	 *            the ISBNs, with the versions held
+	 * @return the response holding the modified books and their versions
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	private BookStoreResponse fetchModifiedBooks(Set<BookVersion> bookVersions) throws BookStoreException {
+		String urlString = serverAddress + "/" + BookStoreMessageTag.GETMODIFIEDBOOKS;
+		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, bookVersions);
+		return BookStoreUtility.performHttpExchange(client, bookStoreRequest, serializer::get);
+	}
+
+	/**
+	 * Gets the books without blocking the caller.
+	 *
+	 * @param isbnSet
+	 *            the ISBNs
+	 * @return the future books
+	 * @see #getBooks(Set)
+	 */
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<List<Book>> getBooksAsync(Set<Integer> isbnSet) {
 		String urlString = serverAddress + "/" + BookStoreMessageTag.GETBOOKS;
 		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, isbnSet);
-		BookStoreResponse bookStoreResponse = BookStoreUtility.performHttpExchange(client, bookStoreRequest,
-				serializer.get());
-		return (List<Book>) bookStoreResponse.getList();
+		return BookStoreUtility.performHttpExchangeAsync(client, bookStoreRequest, serializer::get)
+				.thenApply(bookStoreResponse -> (List<Book>) bookStoreResponse.getList());
 	}
 
 	/*
@@ -121,19 +272,72 @@ public class BookStoreHTTPProxy implements BookStore {
 	 * 
 	 * @see com.acertainbookstore.interfaces.BookStore#getEditorPicks(int)
 	 */
-	@SuppressWarnings("unchecked")
 	public List<Book> getEditorPicks(int numBooks) throws BookStoreException {
-		String urlEncodedNumBooks = null;
+		if (!readCoalescing) {
+			return fetchEditorPicks(numBooks);
+		}
 
-		urlEncodedNumBooks = URLEncoder.encode(Integer.toString(numBooks), StandardCharsets.UTF_8);
+		// The callers sharing the lookup each get their own list
+		return new ArrayList<>(editorPicksFlights.call(numBooks, () -> fetchEditorPicks(numBooks)));
+	}
+
+	/**
+	 * Fetches the editor picks from the server.
+	 *
+	 * @param numBooks
+	 *            the number of books
+	 * @return the editor picks
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	private List<Book> fetchEditorPicks(int numBooks) throws BookStoreException {
+		return BookStoreUtility.getResult(getEditorPicksAsync(numBooks));
+	}
 
+	/**
+	 * Gets the editor picks without blocking the caller.
+	 *
+	 * @param numBooks
+	 *            the number of books
+	 * @return the future editor picks
+	 * @see #getEditorPicks(int)
+	 */
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<List<Book>> getEditorPicksAsync(int numBooks) {
 		String urlString = serverAddress + "/" + BookStoreMessageTag.GETEDITORPICKS + "?"
-				+ BookStoreConstants.BOOK_NUM_PARAM + "=" + urlEncodedNumBooks;
+				+ BookStoreConstants.BOOK_NUM_PARAM + "="
+				+ URLEncoder.encode(Integer.toString(numBooks), StandardCharsets.UTF_8);
 
 		BookStoreRequest bookStoreRequest = BookStoreRequest.newGetRequest(urlString);
+		return BookStoreUtility.performHttpExchangeAsync(client, bookStoreRequest, serializer::get)
+				.thenApply(bookStoreResponse -> (List<Book>) bookStoreResponse.getList());
+	}
+
+	/**
+	 * Creates a new batch of operations, sent to the server in one request.
+	 *
+	 * @return the batch
+	 */
+	public BookStoreBatch newBatch() {
+		return new BookStoreBatch(this);
+	}
+
+	/**
+	 * Performs a batch of operations in one request.
+	 *
+	 * @param calls
+	 *            the operations
+	 * @return the response of every operation, in order
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@SuppressWarnings("unchecked")
+	List<BookStoreResponse> performBatch(List<BookStoreBatchCall> calls) throws BookStoreException {
+		String urlString = serverAddress + "/" + BookStoreMessageTag.BATCH;
+		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, calls);
 		BookStoreResponse bookStoreResponse = BookStoreUtility.performHttpExchange(client, bookStoreRequest,
-				serializer.get());
-		return (List<Book>) bookStoreResponse.getList();
+				serializer::get);
+		return (List<BookStoreResponse>) bookStoreResponse.getList();
 	}
 
 	/**
@@ -0,0 +1,182 @@
+package com.acertainbookstore.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import com.acertainbookstore.business.Book;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreUtility;
+
+/**
+ * {@link BookStoreReadCoalescer} merges concurrent lookups of books by ISBN
+ * into one request. The first caller opens a window and waits for it to
+ * elapse; the callers arriving meanwhile add their ISBNs to the window. The
+ * first caller then fetches the union of the ISBNs, and every caller picks its
+ * own books out of the result.
+ *
+ * A lookup fails as a whole if any of its ISBNs is invalid or missing, so when
+ * the merged lookup fails, every caller falls back to a lookup of its own ISBNs
+ * and gets its own result or exception.
+ *
+ * @param <T>
+ *            the type of the books
+ */
+final class BookStoreReadCoalescer<T extends Book> {
+
+	/**
+	 * {@link Lookup} is a lookup of books by ISBN on the server.
+	 *
+	 * @param <T>
+	 *            the type of the books
+	 */
+	interface Lookup<T> {
+
+		/**
+		 * Looks the books up.
+		 *
+		 * @param isbnSet
+		 *            the ISBNs
+		 * @return the books
+		 * @throws BookStoreException
+		 *             the book store exception
+		 */
+		List<T> lookup(Set<Integer> isbnSet) throws BookStoreException;
+	}
+
+	/**
+	 * {@link Window} is a merged lookup being collected or in flight.
+	 *
+	 * @param <T>
+	 *            the type of the books
+	 */
+	private static final class Window<T> {
+
+		/** The union of the ISBNs, guarded by the coalescer. */
+		private final Set<Integer> isbnSet = new HashSet<>();
+
+		/** The books by ISBN, or null if the merged lookup failed. */
+		private final CompletableFuture<Map<Integer, T>> books = new CompletableFuture<>();
+	}
+
+	/** The lookup. */
+	private final Lookup<T> lookup;
+
+	/** The time the first caller waits for other callers to join. */
+	private volatile long windowMillis;
+
+	/** The window being collected, or null. */
+	private Window<T> window = null;
+
+	/**
+	 * Instantiates a new {@link BookStoreReadCoalescer}.
+	 *
+	 * @param lookup
+	 *            the lookup
+	 * @param windowMillis
+	 *            the time the first caller waits for other callers to join
+	 */
+	BookStoreReadCoalescer(Lookup<T> lookup, long windowMillis) {
+		this.lookup = lookup;
+		this.windowMillis = windowMillis;
+	}
+
+	/**
+	 * Sets the time the first caller waits for other callers to join.
+	 *
+	 * @param windowMillis
+	 *            the time the first caller waits for other callers to join
+	 */
+	void setWindowMillis(long windowMillis) {
+		this.windowMillis = windowMillis;
+	}
+
+	/**
+	 * Gets the books, possibly as part of a merged lookup.
+	 *
+	 * @param isbnSet
+	 *            the ISBNs
+	 * @return the books
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	List<T> getBooks(Set<Integer> isbnSet) throws BookStoreException {
+		if (isbnSet == null || isbnSet.isEmpty()) {
+			return lookup.lookup(isbnSet);
+		}
+
+		Window<T> joinedWindow;
+		boolean first;
+
+		synchronized (this) {
+			first = window == null;
+
+			if (first) {
+				window = new Window<>();
+			}
+
+			joinedWindow = window;
+			joinedWindow.isbnSet.addAll(isbnSet);
+		}
+
+		if (first) {
+			fetch(joinedWindow);
+		}
+
+		Map<Integer, T> books = BookStoreUtility.getResult(joinedWindow.books);
+
+		if (books == null) {
+			return lookup.lookup(isbnSet);
+		}
+
+		List<T> booksFound = new ArrayList<>(isbnSet.size());
+
+		for (Integer isbn : isbnSet) {
+			booksFound.add(books.get(isbn));
+		}
+
+		return booksFound;
+	}
+
+	/**
+	 * Closes the window once it has elapsed, and performs the merged lookup.
+	 *
+	 * @param joinedWindow
+	 *            the window
+	 */
+	private void fetch(Window<T> joinedWindow) {
+		try {
+			Thread.sleep(windowMillis);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+
+		synchronized (this) {
+			window = null;
+		}
+
+		Map<Integer, T> books = null;
+
+		try {
+			List<T> booksFound = lookup.lookup(joinedWindow.isbnSet);
+			Map<Integer, T> booksByISBN = new HashMap<>();
+
+			for (T book : booksFound) {
+				booksByISBN.put(book.getISBN(), book);
+			}
+
+			// A book missing from the result would fail the caller's own lookup
+			if (booksByISBN.keySet().containsAll(joinedWindow.isbnSet)) {
+				books = booksByISBN;
+			}
+		} catch (BookStoreException ex) {
+			// Every caller falls back to a lookup of its own ISBNs
+		} finally {
+			joinedWindow.books.complete(books);
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package com.acertainbookstore.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreUtility;
+
+/**
+ * {@link BookStoreSingleFlight} lets concurrent identical calls share one
+ * round trip to the server. The first caller with a given key opens a window
+ * and waits for it to elapse; the callers arriving with the same key meanwhile
+ * join it. The first caller then closes the window and performs the call, and
+ * the callers that joined wait for its result instead of sending their own
+ * request. Since the call is only sent once the window is closed, every caller
+ * gets a result the server produced after the caller arrived, so a caller
+ * always sees its own earlier writes. A call that completes is forgotten, so
+ * nothing is cached.
+ *
+ * @param <K>
+ *            the type of the keys identifying the calls
+ * @param <V>
+ *            the type of the results
+ */
+final class BookStoreSingleFlight<K, V> {
+
+	/**
+	 * {@link Call} is a call to the server.
+	 *
+	 * @param <V>
+	 *            the type of the result
+	 */
+	interface Call<V> {
+
+		/**
+		 * Performs the call.
+		 *
+		 * @return the result
+		 * @throws BookStoreException
+		 *             the book store exception
+		 */
+		V call() throws BookStoreException;
+	}
+
+	/** The calls whose window is open, by key. */
+	private final ConcurrentMap<K, CompletableFuture<V>> open = new ConcurrentHashMap<>();
+
+	/** The time the first caller waits for other callers to join. */
+	private volatile long windowMillis;
+
+	/**
+	 * Instantiates a new {@link BookStoreSingleFlight}.
+	 *
+	 * @param windowMillis
+	 *            the time the first caller waits for other callers to join
+	 */
+	BookStoreSingleFlight(long windowMillis) {
+		this.windowMillis = windowMillis;
+	}
+
+	/**
+	 * Sets the time the first caller waits for other callers to join.
+	 *
+	 * @param windowMillis
+	 *            the time the first caller waits for other callers to join
+	 */
+	void setWindowMillis(long windowMillis) {
+		this.windowMillis = windowMillis;
+	}
+
+	/**
+	 * Performs the call, unless an identical call has not been sent yet, in
+	 * which case its result is shared.
+	 *
+	 * @param key
+	 *            the key identifying the call
+	 * @param call
+	 *            the call
+	 * @return the result, possibly shared with other callers
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	V call(K key, Call<V> call) throws BookStoreException {
+		CompletableFuture<V> result = new CompletableFuture<>();
+		CompletableFuture<V> sharedResult = open.putIfAbsent(key, result);
+
+		if (sharedResult != null) {
+			return BookStoreUtility.getResult(sharedResult);
+		}
+
+		try {
+			Thread.sleep(windowMillis);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		} finally {
+			// The callers that joined arrived before the call is sent
+			open.remove(key, result);
+		}
+
+		try {
+			V value = call.call();
+			result.complete(value);
+			return value;
+		} catch (Throwable ex) {
+			result.completeExceptionally(ex);
+			throw ex;
+		}
+	}
+}
@@ -1,29 +1,33 @@
 package com.acertainbookstore.client;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
 import com.acertainbookstore.business.BookCopy;
 import com.acertainbookstore.business.BookEditorPick;
+import com.acertainbookstore.business.BookVersion;
 import com.acertainbookstore.business.StockBook;
-import com.acertainbookstore.utils.BookStoreKryoSerializer;
 import com.acertainbookstore.interfaces.BookStoreSerializer;
-import com.acertainbookstore.utils.BookStoreXStreamSerializer;
 import com.acertainbookstore.interfaces.StockManager;
 import com.acertainbookstore.utils.BookStoreConstants;
 import com.acertainbookstore.utils.BookStoreException;
 import com.acertainbookstore.utils.BookStoreMessageTag;
 import com.acertainbookstore.utils.BookStoreRequest;
 import com.acertainbookstore.utils.BookStoreResponse;
+import com.acertainbookstore.utils.BookStoreSerializationFormat;
 import com.acertainbookstore.utils.BookStoreUtility;
 
 /**
  * {@link StockManagerHTTPProxy} implements the client level synchronous
  * {@link CertainBookStore} API declared in the {@link StockManager} class. Uses
- * the HTTP protocol for communication with the server.
+ * the HTTP protocol for communication with the server. The asynchronous
+ * variants of the operations return a {@link CompletableFuture} instead of
+ * blocking the caller.
  * 
  * @see CertainBookStore
  * @see StockManager
@@ -37,10 +41,46 @@ public class StockManagerHTTPProxy implements StockManager {
 	protected String serverAddress;
 
 	/** The serializer. */
-	private static ThreadLocal<BookStoreSerializer> serializer;
+	private final ThreadLocal<BookStoreSerializer> serializer;
+
+	/** Whether concurrent reads are coalesced. */
+	private volatile boolean readCoalescing = false;
+
+	/** The lookups of all the books in flight. */
+	private final BookStoreSingleFlight<BookStoreMessageTag, List<StockBook>> listBooksFlights = new BookStoreSingleFlight<>(
+			BookStoreClientConstants.CLIENT_COALESCING_WINDOW_MILLIS);
+
+	/** The coalescer of the lookups of books by ISBN. */
+	private final BookStoreReadCoalescer<StockBook> booksCoalescer = new BookStoreReadCoalescer<>(
+			this::fetchBooksByISBN, BookStoreClientConstants.CLIENT_COALESCING_WINDOW_MILLIS);
+
+	/** The cache of the books, or null if the books are not cached. */
+	private volatile BookStoreCache<StockBook> cache = null;
+
+	/** The books last listed, or null. */
+	private volatile Catalog catalog = null;
+
+	/**
+	 * {@link Catalog} is the list of all the books, with the entity tag the
+	 * server sent it with.
+	 */
+	private static final class Catalog {
+
+		/** The entity tag. */
+		private final String entityTag;
+
+		/** The books. */
+		private final List<StockBook> books;
+
+		private Catalog(String entityTag, List<StockBook> books) {
+			this.entityTag = entityTag;
+			this.books = books;
+		}
+	}
 
 	/**
-	 * Initializes a new {@link StockManagerHTTPProxy}.
+	 * Initializes a new {@link StockManagerHTTPProxy} using the default serialization
+	 * format.
 	 *
 	 * @param serverAddress
 	 *            the server address
@@ -48,13 +88,24 @@ public class StockManagerHTTPProxy implements StockManager {
 	 *             the exception
 	 */
 	public StockManagerHTTPProxy(String serverAddress) throws Exception {
+		this(serverAddress, BookStoreConstants.SERIALIZATION);
+	}
+
+	/**
+	 * Initializes a new {@link StockManagerHTTPProxy} exchanging messages with the server
+	 * in the given serialization format.
+	 *
+	 * @param serverAddress
+	 *            the server address
+	 * @param format
+	 *            the serialization format
+	 * @throws Exception
+	 *             the exception
+	 */
+	public StockManagerHTTPProxy(String serverAddress, BookStoreSerializationFormat format) throws Exception {
 
 		// Setup the type of serializer.
-		if (BookStoreConstants.BINARY_SERIALIZATION) {
-			serializer = ThreadLocal.withInitial(BookStoreKryoSerializer::new);
-		} else {
-			serializer = ThreadLocal.withInitial(BookStoreXStreamSerializer::new);
-		}
+		serializer = ThreadLocal.withInitial(format::newSerializer);
 
 		setServerAddress(serverAddress);
 		client = new HttpClient();
@@ -90,6 +141,78 @@ public class StockManagerHTTPProxy implements StockManager {
 		this.serverAddress = serverAddress;
 	}
 
+	/**
+	 * Checks if concurrent reads are coalesced.
+	 *
+	 * @return true, if concurrent reads are coalesced
+	 */
+	public boolean isReadCoalescing() {
+		return readCoalescing;
+	}
+
+	/**
+	 * Sets whether concurrent reads are coalesced. When they are, concurrent
+	 * lookups of all the books made within a short window share one request,
+	 * and the lookups of books by ISBN made within a short window are merged
+	 * into one request. A read never shares a request sent before it was made,
+	 * so it sees the writes made before it. Reads are not coalesced by default.
+	 *
+	 * @param readCoalescing
+	 *            whether concurrent reads are coalesced
+	 */
+	public void setReadCoalescing(boolean readCoalescing) {
+		this.readCoalescing = readCoalescing;
+	}
+
+	/**
+	 * Sets the window within which concurrent reads are coalesced, which is
+	 * {@link BookStoreClientConstants#CLIENT_COALESCING_WINDOW_MILLIS} by
+	 * default. A longer window lets more reads share a request, at the cost of
+	 * delaying each of them.
+	 *
+	 * @param windowMillis
+	 *            the window, in milliseconds
+	 */
+	public void setReadCoalescingWindow(long windowMillis) {
+		listBooksFlights.setWindowMillis(windowMillis);
+		booksCoalescer.setWindowMillis(windowMillis);
+	}
+
+	/**
+	 * Caches the books looked up by ISBN, replacing the current cache if any.
+	 * The books validated within <code>maxAgeMillis</code> are served without
+	 * asking the server, so they may miss the changes made by other clients
+	 * for that long; the others are validated against the versions held by the
+	 * server, which only sends back the books that changed. The changes made
+	 * through this proxy clear the cache. Cached lookups are not coalesced.
+	 *
+	 * @param maxSize
+	 *            the maximum number of books cached
+	 * @param maxAgeMillis
+	 *            the time a book is served without being validated
+	 */
+	public void enableCache(int maxSize, long maxAgeMillis) {
+		cache = new BookStoreCache<>(this::fetchModifiedBooks, maxSize, maxAgeMillis);
+	}
+
+	/**
+	 * Stops caching the books, dropping the books cached.
+	 */
+	public void disableCache() {
+		cache = null;
+	}
+
+	/**
+	 * Drops the books cached, after a change made through this proxy.
+	 */
+	private void clearCache() {
+		BookStoreCache<StockBook> bookCache = cache;
+
+		if (bookCache != null) {
+			bookCache.clear();
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -97,9 +220,22 @@ public class StockManagerHTTPProxy implements StockManager {
 	 * com.acertainbookstore.interfaces.StockManager#addBooks(java.util.Set)
 	 */
 	public void addBooks(Set<StockBook> bookSet) throws BookStoreException {
+		BookStoreUtility.getResult(addBooksAsync(bookSet));
+	}
+
+	/**
+	 * Adds the books without blocking the caller.
+	 *
+	 * @param bookSet
+	 *            the books to add
+	 * @return the future completing once done
+	 * @see #addBooks(Set)
+	 */
+	public CompletableFuture<Void> addBooksAsync(Set<StockBook> bookSet) {
 		String urlString = serverAddress + "/" + BookStoreMessageTag.ADDBOOKS;
 		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, bookSet);
-		BookStoreUtility.performHttpExchange(client, bookStoreRequest, serializer.get());
+		return BookStoreUtility.performHttpExchangeAsync(client, bookStoreRequest, serializer::get)
+				.thenAccept(bookStoreResponse -> clearCache());
 	}
 
 	/*
@@ -109,9 +245,22 @@ public class StockManagerHTTPProxy implements StockManager {
 	 * com.acertainbookstore.interfaces.StockManager#addCopies(java.util.Set)
 	 */
 	public void addCopies(Set<BookCopy> bookCopiesSet) throws BookStoreException {
+		BookStoreUtility.getResult(addCopiesAsync(bookCopiesSet));
+	}
+
+	/**
+	 * Adds the copies without blocking the caller.
+	 *
+	 * @param bookCopiesSet
+	 *            the copies to add
+	 * @return the future completing once done
+	 * @see #addCopies(Set)
+	 */
+	public CompletableFuture<Void> addCopiesAsync(Set<BookCopy> bookCopiesSet) {
 		String urlString = serverAddress + "/" + BookStoreMessageTag.ADDCOPIES;
 		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, bookCopiesSet);
-		BookStoreUtility.performHttpExchange(client, bookStoreRequest, serializer.get());
+		return BookStoreUtility.performHttpExchangeAsync(client, bookStoreRequest, serializer::get)
+				.thenAccept(bookStoreResponse -> clearCache());
 	}
 
 	/*
@@ -119,13 +268,77 @@ public class StockManagerHTTPProxy implements StockManager {
 	 * 
 	 * @see com.acertainbookstore.interfaces.StockManager#getBooks()
 	 */
-	@SuppressWarnings("unchecked")
 	public List<StockBook> getBooks() throws BookStoreException {
+		if (!readCoalescing) {
+			return fetchBooks();
+		}
+
+		// The callers sharing the lookup each get their own list
+		return new ArrayList<>(listBooksFlights.call(BookStoreMessageTag.LISTBOOKS, this::fetchBooks));
+	}
+
+	/**
+	 * Fetches all the books from the server, unless the books last listed are
+	 * still current.
+	 *
+	 * @return the books
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	private List<StockBook> fetchBooks() throws BookStoreException {
+		return BookStoreUtility.getResult(getBooksAsync());
+	}
+
+	/**
+	 * Gets all the books without blocking the caller.
+	 *
+	 * @return the future books
+	 * @see #getBooks()
+	 */
+	public CompletableFuture<List<StockBook>> getBooksAsync() {
+		Catalog heldCatalog = catalog;
+		return BookStoreUtility.performHttpExchangeAsync(client, newListBooksRequest(heldCatalog), serializer::get)
+				.thenApply(bookStoreResponse -> updateCatalog(heldCatalog, bookStoreResponse));
+	}
+
+	/**
+	 * Creates the request listing all the books, conditional on the books held
+	 * being out of date.
+	 *
+	 * @param heldCatalog
+	 *            the books held, or null
+	 * @return the book store request
+	 */
+	private BookStoreRequest newListBooksRequest(Catalog heldCatalog) {
 		String urlString = serverAddress + "/" + BookStoreMessageTag.LISTBOOKS;
-		BookStoreRequest bookStoreRequest = BookStoreRequest.newGetRequest(urlString);
-		BookStoreResponse bookStoreResponse = BookStoreUtility.performHttpExchange(client, bookStoreRequest,
-				serializer.get());
-		return (List<StockBook>) bookStoreResponse.getList();
+		return BookStoreRequest.newConditionalGetRequest(urlString,
+				heldCatalog == null ? null : heldCatalog.entityTag);
+	}
+
+	/**
+	 * Keeps the books listed by the server, or the books held if they are
+	 * still current.
+	 *
+	 * @param heldCatalog
+	 *            the books held when the request was sent, or null
+	 * @param bookStoreResponse
+	 *            the book store response, or null if the books held are
+	 *            current
+	 * @return a copy of the current books
+	 */
+	@SuppressWarnings("unchecked")
+	private List<StockBook> updateCatalog(Catalog heldCatalog, BookStoreResponse bookStoreResponse) {
+		if (bookStoreResponse == null) {
+			return new ArrayList<>(heldCatalog.books);
+		}
+
+		List<StockBook> books = (List<StockBook>) bookStoreResponse.getList();
+
+		if (bookStoreResponse.getEntityTag() != null && books != null) {
+			catalog = new Catalog(bookStoreResponse.getEntityTag(), new ArrayList<>(books));
+		}
+
+		return books;
 	}
 
 	/*
@@ -136,9 +349,22 @@ public class StockManagerHTTPProxy implements StockManager {
 	 * .Set)
 	 */
 	public void updateEditorPicks(Set<BookEditorPick> editorPicksValues) throws BookStoreException {
+		BookStoreUtility.getResult(updateEditorPicksAsync(editorPicksValues));
+	}
+
+	/**
+	 * Updates the editor picks without blocking the caller.
+	 *
+	 * @param editorPicksValues
+	 *            the editor picks
+	 * @return the future completing once done
+	 * @see #updateEditorPicks(Set)
+	 */
+	public CompletableFuture<Void> updateEditorPicksAsync(Set<BookEditorPick> editorPicksValues) {
 		String urlString = serverAddress + "/" + BookStoreMessageTag.UPDATEEDITORPICKS + "?";
 		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, editorPicksValues);
-		BookStoreUtility.performHttpExchange(client, bookStoreRequest, serializer.get());
+		return BookStoreUtility.performHttpExchangeAsync(client, bookStoreRequest, serializer::get)
+				.thenAccept(bookStoreResponse -> clearCache());
 	}
 
 	/*
@@ -157,13 +383,24 @@ public class StockManagerHTTPProxy implements StockManager {
 	 * @see com.acertainbookstore.interfaces.StockManager#removeAllBooks()
 	 */
 	public void removeAllBooks() throws BookStoreException {
+		BookStoreUtility.getResult(removeAllBooksAsync());
+	}
+
+	/**
+	 * Removes all the books without blocking the caller.
+	 *
+	 * @return the future completing once done
+	 * @see #removeAllBooks()
+	 */
+	public CompletableFuture<Void> removeAllBooksAsync() {
 		String urlString = serverAddress + "/" + BookStoreMessageTag.REMOVEALLBOOKS;
 
 		// Creating zero-length buffer for POST request body, because we don't
 		// need to send any data; this request is just a signal to remove all
 		// books.
 		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, "");
-		BookStoreUtility.performHttpExchange(client, bookStoreRequest, serializer.get());
+		return BookStoreUtility.performHttpExchangeAsync(client, bookStoreRequest, serializer::get)
+				.thenAccept(bookStoreResponse -> clearCache());
 	}
 
 	/*
@@ -173,9 +410,22 @@ public class StockManagerHTTPProxy implements StockManager {
 	 * com.acertainbookstore.interfaces.StockManager#removeBooks(java.util.Set)
 	 */
 	public void removeBooks(Set<Integer> isbnSet) throws BookStoreException {
+		BookStoreUtility.getResult(removeBooksAsync(isbnSet));
+	}
+
+	/**
+	 * Removes the books without blocking the caller.
+	 *
+	 * @param isbnSet
+	 *            the ISBNs of the books to remove
+	 * @return the future completing once done
+	 * @see #removeBooks(Set)
+	 */
+	public CompletableFuture<Void> removeBooksAsync(Set<Integer> isbnSet) {
 		String urlString = serverAddress + "/" + BookStoreMessageTag.REMOVEBOOKS;
 		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, isbnSet);
-		BookStoreUtility.performHttpExchange(client, bookStoreRequest, serializer.get());
+		return BookStoreUtility.performHttpExchangeAsync(client, bookStoreRequest, serializer::get)
+				.thenAccept(bookStoreResponse -> clearCache());
 	}
 
 	/*
@@ -185,13 +435,59 @@ public class StockManagerHTTPProxy implements StockManager {
 	 * com.acertainbookstore.interfaces.StockManager#getBooksByISBN(java.util.
 	 * Set)
 	 */
-	@SuppressWarnings("unchecked")
 	public List<StockBook> getBooksByISBN(Set<Integer> isbns) throws BookStoreException {
+		BookStoreCache<StockBook> bookCache = cache;
+
+		if (bookCache != null) {
+			return bookCache.getBooks(isbns);
+		}
+
+		return readCoalescing ? booksCoalescer.getBooks(isbns) : fetchBooksByISBN(isbns);
+	}
+
+	/**
+	 * Fetches the books by ISBN from the server.
+	 *
+	 * @param isbns
+	 *            the ISBNs
+	 * @return the books
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	private List<StockBook> fetchBooksByISBN(Set<Integer> isbns) throws BookStoreException {
+		return BookStoreUtility.getResult(getBooksByISBNAsync(isbns));
+	}
+
+	/**
+	 * Fetches from the server the stock books of which an older version is
+	 * held.
+	 *
+	 * @param bookVersions
+	 *            the ISBNs, with the versions held
+	 * @return the response holding the modified stock books and their versions
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	private BookStoreResponse fetchModifiedBooks(Set<BookVersion> bookVersions) throws BookStoreException {
+		String urlString = serverAddress + "/" + BookStoreMessageTag.GETMODIFIEDSTOCKBOOKS;
+		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, bookVersions);
+		return BookStoreUtility.performHttpExchange(client, bookStoreRequest, serializer::get);
+	}
+
+	/**
+	 * Gets the books by ISBN without blocking the caller.
+	 *
+	 * @param isbns
+	 *            the ISBNs
+	 * @return the future books
+	 * @see #getBooksByISBN(Set)
+	 */
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<List<StockBook>> getBooksByISBNAsync(Set<Integer> isbns) {
 		String urlString = serverAddress + "/" + BookStoreMessageTag.GETSTOCKBOOKSBYISBN;
 		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, isbns);
-		BookStoreResponse bookStoreResponse = BookStoreUtility.performHttpExchange(client, bookStoreRequest,
-				serializer.get());
-		return (List<StockBook>) bookStoreResponse.getList();
+		return BookStoreUtility.performHttpExchangeAsync(client, bookStoreRequest, serializer::get)
+				.thenApply(bookStoreResponse -> (List<StockBook>) bookStoreResponse.getList());
 	}
 
 	/**
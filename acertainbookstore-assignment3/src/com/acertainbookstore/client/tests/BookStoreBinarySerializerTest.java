@@ -0,0 +1,390 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.acertainbookstore.business.Book;
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.BookEditorPick;
+import com.acertainbookstore.business.BookRating;
+import com.acertainbookstore.business.BookVersion;
+import com.acertainbookstore.business.ImmutableBook;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.utils.BookStoreBatchCall;
+import com.acertainbookstore.utils.BookStoreBinarySerializer;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreMessageTag;
+import com.acertainbookstore.utils.BookStoreResponse;
+
+/**
+ * {@link BookStoreBinarySerializerTest} round-trips every layout of the
+ * {@link BookStoreBinarySerializer}, and checks that corrupt input is rejected
+ * with an {@link IOException}.
+ */
+public class BookStoreBinarySerializerTest {
+
+	/** A string longer than the buffer of the serializer, in UTF-8. */
+	private static final String LONG_STRING = String.join("", Collections.nCopies(3000, "\u00e9\u20acx"));
+
+	/** The serializer. */
+	private BookStoreBinarySerializer serializer;
+
+	/**
+	 * Sets up the serializer.
+	 */
+	@Before
+	public void setUp() {
+		serializer = new BookStoreBinarySerializer();
+	}
+
+	/**
+	 * Serializes and deserializes a value, both from an array and from a
+	 * stream returning a few bytes at a time.
+	 *
+	 * @param value
+	 *            the value
+	 * @return the value deserialized
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private Object roundTrip(Object value) throws IOException {
+		byte[] bytes = serializer.serialize(value);
+		Object fromStream = serializer.deserialize(new TricklingInputStream(bytes));
+		Object fromArray = serializer.deserialize(bytes);
+		assertArrayEquals(serializer.serialize(fromArray), serializer.serialize(fromStream));
+		return fromArray;
+	}
+
+	/**
+	 * Tests the strings, including null, empty and long strings.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void testStrings() throws IOException {
+		assertNull(roundTrip(null));
+		assertEquals("", roundTrip(""));
+		assertEquals("ISBN", roundTrip("ISBN"));
+		assertEquals(LONG_STRING, roundTrip(LONG_STRING));
+	}
+
+	/**
+	 * Tests the integers, including negative and extreme values.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void testIntegers() throws IOException {
+		for (int value : new int[] { 0, 1, -1, 63, -64, 64, 4096, Integer.MAX_VALUE, Integer.MIN_VALUE }) {
+			assertEquals(value, roundTrip(value));
+		}
+	}
+
+	/**
+	 * Tests the sets of every element type, and the empty set.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testSets() throws IOException {
+		Set<Integer> isbns = new HashSet<Integer>(Arrays.asList(0, -1, 1, Integer.MAX_VALUE, Integer.MIN_VALUE));
+		assertEquals(isbns, roundTrip(isbns));
+		assertEquals(new HashSet<Integer>(), roundTrip(new HashSet<Integer>()));
+
+		Set<BookCopy> bookCopies = new HashSet<BookCopy>();
+		bookCopies.add(new BookCopy(1, -4));
+		bookCopies.add(new BookCopy(Integer.MAX_VALUE, Integer.MIN_VALUE));
+		Map<Integer, Integer> copiesBack = new HashMap<Integer, Integer>();
+
+		for (BookCopy bookCopy : (Set<BookCopy>) roundTrip(bookCopies)) {
+			copiesBack.put(bookCopy.getISBN(), bookCopy.getNumCopies());
+		}
+
+		assertEquals(2, copiesBack.size());
+		assertEquals(-4, copiesBack.get(1).intValue());
+		assertEquals(Integer.MIN_VALUE, copiesBack.get(Integer.MAX_VALUE).intValue());
+
+		Set<BookRating> bookRatings = new HashSet<BookRating>();
+		bookRatings.add(new BookRating(3, 5));
+		BookRating ratingBack = ((Set<BookRating>) roundTrip(bookRatings)).iterator().next();
+		assertTrue(ratingBack.getISBN() == 3 && ratingBack.getRating() == 5);
+
+		Set<BookEditorPick> editorPicks = new HashSet<BookEditorPick>();
+		editorPicks.add(new BookEditorPick(3, true));
+		editorPicks.add(new BookEditorPick(4, false));
+		Map<Integer, Boolean> picksBack = new HashMap<Integer, Boolean>();
+
+		for (BookEditorPick editorPick : (Set<BookEditorPick>) roundTrip(editorPicks)) {
+			picksBack.put(editorPick.getISBN(), editorPick.isEditorPick());
+		}
+
+		assertEquals(2, picksBack.size());
+		assertTrue(picksBack.get(3) && !picksBack.get(4));
+
+		Set<BookVersion> bookVersions = new HashSet<BookVersion>();
+		bookVersions.add(new BookVersion(1, Long.MAX_VALUE));
+		bookVersions.add(new BookVersion(2, Long.MIN_VALUE));
+		bookVersions.add(new BookVersion(3, BookVersion.NO_VERSION));
+		Map<Integer, Long> versionsBack = new HashMap<Integer, Long>();
+
+		for (BookVersion bookVersion : (Set<BookVersion>) roundTrip(bookVersions)) {
+			versionsBack.put(bookVersion.getISBN(), bookVersion.getVersion());
+		}
+
+		assertEquals(3, versionsBack.size());
+		assertEquals(Long.MAX_VALUE, versionsBack.get(1).longValue());
+		assertEquals(Long.MIN_VALUE, versionsBack.get(2).longValue());
+		assertEquals(BookVersion.NO_VERSION, versionsBack.get(3).longValue());
+
+		Set<StockBook> stockBooks = new HashSet<StockBook>();
+		stockBooks.add(new ImmutableStockBook(1, "t", "a", 1.5f, 3, Long.MAX_VALUE, -2, Long.MIN_VALUE, true));
+		stockBooks.add(new ImmutableStockBook(2, LONG_STRING, "", 0f, 0, 0, 0, 0, false));
+		Map<Integer, StockBook> stockBooksBack = new HashMap<Integer, StockBook>();
+
+		for (StockBook stockBook : (Set<StockBook>) roundTrip(stockBooks)) {
+			stockBooksBack.put(stockBook.getISBN(), stockBook);
+		}
+
+		for (StockBook stockBook : stockBooks) {
+			assertStockBookEquals(stockBook, stockBooksBack.get(stockBook.getISBN()));
+		}
+	}
+
+	/**
+	 * Tests the responses, with books, stock books, versions and exceptions.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void testResponses() throws IOException {
+		BookStoreResponse empty = (BookStoreResponse) roundTrip(new BookStoreResponse());
+		assertTrue(empty.getList() == null && empty.getException() == null && empty.getVersions() == null);
+
+		List<Book> books = new ArrayList<Book>();
+
+		for (int i = 0; i < 3000; i++) {
+			books.add(new ImmutableBook(i, "t" + i, "a" + i, i / 3f));
+		}
+
+		books.add(new ImmutableBook(-1, null, LONG_STRING, Float.NaN));
+		books.add(new ImmutableStockBook(Integer.MIN_VALUE, "", "a", -0f, Integer.MAX_VALUE, -1, Long.MAX_VALUE,
+				Long.MIN_VALUE, true));
+		long[] versions = new long[books.size()];
+
+		for (int i = 0; i < versions.length; i++) {
+			versions[i] = Long.MAX_VALUE - i;
+		}
+
+		BookStoreResponse response = new BookStoreResponse(new BookStoreException("boom"), books);
+		response.setVersions(versions);
+		BookStoreResponse back = (BookStoreResponse) roundTrip(response);
+
+		assertEquals("boom", back.getException().getMessage());
+		assertArrayEquals(versions, back.getVersions());
+		assertEquals(books.size(), back.getList().size());
+
+		for (int i = 0; i < books.size(); i++) {
+			Book book = books.get(i);
+			Object bookBack = back.getList().get(i);
+
+			if (book instanceof StockBook) {
+				assertStockBookEquals((StockBook) book, (StockBook) bookBack);
+			} else {
+				assertFalse(bookBack instanceof StockBook);
+				assertBookEquals(book, (Book) bookBack);
+			}
+		}
+
+		response = new BookStoreResponse(null, new ArrayList<Book>());
+		response.setVersions(new long[0]);
+		back = (BookStoreResponse) roundTrip(response);
+		assertTrue(back.getList().isEmpty() && back.getVersions().length == 0 && back.getException() == null);
+	}
+
+	/**
+	 * Tests the batches of operations, and the nested responses answering them.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testBatches() throws IOException {
+		Set<Integer> isbns = new HashSet<Integer>(Arrays.asList(1, 2));
+		List<BookStoreBatchCall> calls = new ArrayList<BookStoreBatchCall>();
+		calls.add(new BookStoreBatchCall(BookStoreMessageTag.GETBOOKS, isbns));
+		calls.add(new BookStoreBatchCall(BookStoreMessageTag.GETEDITORPICKS, -7));
+		calls.add(new BookStoreBatchCall(BookStoreMessageTag.BUYBOOKS, null));
+		calls.add(new BookStoreBatchCall(null, LONG_STRING));
+
+		List<BookStoreBatchCall> callsBack = (List<BookStoreBatchCall>) roundTrip(calls);
+		assertEquals(calls.size(), callsBack.size());
+
+		for (int i = 0; i < calls.size(); i++) {
+			assertEquals(calls.get(i).getTag(), callsBack.get(i).getTag());
+			assertEquals(calls.get(i).getInputValue(), callsBack.get(i).getInputValue());
+		}
+
+		assertTrue(((List<?>) roundTrip(new ArrayList<BookStoreBatchCall>())).isEmpty());
+
+		List<Book> books = new ArrayList<Book>();
+		books.add(new ImmutableBook(1, "t", "a", 2f));
+		BookStoreResponse nested = new BookStoreResponse();
+		nested.setList(Arrays.asList(new BookStoreResponse(null, books),
+				new BookStoreResponse(new BookStoreException("miss"), null), new BookStoreResponse()));
+		BookStoreResponse outer = new BookStoreResponse();
+		outer.setList(Collections.singletonList(nested));
+
+		BookStoreResponse outerBack = (BookStoreResponse) roundTrip(outer);
+		BookStoreResponse nestedBack = (BookStoreResponse) outerBack.getList().get(0);
+		List<?> responsesBack = nestedBack.getList();
+		assertEquals(3, responsesBack.size());
+		assertBookEquals(books.get(0), (Book) ((BookStoreResponse) responsesBack.get(0)).getList().get(0));
+		assertEquals("miss", ((BookStoreResponse) responsesBack.get(1)).getException().getMessage());
+		assertNull(((BookStoreResponse) responsesBack.get(1)).getList());
+		assertNull(((BookStoreResponse) responsesBack.get(2)).getList());
+	}
+
+	/**
+	 * Tests that the values without a layout are rejected.
+	 */
+	@Test
+	public void testUnsupportedValues() {
+		Set<Object> mixed = new HashSet<Object>(Arrays.asList(1, "x"));
+		assertSerializationFails(mixed);
+		assertSerializationFails(new HashSet<Object>(Arrays.asList(1, null)));
+		assertSerializationFails(1.5);
+		assertSerializationFails(Collections.singletonList("not a call"));
+
+		BookStoreResponse response = new BookStoreResponse();
+		response.setList(Collections.singletonList("not a book"));
+		assertSerializationFails(response);
+	}
+
+	/**
+	 * Tests that corrupt input is rejected without allocating what it claims.
+	 */
+	@Test
+	public void testCorruptInput() {
+		// A string claiming a length of about 1 GB
+		assertDeserializationFails(new byte[] { 2, 1, (byte) 0xFE, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 7 });
+
+		// A set claiming a huge size, a response claiming a huge list
+		assertDeserializationFails(new byte[] { 2, 2, (byte) 0xFE, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 7 });
+		assertDeserializationFails(new byte[] { 2, 7, 0, 0, (byte) 0xFE, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 7 });
+		assertDeserializationFails(new byte[] { 2, 7, 0, (byte) 0xFE, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 7 });
+
+		// A negative size, an unknown format version, unknown tags
+		assertDeserializationFails(new byte[] { 2, 2, 1 });
+		assertDeserializationFails(new byte[] { 1, 0 });
+		assertDeserializationFails(new byte[] { 2, 99 });
+		assertDeserializationFails(new byte[] { 2, 7, 0, 0, 4, 99 });
+
+		// A varint that never ends, an empty and a truncated message
+		assertDeserializationFails(new byte[] { 2, 8, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+				(byte) 0x80, (byte) 0x80 });
+		assertDeserializationFails(new byte[0]);
+		assertDeserializationFails(new byte[] { 2, 1, 12, 'I', 'S', 'B', 'N' });
+
+		// An unknown message tag in a batch
+		assertDeserializationFails(new byte[] { 2, 9, 2, 8, 'N', 'O', 'P', 0 });
+	}
+
+	/**
+	 * Asserts that the serialization of the value fails.
+	 *
+	 * @param value
+	 *            the value
+	 */
+	private void assertSerializationFails(Object value) {
+		try {
+			serializer.serialize(value);
+			fail();
+		} catch (IOException ex) {
+			;
+		}
+	}
+
+	/**
+	 * Asserts that the deserialization of the bytes fails.
+	 *
+	 * @param bytes
+	 *            the bytes
+	 */
+	private void assertDeserializationFails(byte[] bytes) {
+		try {
+			serializer.deserialize(new ByteArrayInputStream(bytes));
+			fail();
+		} catch (IOException ex) {
+			;
+		}
+	}
+
+	/**
+	 * Asserts that two books have the same fields.
+	 *
+	 * @param expected
+	 *            the expected book
+	 * @param actual
+	 *            the actual book
+	 */
+	private static void assertBookEquals(Book expected, Book actual) {
+		assertEquals(expected.getISBN(), actual.getISBN());
+		assertEquals(expected.getTitle(), actual.getTitle());
+		assertEquals(expected.getAuthor(), actual.getAuthor());
+		assertEquals(Float.floatToIntBits(expected.getPrice()), Float.floatToIntBits(actual.getPrice()));
+	}
+
+	/**
+	 * Asserts that two stock books have the same fields.
+	 *
+	 * @param expected
+	 *            the expected stock book
+	 * @param actual
+	 *            the actual stock book
+	 */
+	private static void assertStockBookEquals(StockBook expected, StockBook actual) {
+		assertBookEquals(expected, actual);
+		assertEquals(expected.getNumCopies(), actual.getNumCopies());
+		assertEquals(expected.getNumSaleMisses(), actual.getNumSaleMisses());
+		assertEquals(expected.getNumTimesRated(), actual.getNumTimesRated());
+		assertEquals(expected.getTotalRating(), actual.getTotalRating());
+		assertEquals(expected.isEditorPick(), actual.isEditorPick());
+	}
+
+	/**
+	 * {@link TricklingInputStream} returns at most three bytes per read, so
+	 * the values span many refills of the buffer of the serializer.
+	 */
+	private static final class TricklingInputStream extends FilterInputStream {
+
+		private TricklingInputStream(byte[] bytes) {
+			super(new ByteArrayInputStream(bytes));
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			return super.read(bytes, offset, Math.min(length, 3));
+		}
+	}
+}
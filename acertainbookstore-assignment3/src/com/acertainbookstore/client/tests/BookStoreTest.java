@@ -1,10 +1,17 @@
 package com.acertainbookstore.client.tests;
 
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -14,15 +21,19 @@ import org.junit.Test;
 
 import com.acertainbookstore.business.Book;
 import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.BookEditorPick;
 import com.acertainbookstore.business.CertainBookStore;
 import com.acertainbookstore.business.ImmutableStockBook;
 import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.client.BookStoreBatch;
 import com.acertainbookstore.client.BookStoreHTTPProxy;
 import com.acertainbookstore.client.StockManagerHTTPProxy;
 import com.acertainbookstore.interfaces.BookStore;
 import com.acertainbookstore.interfaces.StockManager;
 import com.acertainbookstore.utils.BookStoreConstants;
 import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreSerializationFormat;
+import com.acertainbookstore.utils.BookStoreUtility;
 
 /**
  * {@link BookStoreTest} tests the {@link BookStore} interface.
@@ -349,6 +360,302 @@ public class BookStoreTest {
 				&& booksInStorePreTest.size() == booksInStorePostTest.size());
 	}
 
+	/**
+	 * Tests that clients using different serialization formats are served by
+	 * the same server.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testGetBooksInEveryFormat() throws Exception {
+		assumeFalse(localTest);
+
+		Set<Integer> isbnSet = new HashSet<Integer>();
+		isbnSet.add(TEST_ISBN);
+
+		for (BookStoreSerializationFormat format : BookStoreSerializationFormat.values()) {
+			BookStoreHTTPProxy formatClient = new BookStoreHTTPProxy("http://localhost:8081", format);
+
+			try {
+				List<Book> books = formatClient.getBooks(isbnSet);
+				assertTrue(books.size() == 1 && books.get(0).equals(getDefaultBook()));
+			} finally {
+				formatClient.stop();
+			}
+		}
+	}
+
+	/**
+	 * Tests that outstanding asynchronous calls all complete, and that a
+	 * failed call completes with its book store exception.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testBuyBooksAsync() throws BookStoreException {
+		assumeFalse(localTest);
+		BookStoreHTTPProxy asyncClient = (BookStoreHTTPProxy) client;
+
+		// Buy every copy of the default book, one copy per call
+		List<CompletableFuture<Void>> purchases = new ArrayList<CompletableFuture<Void>>();
+
+		for (int i = 0; i < NUM_COPIES; i++) {
+			Set<BookCopy> booksToBuy = new HashSet<BookCopy>();
+			booksToBuy.add(new BookCopy(TEST_ISBN, 1));
+			purchases.add(asyncClient.buyBooksAsync(booksToBuy));
+		}
+
+		for (CompletableFuture<Void> purchase : purchases) {
+			BookStoreUtility.getResult(purchase);
+		}
+
+		List<StockBook> listBooks = storeManager.getBooks();
+		assertTrue(listBooks.size() == 1 && listBooks.get(0).getNumCopies() == 0);
+
+		Set<Integer> isbnSet = new HashSet<Integer>();
+		isbnSet.add(-1);
+
+		try {
+			BookStoreUtility.getResult(asyncClient.getBooksAsync(isbnSet));
+			fail();
+		} catch (BookStoreException ex) {
+			;
+		}
+	}
+
+	/**
+	 * Tests that a batch runs its operations in order, each with its own
+	 * result.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testBatch() throws BookStoreException {
+		assumeFalse(localTest);
+		BookStoreBatch batch = ((BookStoreHTTPProxy) client).newBatch();
+
+		Set<Integer> isbnSet = new HashSet<Integer>();
+		isbnSet.add(TEST_ISBN);
+		Set<BookCopy> booksToBuy = new HashSet<BookCopy>();
+		booksToBuy.add(new BookCopy(TEST_ISBN, NUM_COPIES + 1));
+		Set<Integer> invalidIsbnSet = new HashSet<Integer>();
+		invalidIsbnSet.add(-1);
+
+		CompletableFuture<List<Book>> books = batch.getBooks(isbnSet);
+		CompletableFuture<Void> purchase = batch.buyBooks(booksToBuy);
+		CompletableFuture<List<Book>> invalidBooks = batch.getBooks(invalidIsbnSet);
+		CompletableFuture<List<Book>> editorPicks = batch.getEditorPicks(0);
+		batch.send();
+
+		List<Book> booksFetched = BookStoreUtility.getResult(books);
+		assertTrue(booksFetched.size() == 1 && booksFetched.get(0).equals(getDefaultBook()));
+		assertTrue(BookStoreUtility.getResult(editorPicks).isEmpty());
+		assertEquals(0, batch.size());
+
+		// The failed operations do not stop the next ones
+		for (CompletableFuture<?> failed : new CompletableFuture<?>[] { purchase, invalidBooks }) {
+			try {
+				BookStoreUtility.getResult(failed);
+				fail();
+			} catch (BookStoreException ex) {
+				;
+			}
+		}
+
+		List<StockBook> listBooks = storeManager.getBooks();
+		assertTrue(listBooks.size() == 1 && listBooks.get(0).getNumCopies() == NUM_COPIES);
+	}
+
+	/**
+	 * Tests that cached books are served without asking the server, and that
+	 * a book validated on every lookup is kept while its version is unchanged
+	 * and fetched again once it changed.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testCachedGetBooks() throws Exception {
+		assumeFalse(localTest);
+
+		BookStoreHTTPProxy cachingClient = new BookStoreHTTPProxy("http://localhost:8081");
+		Set<Integer> isbnSet = new HashSet<Integer>();
+		isbnSet.add(TEST_ISBN);
+
+		try {
+			cachingClient.enableCache(10, 60000);
+			Book cachedBook = cachingClient.getBooks(isbnSet).get(0);
+			assertEquals(getDefaultBook(), cachedBook);
+			assertSame(cachedBook, cachingClient.getBooks(isbnSet).get(0));
+
+			// Validated on every lookup: the book is kept while unchanged
+			cachingClient.enableCache(10, 0);
+			cachedBook = cachingClient.getBooks(isbnSet).get(0);
+			assertEquals(getDefaultBook(), cachedBook);
+			assertSame(cachedBook, cachingClient.getBooks(isbnSet).get(0));
+
+			// The book added again has a new version, so it is fetched
+			storeManager.removeBooks(isbnSet);
+			addBooks(TEST_ISBN, NUM_COPIES);
+			Book changedBook = cachingClient.getBooks(isbnSet).get(0);
+			assertNotSame(cachedBook, changedBook);
+			assertEquals("Test of Thrones", changedBook.getTitle());
+			assertSame(changedBook, cachingClient.getBooks(isbnSet).get(0));
+
+			isbnSet.add(-1);
+
+			try {
+				cachingClient.getBooks(isbnSet);
+				fail();
+			} catch (BookStoreException ex) {
+				;
+			}
+		} finally {
+			cachingClient.stop();
+		}
+	}
+
+	/**
+	 * Tests that concurrent lookups merged into one request each get their own
+	 * books, and that an invalid lookup does not fail the others.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testCoalescedGetBooks() throws Exception {
+		assumeFalse(localTest);
+		addBooks(TEST_ISBN + 1, NUM_COPIES);
+
+		BookStoreHTTPProxy coalescingClient = new BookStoreHTTPProxy("http://localhost:8081");
+		coalescingClient.setReadCoalescing(true);
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+
+		try {
+			CompletableFuture<List<Book>> books = getBooksAsync(coalescingClient, executor, TEST_ISBN);
+			CompletableFuture<List<Book>> otherBooks = getBooksAsync(coalescingClient, executor, TEST_ISBN + 1);
+			CompletableFuture<List<Book>> invalidBooks = getBooksAsync(coalescingClient, executor, -1);
+
+			List<Book> booksFetched = BookStoreUtility.getResult(books);
+			assertTrue(booksFetched.size() == 1 && booksFetched.get(0).equals(getDefaultBook()));
+			List<Book> otherBooksFetched = BookStoreUtility.getResult(otherBooks);
+			assertTrue(otherBooksFetched.size() == 1 && otherBooksFetched.get(0).getISBN() == TEST_ISBN + 1);
+
+			try {
+				BookStoreUtility.getResult(invalidBooks);
+				fail();
+			} catch (BookStoreException ex) {
+				;
+			}
+
+			List<Book> editorPicks = coalescingClient.getEditorPicks(0);
+			assertTrue(editorPicks.isEmpty());
+		} finally {
+			executor.shutdown();
+			coalescingClient.stop();
+		}
+	}
+
+	/**
+	 * Tests that concurrent lookups of editor picks made within the window
+	 * share one request, so they get the same random sample, and that a lookup
+	 * made after an update of the editor picks sees the update.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testCoalescedGetEditorPicks() throws Exception {
+		assumeFalse(localTest);
+		Set<BookEditorPick> editorPicks = new HashSet<BookEditorPick>();
+
+		for (int i = 1; i <= 20; i++) {
+			addBooks(TEST_ISBN + i, NUM_COPIES);
+			editorPicks.add(new BookEditorPick(TEST_ISBN + i, true));
+		}
+
+		storeManager.updateEditorPicks(editorPicks);
+
+		BookStoreHTTPProxy coalescingClient = new BookStoreHTTPProxy("http://localhost:8081");
+		coalescingClient.setReadCoalescing(true);
+
+		// Long enough for all the lookups to join the first one
+		coalescingClient.setReadCoalescingWindow(1000);
+		int numLookups = 4;
+		ExecutorService executor = Executors.newFixedThreadPool(numLookups);
+		CountDownLatch ready = new CountDownLatch(numLookups);
+
+		try {
+			List<CompletableFuture<Set<Integer>>> lookups = new ArrayList<CompletableFuture<Set<Integer>>>();
+
+			for (int i = 0; i < numLookups; i++) {
+				lookups.add(CompletableFuture.supplyAsync(() -> {
+					Set<Integer> isbnSet = new HashSet<Integer>();
+
+					try {
+						ready.countDown();
+						ready.await();
+
+						for (Book book : coalescingClient.getEditorPicks(5)) {
+							isbnSet.add(book.getISBN());
+						}
+					} catch (BookStoreException | InterruptedException ex) {
+						throw new CompletionException(ex);
+					}
+
+					return isbnSet;
+				}, executor));
+			}
+
+			Set<Integer> sample = BookStoreUtility.getResult(lookups.get(0));
+			assertEquals(5, sample.size());
+
+			for (CompletableFuture<Set<Integer>> lookup : lookups) {
+				assertEquals(sample, BookStoreUtility.getResult(lookup));
+			}
+
+			editorPicks.clear();
+
+			for (int i = 1; i <= 20; i++) {
+				editorPicks.add(new BookEditorPick(TEST_ISBN + i, false));
+			}
+
+			storeManager.updateEditorPicks(editorPicks);
+			assertTrue(coalescingClient.getEditorPicks(5).isEmpty());
+		} finally {
+			executor.shutdown();
+			coalescingClient.stop();
+		}
+	}
+
+	/**
+	 * Looks up a book on another thread.
+	 *
+	 * @param bookStore
+	 *            the book store
+	 * @param executor
+	 *            the executor
+	 * @param isbn
+	 *            the ISBN
+	 * @return the future books
+	 */
+	private static CompletableFuture<List<Book>> getBooksAsync(BookStore bookStore, ExecutorService executor,
+			int isbn) {
+		return CompletableFuture.supplyAsync(() -> {
+			Set<Integer> isbnSet = new HashSet<Integer>();
+			isbnSet.add(isbn);
+
+			try {
+				return bookStore.getBooks(isbnSet);
+			} catch (BookStoreException ex) {
+				throw new CompletionException(ex);
+			}
+		}, executor);
+	}
+
 	/**
 	 * Tear down after class.
 	 *
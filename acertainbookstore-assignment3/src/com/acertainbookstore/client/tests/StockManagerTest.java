@@ -1,6 +1,7 @@
 package com.acertainbookstore.client.tests;
 
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -451,6 +452,115 @@ public class StockManagerTest {
 		assertTrue(booksToAdd.containsAll(listBooks) && booksToAdd.size() == listBooks.size());
 	}
 
+	/**
+	 * Tests that cached stock books are validated against the server, and that
+	 * the changes made through the caching proxy clear its cache.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testCachedGetBooksByISBN() throws Exception {
+		assumeFalse(localTest);
+
+		StockManagerHTTPProxy cachingManager = new StockManagerHTTPProxy("http://localhost:8081/stock");
+		Set<Integer> isbnSet = new HashSet<Integer>();
+		isbnSet.add(TEST_ISBN);
+		Set<BookCopy> bookCopies = new HashSet<BookCopy>();
+		bookCopies.add(new BookCopy(TEST_ISBN, 1));
+
+		try {
+			// Validated on every lookup: the purchase by another client is seen
+			cachingManager.enableCache(10, 0);
+			assertEquals(NUM_COPIES.intValue(), cachingManager.getBooksByISBN(isbnSet).get(0).getNumCopies());
+			client.buyBooks(bookCopies);
+			assertEquals(NUM_COPIES - 1, cachingManager.getBooksByISBN(isbnSet).get(0).getNumCopies());
+
+			// Served from the cache, except after a change made by the proxy
+			cachingManager.enableCache(10, 60000);
+			List<StockBook> cachedBooks = cachingManager.getBooksByISBN(isbnSet);
+			assertSame(cachedBooks.get(0), cachingManager.getBooksByISBN(isbnSet).get(0));
+			cachingManager.addCopies(bookCopies);
+			assertEquals(NUM_COPIES.intValue(), cachingManager.getBooksByISBN(isbnSet).get(0).getNumCopies());
+
+			isbnSet.add(-1);
+
+			try {
+				cachingManager.getBooksByISBN(isbnSet);
+				fail();
+			} catch (BookStoreException ex) {
+				;
+			}
+		} finally {
+			cachingManager.stop();
+		}
+	}
+
+	/**
+	 * Tests that the books listed again are only sent by the server if they
+	 * changed since they were last listed.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testGetBooksNotModified() throws Exception {
+		assumeFalse(localTest);
+
+		StockManagerHTTPProxy pollingManager = new StockManagerHTTPProxy("http://localhost:8081/stock");
+		Set<BookCopy> bookCopies = new HashSet<BookCopy>();
+		bookCopies.add(new BookCopy(TEST_ISBN, 1));
+
+		try {
+			List<StockBook> booksListed = pollingManager.getBooks();
+			assertEquals(storeManager.getBooks(), booksListed);
+
+			// Not modified: the books held are returned again
+			assertSame(booksListed.get(0), pollingManager.getBooks().get(0));
+
+			storeManager.addCopies(bookCopies);
+			List<StockBook> booksChanged = pollingManager.getBooks();
+			assertTrue(booksChanged.size() == 1 && booksChanged.get(0).getNumCopies() == NUM_COPIES + 1);
+			assertSame(booksChanged.get(0), pollingManager.getBooksAsync().get().get(0));
+		} finally {
+			pollingManager.stop();
+		}
+	}
+
+	/**
+	 * Tests that a large catalog is listed alike with and without blocking, as
+	 * both stream the response.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testGetBooksAsyncLargeCatalog() throws Exception {
+		assumeFalse(localTest);
+
+		StockManagerHTTPProxy asyncManager = new StockManagerHTTPProxy("http://localhost:8081/stock");
+		Set<StockBook> booksToAdd = new HashSet<StockBook>();
+		StringBuilder longTitle = new StringBuilder();
+
+		for (int i = 0; i < 1000; i++) {
+			longTitle.append("Title ");
+		}
+
+		for (int i = 1; i <= 2000; i++) {
+			booksToAdd.add(new ImmutableStockBook(TEST_ISBN + i, longTitle.toString() + i, "Author " + i,
+					(float) i, NUM_COPIES, 0, 0, 0, false));
+		}
+
+		try {
+			storeManager.addBooks(booksToAdd);
+			List<StockBook> booksListed = asyncManager.getBooksAsync().get();
+			assertEquals(booksToAdd.size() + 1, booksListed.size());
+			assertEquals(new HashSet<>(storeManager.getBooks()), new HashSet<>(booksListed));
+		} finally {
+			asyncManager.stop();
+		}
+	}
+
 	/**
 	 * Tests basic removeAllBooks functionality.
 	 *
@@ -5,14 +5,18 @@ package com.acertainbookstore.client.workloads;
 
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import com.acertainbookstore.business.Book;
 import com.acertainbookstore.business.BookCopy;
 import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.client.BookStoreBatch;
+import com.acertainbookstore.client.BookStoreHTTPProxy;
 import com.acertainbookstore.interfaces.BookStore;
 import com.acertainbookstore.interfaces.StockManager;
 import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreUtility;
 
 /**
  * 
@@ -24,6 +28,7 @@ public class Worker implements Callable<WorkerRunResult> {
     private WorkloadConfiguration configuration = null;
     private int numSuccessfulFrequentBookStoreInteraction = 0;
     private int numTotalFrequentBookStoreInteraction = 0;
+    private List<Book> prefetchedEditorPicks = null;
 
     public Worker(WorkloadConfiguration config) {
 	configuration = config;
@@ -148,6 +153,11 @@ public class Worker implements Callable<WorkerRunResult> {
 	/**
 	 * Runs the customer interaction
 	 *
+	 * Over HTTP, if the configuration prefetches editor picks, the purchase
+	 * and the editor picks of the next customer interaction share one round
+	 * trip, since the purchase depends on the editor picks of the same
+	 * interaction.
+	 *
 	 * @throws BookStoreException
 	 */
 	private void runFrequentBookStoreInteraction() throws BookStoreException {
@@ -155,8 +165,10 @@ public class Worker implements Callable<WorkerRunResult> {
 		BookSetGenerator bookSetGenerator = configuration.getBookSetGenerator();
 		int numberOfEditorPicks = configuration.getNumEditorPicksToGet();
 
-		// get some editorPicks books
-		List<Book> editorPicksBooks = bookStore.getEditorPicks(numberOfEditorPicks);
+		// get some editorPicks books, unless they came with the last purchase
+		List<Book> editorPicksBooks = prefetchedEditorPicks != null ? prefetchedEditorPicks
+				: bookStore.getEditorPicks(numberOfEditorPicks);
+		prefetchedEditorPicks = null;
 		Set<Integer> booksISBN = editorPicksBooks.stream().map(Book::getISBN).collect(Collectors.toSet());
 
 		Set<BookCopy> booksToBuy = new HashSet<>();
@@ -164,7 +176,23 @@ public class Worker implements Callable<WorkerRunResult> {
 		// get books to buy
 		subSetOfPicksBooks.forEach(isbn -> booksToBuy.add(new BookCopy(isbn, configuration.getNumBookCopiesToBuy())));
 
-		bookStore.buyBooks(booksToBuy);
+		if (!configuration.isPrefetchEditorPicks() || !(bookStore instanceof BookStoreHTTPProxy)) {
+			bookStore.buyBooks(booksToBuy);
+			return;
+		}
+
+		// buy the books and get the editor picks of the next interaction in
+		// one round trip
+		BookStoreBatch batch = ((BookStoreHTTPProxy) bookStore).newBatch();
+		CompletableFuture<Void> purchase = batch.buyBooks(booksToBuy);
+		CompletableFuture<List<Book>> nextEditorPicks = batch.getEditorPicks(numberOfEditorPicks);
+		batch.send();
+
+		if (!nextEditorPicks.isCompletedExceptionally()) {
+			prefetchedEditorPicks = nextEditorPicks.join();
+		}
+
+		BookStoreUtility.getResult(purchase);
 	}
 
 }
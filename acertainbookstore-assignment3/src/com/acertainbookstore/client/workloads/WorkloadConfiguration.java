@@ -21,6 +21,7 @@ public class WorkloadConfiguration {
 	private int numActualRuns = 500;
 	private float percentRareStockManagerInteraction = 10f;
 	private float percentFrequentStockManagerInteraction = 30f;
+	private boolean prefetchEditorPicks = false;
 	private BookSetGenerator bookSetGenerator = null;
 	private StockManager stockManager = null;
 	private BookStore bookStore = null;
@@ -130,6 +131,20 @@ public class WorkloadConfiguration {
 		this.numAddCopies = numAddCopies;
 	}
 
+	public boolean isPrefetchEditorPicks() {
+		return prefetchEditorPicks;
+	}
+
+	/**
+	 * Sets whether, over HTTP, a customer interaction buys its books and gets
+	 * the editor picks of the next interaction in one round trip, instead of
+	 * getting the editor picks and buying in two round trips. This changes the
+	 * interaction measured, so it is off by default.
+	 */
+	public void setPrefetchEditorPicks(boolean prefetchEditorPicks) {
+		this.prefetchEditorPicks = prefetchEditorPicks;
+	}
+
 	public BookSetGenerator getBookSetGenerator() {
 		return bookSetGenerator;
 	}
@@ -1,6 +1,8 @@
 package com.acertainbookstore.interfaces;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * {@link BookStoreSerializer} specifies the serialization and de-serialization
@@ -19,6 +21,13 @@ public interface BookStoreSerializer {
 	 */
 	byte[] serialize(Object object) throws IOException;
 
+	/**
+	 * Gets the content type of the serialized objects.
+	 *
+	 * @return the content type
+	 */
+	String getContentType();
+
 	/**
 	 * De-serializes a sequence of bytes into an object.
 	 *
@@ -29,4 +38,29 @@ public interface BookStoreSerializer {
 	 *             Signals that an I/O exception has occurred.
 	 */
 	Object deserialize(byte[] bytes) throws IOException;
+
+	/**
+	 * Serializes an object directly into an output stream. The stream is
+	 * flushed but not closed.
+	 *
+	 * @param object
+	 *            the object
+	 * @param outputStream
+	 *            the output stream
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	void serialize(Object object, OutputStream outputStream) throws IOException;
+
+	/**
+	 * De-serializes an object directly from an input stream. The stream is not
+	 * closed.
+	 *
+	 * @param inputStream
+	 *            the input stream
+	 * @return the object
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	Object deserialize(InputStream inputStream) throws IOException;
 }
@@ -3,34 +3,42 @@ package com.acertainbookstore.server;
 import java.io.IOException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 
 import com.acertainbookstore.business.BookCopy;
 import com.acertainbookstore.business.BookEditorPick;
+import com.acertainbookstore.business.BookVersion;
 import com.acertainbookstore.business.CertainBookStore;
 import com.acertainbookstore.business.StockBook;
-import com.acertainbookstore.utils.BookStoreKryoSerializer;
 import com.acertainbookstore.interfaces.BookStoreSerializer;
-import com.acertainbookstore.utils.BookStoreXStreamSerializer;
+import com.acertainbookstore.utils.BookStoreBatchCall;
 import com.acertainbookstore.utils.BookStoreConstants;
 import com.acertainbookstore.utils.BookStoreException;
 import com.acertainbookstore.utils.BookStoreMessageTag;
 import com.acertainbookstore.utils.BookStoreResponse;
+import com.acertainbookstore.utils.BookStoreSerializationFormat;
 import com.acertainbookstore.utils.BookStoreUtility;
-import com.esotericsoftware.kryo.io.Input;
 
 /**
  * {@link BookStoreHTTPMessageHandler} implements the message handler class
  * which is invoked to handle messages received by the
  * {@link BookStoreHTTPServerUtility}. It decodes the HTTP message and invokes
- * the {@link CertainBookStore} server API.
+ * the {@link CertainBookStore} server API. The request content is decoded in
+ * the format of its Content-Type header, and the response is encoded in the
+ * format named by the Accept header, so clients using different formats can
+ * share the server.
  * 
  * @see AbstractHandler
  * @see BookStoreHTTPServerUtility
@@ -41,8 +49,9 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 	/** The book store. */
 	private CertainBookStore myBookStore = null;
 
-	/** The serializer. */
-	private static ThreadLocal<BookStoreSerializer> serializer;
+	/** The serializers, by format. */
+	private final Map<BookStoreSerializationFormat, ThreadLocal<BookStoreSerializer>> serializers = new EnumMap<>(
+			BookStoreSerializationFormat.class);
 
 	/**
 	 * Instantiates a new {@link BookStoreHTTPMessageHandler}.
@@ -53,11 +62,9 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 	public BookStoreHTTPMessageHandler(CertainBookStore bookStore) {
 		myBookStore = bookStore;
 
-		// Setup the type of serializer.
-		if (BookStoreConstants.BINARY_SERIALIZATION) {
-			serializer = ThreadLocal.withInitial(BookStoreKryoSerializer::new);
-		} else {
-			serializer = ThreadLocal.withInitial(BookStoreXStreamSerializer::new);
+		// Setup the serializers of every format.
+		for (BookStoreSerializationFormat format : BookStoreSerializationFormat.values()) {
+			serializers.put(format, ThreadLocal.withInitial(format::newSerializer));
 		}
 	}
 
@@ -95,7 +102,7 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 				break;
 
 			case REMOVEALLBOOKS:
-				removeAllBooks(response);
+				removeAllBooks(request, response);
 				break;
 
 			case ADDBOOKS:
@@ -107,7 +114,7 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 				break;
 
 			case LISTBOOKS:
-				listBooks(response);
+				listBooks(request, response);
 				break;
 
 			case UPDATEEDITORPICKS:
@@ -130,6 +137,18 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 				getStockBooksByISBN(request, response);
 				break;
 
+			case BATCH:
+				batch(request, response);
+				break;
+
+			case GETMODIFIEDBOOKS:
+				getModifiedBooks(request, response, false);
+				break;
+
+			case GETMODIFIEDSTOCKBOOKS:
+				getModifiedBooks(request, response, true);
+				break;
+
 			default:
 				System.err.println("Unsupported message tag.");
 				break;
@@ -152,9 +171,7 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 	 */
 	@SuppressWarnings("unchecked")
 	private void getStockBooksByISBN(HttpServletRequest request, HttpServletResponse response) throws IOException {
-		byte[] serializedRequestContent = getSerializedRequestContent(request);
-
-		Set<Integer> isbnSet = (Set<Integer>) serializer.get().deserialize(serializedRequestContent);
+		Set<Integer> isbnSet = (Set<Integer>) readRequestContent(request);
 		BookStoreResponse bookStoreResponse = new BookStoreResponse();
 
 		try {
@@ -163,8 +180,37 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 			bookStoreResponse.setException(ex);
 		}
 
-		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
-		response.getOutputStream().write(serializedResponseContent);
+		writeResponseContent(request, response, bookStoreResponse);
+	}
+
+	/**
+	 * Gets the books, or stock books, of which the client holds an older
+	 * version, with their versions.
+	 *
+	 * @param request
+	 *            the request
+	 * @param response
+	 *            the response
+	 * @param stockBooks
+	 *            whether the stock books are returned
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@SuppressWarnings("unchecked")
+	private void getModifiedBooks(HttpServletRequest request, HttpServletResponse response, boolean stockBooks)
+			throws IOException {
+		Set<BookVersion> bookVersions = (Set<BookVersion>) readRequestContent(request);
+		BookStoreResponse bookStoreResponse;
+
+		try {
+			bookStoreResponse = stockBooks ? myBookStore.getModifiedStockBooks(bookVersions)
+					: myBookStore.getModifiedBooks(bookVersions);
+		} catch (BookStoreException ex) {
+			bookStoreResponse = new BookStoreResponse();
+			bookStoreResponse.setException(ex);
+		}
+
+		writeResponseContent(request, response, bookStoreResponse);
 	}
 
 	/**
@@ -188,8 +234,7 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 			bookStoreResponse.setException(ex);
 		}
 
-		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
-		response.getOutputStream().write(serializedResponseContent);
+		writeResponseContent(request, response, bookStoreResponse);
 	}
 
 	/**
@@ -204,9 +249,7 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 	 */
 	@SuppressWarnings("unchecked")
 	private void getBooks(HttpServletRequest request, HttpServletResponse response) throws IOException {
-		byte[] serializedRequestContent = getSerializedRequestContent(request);
-
-		Set<Integer> isbnSet = (Set<Integer>) serializer.get().deserialize(serializedRequestContent);
+		Set<Integer> isbnSet = (Set<Integer>) readRequestContent(request);
 		BookStoreResponse bookStoreResponse = new BookStoreResponse();
 
 		try {
@@ -215,8 +258,7 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 			bookStoreResponse.setException(ex);
 		}
 
-		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
-		response.getOutputStream().write(serializedResponseContent);
+		writeResponseContent(request, response, bookStoreResponse);
 	}
 
 	/**
@@ -231,9 +273,7 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 	 */
 	@SuppressWarnings("unchecked")
 	private void buyBooks(HttpServletRequest request, HttpServletResponse response) throws IOException {
-		byte[] serializedRequestContent = getSerializedRequestContent(request);
-
-		Set<BookCopy> bookCopiesToBuy = (Set<BookCopy>) serializer.get().deserialize(serializedRequestContent);
+		Set<BookCopy> bookCopiesToBuy = (Set<BookCopy>) readRequestContent(request);
 		BookStoreResponse bookStoreResponse = new BookStoreResponse();
 
 		try {
@@ -242,8 +282,7 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 			bookStoreResponse.setException(ex);
 		}
 
-		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
-		response.getOutputStream().write(serializedResponseContent);
+		writeResponseContent(request, response, bookStoreResponse);
 	}
 
 	/**
@@ -258,10 +297,7 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 	 */
 	@SuppressWarnings("unchecked")
 	private void updateEditorPicks(HttpServletRequest request, HttpServletResponse response) throws IOException {
-		byte[] serializedRequestContent = getSerializedRequestContent(request);
-
-		Set<BookEditorPick> mapEditorPicksValues = (Set<BookEditorPick>) serializer.get()
-				.deserialize(serializedRequestContent);
+		Set<BookEditorPick> mapEditorPicksValues = (Set<BookEditorPick>) readRequestContent(request);
 		BookStoreResponse bookStoreResponse = new BookStoreResponse();
 
 		try {
@@ -270,24 +306,34 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 			bookStoreResponse.setException(ex);
 		}
 
-		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
-		response.getOutputStream().write(serializedResponseContent);
+		writeResponseContent(request, response, bookStoreResponse);
 	}
 
 	/**
-	 * Lists the books.
+	 * Lists the books. The version of the store is sent as the entity tag, so
+	 * a client holding the current books is answered without content.
 	 *
+	 * @param request
+	 *            the request
 	 * @param response
 	 *            the response
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	private void listBooks(HttpServletResponse response) throws IOException {
+	private void listBooks(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		// The version is read first, so the books are never older than the tag
+		String entityTag = "W/\"" + myBookStore.getVersion() + "\"";
+		response.setHeader(HttpHeader.ETAG.asString(), entityTag);
+
+		if (matchesEntityTag(request.getHeader(HttpHeader.IF_NONE_MATCH.asString()), entityTag)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
 		BookStoreResponse bookStoreResponse = new BookStoreResponse();
 		bookStoreResponse.setList(myBookStore.getBooks());
 
-		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
-		response.getOutputStream().write(serializedResponseContent);
+		writeResponseContent(request, response, bookStoreResponse);
 	}
 
 	/**
@@ -302,9 +348,7 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 	 */
 	@SuppressWarnings("unchecked")
 	private void addCopies(HttpServletRequest request, HttpServletResponse response) throws IOException {
-		byte[] serializedRequestContent = getSerializedRequestContent(request);
-
-		Set<BookCopy> listBookCopies = (Set<BookCopy>) serializer.get().deserialize(serializedRequestContent);
+		Set<BookCopy> listBookCopies = (Set<BookCopy>) readRequestContent(request);
 		BookStoreResponse bookStoreResponse = new BookStoreResponse();
 
 		try {
@@ -313,8 +357,7 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 			bookStoreResponse.setException(ex);
 		}
 
-		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
-		response.getOutputStream().write(serializedResponseContent);
+		writeResponseContent(request, response, bookStoreResponse);
 	}
 
 	/**
@@ -329,9 +372,7 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 	 */
 	@SuppressWarnings("unchecked")
 	private void addBooks(HttpServletRequest request, HttpServletResponse response) throws IOException {
-		byte[] serializedRequestContent = getSerializedRequestContent(request);
-
-		Set<StockBook> newBooks = (Set<StockBook>) serializer.get().deserialize(serializedRequestContent);
+		Set<StockBook> newBooks = (Set<StockBook>) readRequestContent(request);
 		BookStoreResponse bookStoreResponse = new BookStoreResponse();
 
 		try {
@@ -340,19 +381,20 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 			bookStoreResponse.setException(ex);
 		}
 
-		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
-		response.getOutputStream().write(serializedResponseContent);
+		writeResponseContent(request, response, bookStoreResponse);
 	}
 
 	/**
 	 * Removes all books.
 	 *
+	 * @param request
+	 *            the request
 	 * @param response
 	 *            the response
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	private void removeAllBooks(HttpServletResponse response) throws IOException {
+	private void removeAllBooks(HttpServletRequest request, HttpServletResponse response) throws IOException {
 		BookStoreResponse bookStoreResponse = new BookStoreResponse();
 
 		try {
@@ -361,8 +403,7 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 			bookStoreResponse.setException(ex);
 		}
 
-		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
-		response.getOutputStream().write(serializedResponseContent);
+		writeResponseContent(request, response, bookStoreResponse);
 	}
 
 	/**
@@ -377,9 +418,7 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 	 */
 	@SuppressWarnings("unchecked")
 	private void removeBooks(HttpServletRequest request, HttpServletResponse response) throws IOException {
-		byte[] serializedRequestContent = getSerializedRequestContent(request);
-
-		Set<Integer> bookSet = (Set<Integer>) serializer.get().deserialize(serializedRequestContent);
+		Set<Integer> bookSet = (Set<Integer>) readRequestContent(request);
 		BookStoreResponse bookStoreResponse = new BookStoreResponse();
 
 		try {
@@ -388,21 +427,166 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 			bookStoreResponse.setException(ex);
 		}
 
-		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
-		response.getOutputStream().write(serializedResponseContent);
+		writeResponseContent(request, response, bookStoreResponse);
+	}
+
+	/**
+	 * Runs a batch of operations in order, and answers with the response of
+	 * every operation, in the same order. The operations are independent: one
+	 * failing does not stop the next ones.
+	 *
+	 * @param request
+	 *            the request
+	 * @param response
+	 *            the response
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@SuppressWarnings("unchecked")
+	private void batch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		List<BookStoreBatchCall> calls = (List<BookStoreBatchCall>) readRequestContent(request);
+		BookStoreResponse bookStoreResponse = new BookStoreResponse();
+
+		if (calls == null) {
+			bookStoreResponse.setException(new BookStoreException(BookStoreConstants.NULL_INPUT));
+		} else {
+			List<BookStoreResponse> callResponses = new ArrayList<>(calls.size());
+
+			for (BookStoreBatchCall call : calls) {
+				BookStoreResponse callResponse = new BookStoreResponse();
+
+				try {
+					callResponse.setList(runBatchCall(call));
+				} catch (BookStoreException ex) {
+					callResponse.setException(ex);
+				}
+
+				callResponses.add(callResponse);
+			}
+
+			bookStoreResponse.setList(callResponses);
+		}
+
+		writeResponseContent(request, response, bookStoreResponse);
+	}
+
+	/**
+	 * Runs one operation of a batch.
+	 *
+	 * @param call
+	 *            the operation
+	 * @return the list returned by the operation, or null
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@SuppressWarnings("unchecked")
+	private List<?> runBatchCall(BookStoreBatchCall call) throws BookStoreException {
+		if (call == null || call.getTag() == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		try {
+			switch (call.getTag()) {
+			case GETBOOKS:
+				return myBookStore.getBooks((Set<Integer>) call.getInputValue());
+
+			case BUYBOOKS:
+				myBookStore.buyBooks((Set<BookCopy>) call.getInputValue());
+				return null;
+
+			case GETEDITORPICKS:
+				if (call.getInputValue() == null) {
+					throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+				}
+
+				return myBookStore.getEditorPicks((Integer) call.getInputValue());
+
+			default:
+				throw new BookStoreException(call.getTag() + BookStoreConstants.NOT_BATCHABLE);
+			}
+		} catch (ClassCastException ex) {
+			throw new BookStoreException(ex);
+		}
+	}
+
+	/**
+	 * Checks if an If-None-Match header value matches the entity tag. Entity
+	 * tags are compared weakly, since the content is the same in every format.
+	 *
+	 * @param ifNoneMatch
+	 *            the header value, possibly null
+	 * @param entityTag
+	 *            the entity tag
+	 * @return true, if the header value matches the entity tag
+	 */
+	private static boolean matchesEntityTag(String ifNoneMatch, String entityTag) {
+		if (BookStoreUtility.isEmpty(ifNoneMatch)) {
+			return false;
+		}
+
+		String opaqueTag = entityTag.startsWith("W/") ? entityTag.substring(2) : entityTag;
+
+		for (String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+
+			if (candidate.equals("*") || (candidate.startsWith("W/") ? candidate.substring(2) : candidate)
+					.equals(opaqueTag)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Reads the request content, in the format of its Content-Type header.
+	 *
+	 * @param request
+	 *            the request
+	 * @return the request content
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private Object readRequestContent(HttpServletRequest request) throws IOException {
+		BookStoreSerializationFormat format = BookStoreSerializationFormat.forMediaTypes(request.getContentType());
+		return getSerializer(format).deserialize(request.getInputStream());
+	}
+
+	/**
+	 * Writes the response content, in the first supported format of the Accept
+	 * header, else in the format of the request content.
+	 *
+	 * @param request
+	 *            the request
+	 * @param response
+	 *            the response
+	 * @param bookStoreResponse
+	 *            the book store response
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void writeResponseContent(HttpServletRequest request, HttpServletResponse response,
+			BookStoreResponse bookStoreResponse) throws IOException {
+		BookStoreSerializationFormat format = BookStoreSerializationFormat
+				.forMediaTypes(request.getHeader(HttpHeader.ACCEPT.asString()));
+
+		if (format == null) {
+			format = BookStoreSerializationFormat.forMediaTypes(request.getContentType());
+		}
+
+		BookStoreSerializer serializer = getSerializer(format);
+		response.setContentType(serializer.getContentType());
+		serializer.serialize(bookStoreResponse, response.getOutputStream());
 	}
 
 	/**
-	 * Gets the serialized request content.
+	 * Gets the serializer of the format for the current thread.
 	 *
-	 * @param request the request
-	 * @return the serialized request content
-	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @param format
+	 *            the format, or null for the default format
+	 * @return the serializer
 	 */
-	private byte[] getSerializedRequestContent(HttpServletRequest request) throws IOException {
-		Input in = new Input(request.getInputStream());
-		byte[] serializedRequestContent = in.readBytes(request.getContentLength());
-		in.close();
-		return serializedRequestContent;
+	private BookStoreSerializer getSerializer(BookStoreSerializationFormat format) {
+		return serializers.get(format == null ? BookStoreConstants.SERIALIZATION : format).get();
 	}
 }
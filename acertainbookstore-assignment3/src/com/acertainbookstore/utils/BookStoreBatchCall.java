@@ -0,0 +1,45 @@
+package com.acertainbookstore.utils;
+
+/**
+ * {@link BookStoreBatchCall} is one operation of a batch sent to the server in
+ * a single HTTP request: the message tag of the operation and its input value.
+ */
+public final class BookStoreBatchCall {
+
+	/** The message tag. */
+	private final BookStoreMessageTag tag;
+
+	/** The input value. */
+	private final Object inputValue;
+
+	/**
+	 * Instantiates a new {@link BookStoreBatchCall}.
+	 *
+	 * @param tag
+	 *            the message tag
+	 * @param inputValue
+	 *            the input value
+	 */
+	public BookStoreBatchCall(BookStoreMessageTag tag, Object inputValue) {
+		this.tag = tag;
+		this.inputValue = inputValue;
+	}
+
+	/**
+	 * Gets the message tag.
+	 *
+	 * @return the message tag
+	 */
+	public BookStoreMessageTag getTag() {
+		return tag;
+	}
+
+	/**
+	 * Gets the input value.
+	 *
+	 * @return the input value
+	 */
+	public Object getInputValue() {
+		return inputValue;
+	}
+}
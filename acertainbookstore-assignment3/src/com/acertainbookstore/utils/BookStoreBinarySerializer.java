@@ -0,0 +1,899 @@
+package com.acertainbookstore.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import com.acertainbookstore.business.Book;
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.BookEditorPick;
+import com.acertainbookstore.business.BookRating;
+import com.acertainbookstore.business.BookVersion;
+import com.acertainbookstore.business.ImmutableBook;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.interfaces.BookStoreSerializer;
+
+/**
+ * {@link BookStoreBinarySerializer} serializes the bookstore messages using
+ * hand-written binary layouts. Every message starts with the format version
+ * and a type tag, followed by the fields of the value in a fixed order: no
+ * class names are written and no reflection is used. Integers are written as
+ * zig-zag varints, so small ISBNs and counts take one or two bytes.
+ *
+ * The supported values are the sets of ISBNs, {@link BookCopy},
+ * {@link BookRating}, {@link BookEditorPick}, {@link BookVersion} and
+ * {@link StockBook}, strings, integers, the lists of
+ * {@link BookStoreBatchCall}, and the {@link BookStoreResponse}, whose list
+ * holds {@link Book}, {@link StockBook} or {@link BookStoreResponse} elements.
+ * Sets cannot hold null elements, and only the message of a
+ * {@link BookStoreException} is kept.
+ *
+ * @see BookStoreSerializer
+ */
+public final class BookStoreBinarySerializer implements BookStoreSerializer {
+
+	/** The version of the layouts. */
+	private static final int FORMAT_VERSION = 2;
+
+	/** The size of the buffer. */
+	private static final int BUFFER_SIZE = 4096;
+
+	// The type tags of the messages
+
+	/** The tag of null. */
+	private static final int TAG_NULL = 0;
+
+	/** The tag of a string. */
+	private static final int TAG_STRING = 1;
+
+	/** The tag of a set of ISBNs, and of the empty set. */
+	private static final int TAG_ISBN_SET = 2;
+
+	/** The tag of a set of book copies. */
+	private static final int TAG_BOOK_COPY_SET = 3;
+
+	/** The tag of a set of book ratings. */
+	private static final int TAG_BOOK_RATING_SET = 4;
+
+	/** The tag of a set of editor picks. */
+	private static final int TAG_BOOK_EDITOR_PICK_SET = 5;
+
+	/** The tag of a set of stock books. */
+	private static final int TAG_STOCK_BOOK_SET = 6;
+
+	/** The tag of a response. */
+	private static final int TAG_RESPONSE = 7;
+
+	/** The tag of an integer. */
+	private static final int TAG_INTEGER = 8;
+
+	/** The tag of a batch of operations. */
+	private static final int TAG_BATCH = 9;
+
+	/** The tag of a set of book versions. */
+	private static final int TAG_BOOK_VERSION_SET = 10;
+
+	// The type tags of the elements of a response list
+
+	/** The tag of a book. */
+	private static final int TAG_BOOK = 1;
+
+	/** The tag of a stock book. */
+	private static final int TAG_STOCK_BOOK = 2;
+
+	/** The tag of a nested response, one per operation of a batch. */
+	private static final int TAG_NESTED_RESPONSE = 3;
+
+	/** The buffer, reused across messages since the serializer is per thread. */
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.interfaces.BookStoreSerializer#getContentType()
+	 */
+	@Override
+	public String getContentType() {
+		return BookStoreSerializationFormat.BINARY.getContentType();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#serialize(java.lang.
+	 * Object)
+	 */
+	@Override
+	public byte[] serialize(Object object) throws IOException {
+		ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+		serialize(object, outStream);
+		return outStream.toByteArray();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#deserialize(byte[])
+	 */
+	@Override
+	public Object deserialize(byte[] bytes) throws IOException {
+		return deserialize(new ByteArrayInputStream(bytes));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#serialize(java.lang.
+	 * Object, java.io.OutputStream)
+	 */
+	@Override
+	public void serialize(Object object, OutputStream outputStream) throws IOException {
+		Encoder out = new Encoder(buffer, outputStream);
+		out.writeByte(FORMAT_VERSION);
+		writeValue(out, object);
+		out.flush();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#deserialize(java.io.
+	 * InputStream)
+	 */
+	@Override
+	public Object deserialize(InputStream inputStream) throws IOException {
+		Decoder in = new Decoder(buffer, inputStream);
+		int version = in.readByte();
+
+		if (version != FORMAT_VERSION) {
+			throw new IOException("Unsupported format version: " + version);
+		}
+
+		return readValue(in);
+	}
+
+	/**
+	 * Writes a value, preceded by its type tag.
+	 *
+	 * @param out
+	 *            the encoder
+	 * @param object
+	 *            the value
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static void writeValue(Encoder out, Object object) throws IOException {
+		if (object == null) {
+			out.writeByte(TAG_NULL);
+		} else if (object instanceof String) {
+			out.writeByte(TAG_STRING);
+			out.writeString((String) object);
+		} else if (object instanceof Integer) {
+			out.writeByte(TAG_INTEGER);
+			out.writeVarInt((Integer) object);
+		} else if (object instanceof Set) {
+			writeSet(out, (Set<?>) object);
+		} else if (object instanceof List) {
+			out.writeByte(TAG_BATCH);
+			writeBatch(out, (List<?>) object);
+		} else if (object instanceof BookStoreResponse) {
+			out.writeByte(TAG_RESPONSE);
+			writeResponse(out, (BookStoreResponse) object);
+		} else {
+			throw unsupported(object);
+		}
+	}
+
+	/**
+	 * Reads a value, preceded by its type tag.
+	 *
+	 * @param in
+	 *            the decoder
+	 * @return the value
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static Object readValue(Decoder in) throws IOException {
+		int tag = in.readByte();
+
+		switch (tag) {
+		case TAG_NULL:
+			return null;
+
+		case TAG_STRING:
+			return in.readString();
+
+		case TAG_INTEGER:
+			return in.readVarInt();
+
+		case TAG_BATCH:
+			return readBatch(in);
+
+		case TAG_RESPONSE:
+			return readResponse(in);
+
+		default:
+			return readSet(in, tag);
+		}
+	}
+
+	/**
+	 * Writes a batch: the message tag name and the input value of every
+	 * operation.
+	 *
+	 * @param out
+	 *            the encoder
+	 * @param calls
+	 *            the operations
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static void writeBatch(Encoder out, List<?> calls) throws IOException {
+		out.writeVarInt(calls.size());
+
+		for (Object element : calls) {
+			BookStoreBatchCall call = (BookStoreBatchCall) checkElement(element, BookStoreBatchCall.class);
+
+			// The tag goes by name, so reordering the tags keeps the layout
+			out.writeString(call.getTag() == null ? null : call.getTag().name());
+			writeValue(out, call.getInputValue());
+		}
+	}
+
+	/**
+	 * Reads a batch.
+	 *
+	 * @param in
+	 *            the decoder
+	 * @return the operations
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static List<BookStoreBatchCall> readBatch(Decoder in) throws IOException {
+		int size = in.readSize();
+		List<BookStoreBatchCall> calls = new ArrayList<>(Math.min(size, BUFFER_SIZE));
+
+		for (int i = 0; i < size; i++) {
+			String tagName = in.readString();
+			BookStoreMessageTag tag;
+
+			try {
+				tag = tagName == null ? null : BookStoreMessageTag.valueOf(tagName);
+			} catch (IllegalArgumentException ex) {
+				throw new IOException("Unknown message tag: " + tagName, ex);
+			}
+
+			calls.add(new BookStoreBatchCall(tag, readValue(in)));
+		}
+
+		return calls;
+	}
+
+	/**
+	 * Writes a set, tagged by the type of its elements.
+	 *
+	 * @param out
+	 *            the encoder
+	 * @param set
+	 *            the set
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static void writeSet(Encoder out, Set<?> set) throws IOException {
+		Iterator<?> iterator = set.iterator();
+		Object first = iterator.hasNext() ? iterator.next() : null;
+		int tag;
+
+		if (first == null) {
+			if (!set.isEmpty()) {
+				throw new IOException("Null set element");
+			}
+
+			tag = TAG_ISBN_SET;
+		} else if (first instanceof Integer) {
+			tag = TAG_ISBN_SET;
+		} else if (first instanceof BookCopy) {
+			tag = TAG_BOOK_COPY_SET;
+		} else if (first instanceof BookRating) {
+			tag = TAG_BOOK_RATING_SET;
+		} else if (first instanceof BookEditorPick) {
+			tag = TAG_BOOK_EDITOR_PICK_SET;
+		} else if (first instanceof StockBook) {
+			tag = TAG_STOCK_BOOK_SET;
+		} else if (first instanceof BookVersion) {
+			tag = TAG_BOOK_VERSION_SET;
+		} else {
+			throw unsupported(first);
+		}
+
+		out.writeByte(tag);
+		out.writeVarInt(set.size());
+
+		for (Object element : set) {
+			switch (tag) {
+			case TAG_ISBN_SET:
+				out.writeVarInt(((Integer) checkElement(element, Integer.class)).intValue());
+				break;
+
+			case TAG_BOOK_COPY_SET:
+				BookCopy bookCopy = (BookCopy) checkElement(element, BookCopy.class);
+				out.writeVarInt(bookCopy.getISBN());
+				out.writeVarInt(bookCopy.getNumCopies());
+				break;
+
+			case TAG_BOOK_RATING_SET:
+				BookRating bookRating = (BookRating) checkElement(element, BookRating.class);
+				out.writeVarInt(bookRating.getISBN());
+				out.writeVarInt(bookRating.getRating());
+				break;
+
+			case TAG_BOOK_EDITOR_PICK_SET:
+				BookEditorPick editorPick = (BookEditorPick) checkElement(element, BookEditorPick.class);
+				out.writeVarInt(editorPick.getISBN());
+				out.writeBoolean(editorPick.isEditorPick());
+				break;
+
+			case TAG_BOOK_VERSION_SET:
+				BookVersion bookVersion = (BookVersion) checkElement(element, BookVersion.class);
+				out.writeVarInt(bookVersion.getISBN());
+				out.writeVarLong(bookVersion.getVersion());
+				break;
+
+			default:
+				writeStockBook(out, (StockBook) checkElement(element, StockBook.class));
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Reads a set with the given tag.
+	 *
+	 * @param in
+	 *            the decoder
+	 * @param tag
+	 *            the tag of the set
+	 * @return the set
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static Set<?> readSet(Decoder in, int tag) throws IOException {
+		int size = in.readSize();
+
+		switch (tag) {
+		case TAG_ISBN_SET:
+			Set<Integer> isbns = new HashSet<>(capacity(size));
+
+			for (int i = 0; i < size; i++) {
+				isbns.add(in.readVarInt());
+			}
+
+			return isbns;
+
+		case TAG_BOOK_COPY_SET:
+			Set<BookCopy> bookCopies = new HashSet<>(capacity(size));
+
+			for (int i = 0; i < size; i++) {
+				bookCopies.add(new BookCopy(in.readVarInt(), in.readVarInt()));
+			}
+
+			return bookCopies;
+
+		case TAG_BOOK_RATING_SET:
+			Set<BookRating> bookRatings = new HashSet<>(capacity(size));
+
+			for (int i = 0; i < size; i++) {
+				bookRatings.add(new BookRating(in.readVarInt(), in.readVarInt()));
+			}
+
+			return bookRatings;
+
+		case TAG_BOOK_EDITOR_PICK_SET:
+			Set<BookEditorPick> editorPicks = new HashSet<>(capacity(size));
+
+			for (int i = 0; i < size; i++) {
+				editorPicks.add(new BookEditorPick(in.readVarInt(), in.readBoolean()));
+			}
+
+			return editorPicks;
+
+		case TAG_STOCK_BOOK_SET:
+			Set<StockBook> stockBooks = new HashSet<>(capacity(size));
+
+			for (int i = 0; i < size; i++) {
+				stockBooks.add(readStockBook(in));
+			}
+
+			return stockBooks;
+
+		case TAG_BOOK_VERSION_SET:
+			Set<BookVersion> bookVersions = new HashSet<>(capacity(size));
+
+			for (int i = 0; i < size; i++) {
+				bookVersions.add(new BookVersion(in.readVarInt(), in.readVarLong()));
+			}
+
+			return bookVersions;
+
+		default:
+			throw new IOException("Unknown type tag: " + tag);
+		}
+	}
+
+	/**
+	 * Writes a response: the exception message, if any, the list and the
+	 * versions.
+	 *
+	 * @param out
+	 *            the encoder
+	 * @param response
+	 *            the response
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static void writeResponse(Encoder out, BookStoreResponse response) throws IOException {
+		BookStoreException exception = response.getException();
+		out.writeBoolean(exception != null);
+
+		if (exception != null) {
+			out.writeString(exception.getMessage());
+		}
+
+		long[] versions = response.getVersions();
+
+		// The lengths are shifted by one so that zero stands for null
+		out.writeVarInt(versions == null ? 0 : versions.length + 1);
+
+		if (versions != null) {
+			for (long version : versions) {
+				out.writeVarLong(version);
+			}
+		}
+
+		List<?> list = response.getList();
+		out.writeVarInt(list == null ? 0 : list.size() + 1);
+
+		if (list == null) {
+			return;
+		}
+
+		for (Object element : list) {
+			if (element instanceof BookStoreResponse) {
+				out.writeByte(TAG_NESTED_RESPONSE);
+				writeResponse(out, (BookStoreResponse) element);
+			} else if (element instanceof StockBook) {
+				out.writeByte(TAG_STOCK_BOOK);
+				writeStockBook(out, (StockBook) element);
+			} else if (element instanceof Book) {
+				out.writeByte(TAG_BOOK);
+				writeBook(out, (Book) element);
+			} else {
+				throw unsupported(element);
+			}
+		}
+	}
+
+	/**
+	 * Reads a response.
+	 *
+	 * @param in
+	 *            the decoder
+	 * @return the response
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static BookStoreResponse readResponse(Decoder in) throws IOException {
+		BookStoreResponse response = new BookStoreResponse();
+
+		if (in.readBoolean()) {
+			response.setException(new BookStoreException(in.readString()));
+		}
+
+		int numVersions = in.readSize() - 1;
+
+		if (numVersions >= 0) {
+			long[] versions = new long[Math.min(numVersions, BUFFER_SIZE)];
+
+			for (int i = 0; i < numVersions; i++) {
+				if (i == versions.length) {
+					versions = Arrays.copyOf(versions, Math.min(numVersions, versions.length * 2));
+				}
+
+				versions[i] = in.readVarLong();
+			}
+
+			response.setVersions(versions);
+		}
+
+		int size = in.readSize() - 1;
+
+		if (size < 0) {
+			return response;
+		}
+
+		List<Object> list = new ArrayList<>(Math.min(size, BUFFER_SIZE));
+
+		for (int i = 0; i < size; i++) {
+			int tag = in.readByte();
+
+			switch (tag) {
+			case TAG_BOOK:
+				list.add(new ImmutableBook(in.readVarInt(), in.readString(), in.readString(), in.readFloat()));
+				break;
+
+			case TAG_STOCK_BOOK:
+				list.add(readStockBook(in));
+				break;
+
+			case TAG_NESTED_RESPONSE:
+				list.add(readResponse(in));
+				break;
+
+			default:
+				throw new IOException("Unknown type tag: " + tag);
+			}
+		}
+
+		response.setList(list);
+		return response;
+	}
+
+	/**
+	 * Writes the fields of a book.
+	 *
+	 * @param out
+	 *            the encoder
+	 * @param book
+	 *            the book
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static void writeBook(Encoder out, Book book) throws IOException {
+		out.writeVarInt(book.getISBN());
+		out.writeString(book.getTitle());
+		out.writeString(book.getAuthor());
+		out.writeFloat(book.getPrice());
+	}
+
+	/**
+	 * Writes the fields of a stock book, the book fields first.
+	 *
+	 * @param out
+	 *            the encoder
+	 * @param book
+	 *            the stock book
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static void writeStockBook(Encoder out, StockBook book) throws IOException {
+		writeBook(out, book);
+		out.writeVarInt(book.getNumCopies());
+		out.writeVarLong(book.getNumSaleMisses());
+		out.writeVarLong(book.getNumTimesRated());
+		out.writeVarLong(book.getTotalRating());
+		out.writeBoolean(book.isEditorPick());
+	}
+
+	/**
+	 * Reads a stock book.
+	 *
+	 * @param in
+	 *            the decoder
+	 * @return the stock book
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static ImmutableStockBook readStockBook(Decoder in) throws IOException {
+		int isbn = in.readVarInt();
+		String title = in.readString();
+		String author = in.readString();
+		float price = in.readFloat();
+		int numCopies = in.readVarInt();
+		long numSaleMisses = in.readVarLong();
+		long numTimesRated = in.readVarLong();
+		long totalRating = in.readVarLong();
+		boolean editorPick = in.readBoolean();
+		return new ImmutableStockBook(isbn, title, author, price, numCopies, numSaleMisses, numTimesRated,
+				totalRating, editorPick);
+	}
+
+	/**
+	 * Checks that a set element has the type of the set.
+	 *
+	 * @param element
+	 *            the element
+	 * @param type
+	 *            the type of the set
+	 * @return the element
+	 * @throws IOException
+	 *             if the element does not have the type of the set
+	 */
+	private static Object checkElement(Object element, Class<?> type) throws IOException {
+		if (!type.isInstance(element)) {
+			throw element == null ? new IOException("Null set element") : unsupported(element);
+		}
+
+		return element;
+	}
+
+	/**
+	 * Gets the initial capacity of a hash set for the given size, bounded so
+	 * that a corrupt size does not allocate a huge table.
+	 *
+	 * @param size
+	 *            the size
+	 * @return the capacity
+	 */
+	private static int capacity(int size) {
+		return Math.min(size, BUFFER_SIZE) * 4 / 3 + 1;
+	}
+
+	/**
+	 * Creates the exception for a value without a layout.
+	 *
+	 * @param object
+	 *            the value
+	 * @return the exception
+	 */
+	private static IOException unsupported(Object object) {
+		return new IOException("Unsupported type: " + object.getClass().getName());
+	}
+
+	/**
+	 * {@link Encoder} writes the primitive fields into the buffer, and the
+	 * buffer into the output stream whenever it is full.
+	 */
+	private static final class Encoder {
+
+		/** The buffer. */
+		private final byte[] buffer;
+
+		/** The output stream. */
+		private final OutputStream outputStream;
+
+		/** The position of the next byte in the buffer. */
+		private int position = 0;
+
+		private Encoder(byte[] buffer, OutputStream outputStream) {
+			this.buffer = buffer;
+			this.outputStream = outputStream;
+		}
+
+		private void writeByte(int value) throws IOException {
+			require(1);
+			buffer[position++] = (byte) value;
+		}
+
+		private void writeBoolean(boolean value) throws IOException {
+			writeByte(value ? 1 : 0);
+		}
+
+		private void writeVarInt(int value) throws IOException {
+			require(5);
+
+			// Zig-zag encoding keeps small negative values short too
+			int bits = (value << 1) ^ (value >> 31);
+
+			while ((bits & ~0x7F) != 0) {
+				buffer[position++] = (byte) ((bits & 0x7F) | 0x80);
+				bits >>>= 7;
+			}
+
+			buffer[position++] = (byte) bits;
+		}
+
+		private void writeVarLong(long value) throws IOException {
+			require(10);
+			long bits = (value << 1) ^ (value >> 63);
+
+			while ((bits & ~0x7FL) != 0) {
+				buffer[position++] = (byte) ((bits & 0x7F) | 0x80);
+				bits >>>= 7;
+			}
+
+			buffer[position++] = (byte) bits;
+		}
+
+		private void writeFloat(float value) throws IOException {
+			require(4);
+			int bits = Float.floatToIntBits(value);
+			buffer[position++] = (byte) (bits >>> 24);
+			buffer[position++] = (byte) (bits >>> 16);
+			buffer[position++] = (byte) (bits >>> 8);
+			buffer[position++] = (byte) bits;
+		}
+
+		private void writeString(String value) throws IOException {
+			if (value == null) {
+				writeVarInt(0);
+				return;
+			}
+
+			// The length is shifted by one so that zero stands for null
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(bytes.length + 1);
+
+			if (bytes.length > buffer.length - position) {
+				drain();
+			}
+
+			if (bytes.length > buffer.length) {
+				outputStream.write(bytes);
+			} else {
+				System.arraycopy(bytes, 0, buffer, position, bytes.length);
+				position += bytes.length;
+			}
+		}
+
+		private void require(int numBytes) throws IOException {
+			if (buffer.length - position < numBytes) {
+				drain();
+			}
+		}
+
+		private void drain() throws IOException {
+			outputStream.write(buffer, 0, position);
+			position = 0;
+		}
+
+		private void flush() throws IOException {
+			drain();
+			outputStream.flush();
+		}
+	}
+
+	/**
+	 * {@link Decoder} reads the primitive fields from the buffer, and refills
+	 * the buffer from the input stream whenever it is empty. Varints are read
+	 * straight from the buffer when it holds enough bytes.
+	 */
+	private static final class Decoder {
+
+		/** The buffer. */
+		private final byte[] buffer;
+
+		/** The input stream. */
+		private final InputStream inputStream;
+
+		/** The position of the next byte in the buffer. */
+		private int position = 0;
+
+		/** The number of bytes in the buffer. */
+		private int limit = 0;
+
+		private Decoder(byte[] buffer, InputStream inputStream) {
+			this.buffer = buffer;
+			this.inputStream = inputStream;
+		}
+
+		private int readByte() throws IOException {
+			if (position == limit) {
+				fill();
+			}
+
+			return buffer[position++] & 0xFF;
+		}
+
+		private boolean readBoolean() throws IOException {
+			return readByte() != 0;
+		}
+
+		private int readVarInt() throws IOException {
+			int bits = 0;
+
+			if (limit - position >= 5) {
+				for (int shift = 0; shift < 35; shift += 7) {
+					byte b = buffer[position++];
+					bits |= (b & 0x7F) << shift;
+
+					if (b >= 0) {
+						return (bits >>> 1) ^ -(bits & 1);
+					}
+				}
+			} else {
+				for (int shift = 0; shift < 35; shift += 7) {
+					int b = readByte();
+					bits |= (b & 0x7F) << shift;
+
+					if ((b & 0x80) == 0) {
+						return (bits >>> 1) ^ -(bits & 1);
+					}
+				}
+			}
+
+			throw new IOException("Malformed varint");
+		}
+
+		private long readVarLong() throws IOException {
+			long bits = 0;
+
+			for (int shift = 0; shift < 70; shift += 7) {
+				int b = readByte();
+				bits |= (long) (b & 0x7F) << shift;
+
+				if ((b & 0x80) == 0) {
+					return (bits >>> 1) ^ -(bits & 1);
+				}
+			}
+
+			throw new IOException("Malformed varint");
+		}
+
+		private int readSize() throws IOException {
+			int size = readVarInt();
+
+			if (size < 0) {
+				throw new IOException("Negative size: " + size);
+			}
+
+			return size;
+		}
+
+		private float readFloat() throws IOException {
+			int bits = readByte() << 24;
+			bits |= readByte() << 16;
+			bits |= readByte() << 8;
+			bits |= readByte();
+			return Float.intBitsToFloat(bits);
+		}
+
+		private String readString() throws IOException {
+			int length = readSize() - 1;
+
+			if (length < 0) {
+				return null;
+			}
+
+			if (limit - position >= length) {
+				String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+				position += length;
+				return value;
+			}
+
+			// The length comes from the sender, so the bytes are only stored as
+			// they arrive: a corrupt length ends in an EOFException, not in a
+			// huge allocation
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(buffer.length * 2);
+			int remaining = length;
+
+			while (remaining > 0) {
+				if (position == limit) {
+					fill();
+				}
+
+				int count = Math.min(remaining, limit - position);
+				bytes.write(buffer, position, count);
+				position += count;
+				remaining -= count;
+			}
+
+			return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+		}
+
+		private void fill() throws IOException {
+			int count = inputStream.read(buffer, 0, buffer.length);
+
+			if (count <= 0) {
+				throw new EOFException();
+			}
+
+			position = 0;
+			limit = count;
+		}
+	}
+}
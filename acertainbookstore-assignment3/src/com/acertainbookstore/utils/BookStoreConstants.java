@@ -7,9 +7,10 @@ package com.acertainbookstore.utils;
 public final class BookStoreConstants {
 
 	/**
-	 * The Constant BINARY_SERIALIZATION decides whether we use Kryo or XStream.
+	 * The Constant SERIALIZATION decides whether we use XStream, Kryo or the
+	 * hand-written binary layouts.
 	 */
-	public static final boolean BINARY_SERIALIZATION = false;
+	public static final BookStoreSerializationFormat SERIALIZATION = BookStoreSerializationFormat.XSTREAM;
 
 	// Constants used when creating URLs
 
@@ -39,6 +40,9 @@ public final class BookStoreConstants {
 	/** The Constant NOT_AVAILABLE when the book is not in the store. */
 	public static final String NOT_AVAILABLE = " is not available";
 
+	/** The Constant NOT_BATCHABLE when the operation cannot be batched. */
+	public static final String NOT_BATCHABLE = " cannot be batched";
+
 	/** The Constant BOOK. */
 	public static final String BOOK = "The Book: ";
 
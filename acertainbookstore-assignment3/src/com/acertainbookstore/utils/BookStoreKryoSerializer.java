@@ -1,10 +1,19 @@
 package com.acertainbookstore.utils;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.BookEditorPick;
+import com.acertainbookstore.business.BookRating;
+import com.acertainbookstore.business.BookVersion;
+import com.acertainbookstore.business.ImmutableBook;
 import com.acertainbookstore.business.ImmutableStockBook;
 import com.acertainbookstore.interfaces.BookStoreSerializer;
 import com.esotericsoftware.kryo.Kryo;
@@ -15,48 +24,187 @@ import org.objenesis.strategy.StdInstantiatorStrategy;
 /**
  * {@link BookStoreKryoSerializer} serializes objects to arrays of bytes
  * representing strings using the Kryo library.
- * 
+ *
+ * Kryo instances are expensive to create, so they are kept, together with
+ * their input and output buffers, in a bounded pool shared by all the
+ * serializers: a serializer borrows an instance for each call and returns it
+ * afterwards. All the message types are registered with fixed ids, so no class
+ * names are written.
+ *
  * @see BookStoreSerializer
  */
 public final class BookStoreKryoSerializer implements BookStoreSerializer {
 
-	/** The binary stream. */
-	private final Kryo binaryStream;
+	/** The maximum number of idle Kryo instances kept in the pool. */
+	private static final int POOL_SIZE = 64;
+
+	/** The initial size of the buffers. */
+	private static final int BUFFER_SIZE = 4096;
+
+	/** The largest output buffer kept in the pool. */
+	private static final int MAX_POOLED_BUFFER_SIZE = 1 << 20;
+
+	/** The first registration id, above the ids Kryo registers by default. */
+	private static final int FIRST_REGISTRATION_ID = 20;
+
+	/** The empty buffer, set on the array input while it is idle. */
+	private static final byte[] EMPTY_BUFFER = new byte[0];
+
+	/** The idle Kryo instances. */
+	private static final BlockingQueue<PooledKryo> POOL = new ArrayBlockingQueue<>(POOL_SIZE);
 
 	/**
-	 * Instantiates a new {@link BookStoreKryoSerializer}.
+	 * {@link PooledKryo} is a Kryo instance with its reusable buffers.
+	 */
+	private static final class PooledKryo {
+
+		/** The binary stream. */
+		private final Kryo binaryStream = newKryo();
+
+		/** The output, writing to a stream or growing its own buffer. */
+		private final Output output = new Output(BUFFER_SIZE, -1);
+
+		/** The input reading from a stream. */
+		private final Input streamInput = new Input(BUFFER_SIZE);
+
+		/** The input reading from an array. */
+		private final Input arrayInput = new Input(EMPTY_BUFFER);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.interfaces.BookStoreSerializer#getContentType()
 	 */
-	public BookStoreKryoSerializer() {
-		binaryStream = new Kryo();
-		binaryStream.setInstantiatorStrategy(new Kryo.DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
-		binaryStream.register(ImmutableStockBook.class);
+	@Override
+	public String getContentType() {
+		return BookStoreSerializationFormat.KRYO.getContentType();
 	}
 
 	/*
 	 * (non-Javadoc)
-	 * 
+	 *
 	 * @see
 	 * com.acertainbookstore.interfaces.BookStoreSerializer#serialize(java.lang.
 	 * Object)
 	 */
 	@Override
 	public byte[] serialize(Object object) throws IOException {
-		try (ByteArrayOutputStream outStream = new ByteArrayOutputStream(); Output out = new Output(outStream)) {
-			binaryStream.writeClassAndObject(out, object);
-			out.flush();
-			return outStream.toByteArray();
-		}
+		PooledKryo kryo = borrow();
+		kryo.output.setOutputStream(null);
+		kryo.binaryStream.writeClassAndObject(kryo.output, object);
+		byte[] bytes = kryo.output.toBytes();
+		release(kryo);
+		return bytes;
 	}
 
 	/*
 	 * (non-Javadoc)
-	 * 
+	 *
 	 * @see com.acertainbookstore.interfaces.BookStoreSerializer#deserialize(byte[])
 	 */
 	@Override
 	public Object deserialize(byte[] bytes) throws IOException {
-		try (InputStream inStream = new ByteArrayInputStream(bytes); Input in = new Input(inStream)) {
-			return binaryStream.readClassAndObject(in);
+		PooledKryo kryo = borrow();
+		kryo.arrayInput.setBuffer(bytes);
+		Object object = kryo.binaryStream.readClassAndObject(kryo.arrayInput);
+		release(kryo);
+		return object;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#serialize(java.lang.
+	 * Object, java.io.OutputStream)
+	 */
+	@Override
+	public void serialize(Object object, OutputStream outputStream) throws IOException {
+		// The output is only flushed: closing it would close the stream it wraps
+		PooledKryo kryo = borrow();
+		kryo.output.setOutputStream(outputStream);
+		kryo.binaryStream.writeClassAndObject(kryo.output, object);
+		kryo.output.flush();
+		release(kryo);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#deserialize(java.io.
+	 * InputStream)
+	 */
+	@Override
+	public Object deserialize(InputStream inputStream) throws IOException {
+		PooledKryo kryo = borrow();
+		kryo.streamInput.setInputStream(inputStream);
+		Object object = kryo.binaryStream.readClassAndObject(kryo.streamInput);
+		release(kryo);
+		return object;
+	}
+
+	/**
+	 * Creates a Kryo instance with all the message types registered.
+	 *
+	 * @return the Kryo instance
+	 */
+	private static Kryo newKryo() {
+		Kryo kryo = new Kryo();
+		kryo.setInstantiatorStrategy(new Kryo.DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+
+		// The ids are part of the format: only append new types at the end
+		int id = FIRST_REGISTRATION_ID;
+		kryo.register(ImmutableStockBook.class, id++);
+		kryo.register(ImmutableBook.class, id++);
+		kryo.register(BookCopy.class, id++);
+		kryo.register(BookRating.class, id++);
+		kryo.register(BookEditorPick.class, id++);
+		kryo.register(BookStoreResponse.class, id++);
+		kryo.register(BookStoreException.class, id++);
+		kryo.register(HashSet.class, id++);
+		kryo.register(ArrayList.class, id++);
+		kryo.register(StackTraceElement.class, id++);
+		kryo.register(StackTraceElement[].class, id++);
+		kryo.register(Collections.emptyList().getClass(), id++);
+		kryo.register(Collections.unmodifiableList(new ArrayList<>()).getClass(), id++);
+		kryo.register(BookStoreMessageTag.class, id++);
+		kryo.register(BookStoreBatchCall.class, id++);
+		kryo.register(BookVersion.class, id++);
+		kryo.register(long[].class, id++);
+		return kryo;
+	}
+
+	/**
+	 * Borrows a Kryo instance from the pool, or creates one if the pool is
+	 * empty.
+	 *
+	 * @return the Kryo instance
+	 */
+	private static PooledKryo borrow() {
+		PooledKryo kryo = POOL.poll();
+		return kryo != null ? kryo : new PooledKryo();
+	}
+
+	/**
+	 * Returns a Kryo instance to the pool, dropping it if the pool is full. An
+	 * instance whose call failed is never returned, since its state is
+	 * unknown.
+	 *
+	 * @param kryo
+	 *            the Kryo instance
+	 */
+	private static void release(PooledKryo kryo) {
+		// Drop the references to the streams and to the caller's bytes
+		kryo.output.setOutputStream(null);
+		kryo.streamInput.setInputStream(null);
+		kryo.arrayInput.setBuffer(EMPTY_BUFFER);
+
+		if (kryo.output.getBuffer().length > MAX_POOLED_BUFFER_SIZE) {
+			kryo.output.setBuffer(new byte[BUFFER_SIZE], -1);
 		}
+
+		POOL.offer(kryo);
 	}
 }
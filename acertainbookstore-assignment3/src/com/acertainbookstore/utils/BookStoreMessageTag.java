@@ -34,5 +34,14 @@ public enum BookStoreMessageTag {
 	REMOVEBOOKS,
 
 	/** The tag for the get stock books by ISBN message. */
-	GETSTOCKBOOKSBYISBN;
+	GETSTOCKBOOKSBYISBN,
+
+	/** The tag for the batch of operations message. */
+	BATCH,
+
+	/** The tag for the get modified books message. */
+	GETMODIFIEDBOOKS,
+
+	/** The tag for the get modified stock books message. */
+	GETMODIFIEDSTOCKBOOKS;
 }
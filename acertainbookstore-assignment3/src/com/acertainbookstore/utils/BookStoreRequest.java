@@ -17,6 +17,9 @@ public final class BookStoreRequest {
 	/** The input value. */
 	private final Object inputValue;
 
+	/** The entity tag of the content held, or null. */
+	private final String entityTag;
+
 	/**
 	 * Instantiates a new {@link BookStoreRequest}.
 	 *
@@ -26,11 +29,14 @@ public final class BookStoreRequest {
 	 *            the URL string
 	 * @param inputValue
 	 *            the input value
+	 * @param entityTag
+	 *            the entity tag of the content held, or null
 	 */
-	private BookStoreRequest(HttpMethod method, String urlString, Object inputValue) {
+	private BookStoreRequest(HttpMethod method, String urlString, Object inputValue, String entityTag) {
 		this.method = method;
 		this.urlString = urlString;
 		this.inputValue = inputValue;
+		this.entityTag = entityTag;
 	}
 
 	/**
@@ -60,6 +66,16 @@ public final class BookStoreRequest {
 		return inputValue;
 	}
 
+	/**
+	 * Gets the entity tag of the content held, sent in the If-None-Match
+	 * header.
+	 *
+	 * @return the entity tag, or null if the request is not conditional
+	 */
+	public String getEntityTag() {
+		return entityTag;
+	}
+
 	/**
 	 * Gets a new GET request.
 	 *
@@ -68,7 +84,21 @@ public final class BookStoreRequest {
 	 * @return the book store request
 	 */
 	public static BookStoreRequest newGetRequest(String urlString) {
-		return new BookStoreRequest(HttpMethod.GET, urlString, null);
+		return new BookStoreRequest(HttpMethod.GET, urlString, null, null);
+	}
+
+	/**
+	 * Gets a new conditional GET request, answered without content if the
+	 * content held is current.
+	 *
+	 * @param urlString
+	 *            the URL string
+	 * @param entityTag
+	 *            the entity tag of the content held, or null if none is held
+	 * @return the book store request
+	 */
+	public static BookStoreRequest newConditionalGetRequest(String urlString, String entityTag) {
+		return new BookStoreRequest(HttpMethod.GET, urlString, null, entityTag);
 	}
 
 	/**
@@ -81,6 +111,6 @@ public final class BookStoreRequest {
 	 * @return the book store request
 	 */
 	public static BookStoreRequest newPostRequest(String urlString, Object inputValue) {
-		return new BookStoreRequest(HttpMethod.POST, urlString, inputValue);
+		return new BookStoreRequest(HttpMethod.POST, urlString, inputValue, null);
 	}
 }
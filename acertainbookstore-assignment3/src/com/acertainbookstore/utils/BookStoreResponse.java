@@ -17,6 +17,15 @@ public class BookStoreResponse {
 	/** The list. */
 	private List<?> list;
 
+	/** The versions of the books of the list, in the same order, or null. */
+	private long[] versions;
+
+	/**
+	 * The entity tag of the content, taken from the ETag header; it is not
+	 * part of the message.
+	 */
+	private transient String entityTag;
+
 	/**
 	 * Instantiates a new {@link BookStoreResponse}.
 	 *
@@ -75,4 +84,42 @@ public class BookStoreResponse {
 	public void setException(BookStoreException exception) {
 		this.exception = exception;
 	}
+
+	/**
+	 * Gets the versions of the books of the list.
+	 *
+	 * @return the versions, or null if the response carries none
+	 */
+	public long[] getVersions() {
+		return versions;
+	}
+
+	/**
+	 * Sets the versions of the books of the list.
+	 *
+	 * @param versions
+	 *            the new versions, in the order of the list
+	 */
+	public void setVersions(long[] versions) {
+		this.versions = versions;
+	}
+
+	/**
+	 * Gets the entity tag of the content.
+	 *
+	 * @return the entity tag, or null if the server sent none
+	 */
+	public String getEntityTag() {
+		return entityTag;
+	}
+
+	/**
+	 * Sets the entity tag of the content.
+	 *
+	 * @param entityTag
+	 *            the new entity tag
+	 */
+	public void setEntityTag(String entityTag) {
+		this.entityTag = entityTag;
+	}
 }
@@ -0,0 +1,91 @@
+package com.acertainbookstore.utils;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+import com.acertainbookstore.interfaces.BookStoreSerializer;
+
+/**
+ * {@link BookStoreSerializationFormat} enumerates the formats in which the
+ * bookstore messages can be exchanged between the clients and the server.
+ * Every format has its own content type, so the server can answer each client
+ * in the format it asks for.
+ */
+public enum BookStoreSerializationFormat {
+
+	/** XML trees, using the XStream library. */
+	XSTREAM("application/xml", BookStoreXStreamSerializer::new),
+
+	/** Binary objects, using the Kryo library. */
+	KRYO("application/x-kryo", BookStoreKryoSerializer::new),
+
+	/** Hand-written binary layouts, without reflection. */
+	BINARY("application/x-bookstore-binary", BookStoreBinarySerializer::new);
+
+	/** The content type. */
+	private final String contentType;
+
+	/** The serializer factory. */
+	private final Supplier<BookStoreSerializer> factory;
+
+	/**
+	 * Instantiates a new {@link BookStoreSerializationFormat}.
+	 *
+	 * @param contentType
+	 *            the content type
+	 * @param factory
+	 *            the serializer factory
+	 */
+	BookStoreSerializationFormat(String contentType, Supplier<BookStoreSerializer> factory) {
+		this.contentType = contentType;
+		this.factory = factory;
+	}
+
+	/**
+	 * Gets the content type of the messages in the format.
+	 *
+	 * @return the content type
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * Creates a new serializer for the format. Serializers are not thread-safe,
+	 * so every thread needs its own.
+	 *
+	 * @return the serializer
+	 */
+	public BookStoreSerializer newSerializer() {
+		return factory.get();
+	}
+
+	/**
+	 * Finds the format of the first supported media type in a Content-Type or
+	 * Accept header value. Media type parameters, such as quality values, are
+	 * ignored.
+	 *
+	 * @param mediaTypes
+	 *            the header value, possibly null
+	 * @return the format, or null if no media type is supported
+	 */
+	public static BookStoreSerializationFormat forMediaTypes(String mediaTypes) {
+		if (BookStoreUtility.isEmpty(mediaTypes)) {
+			return null;
+		}
+
+		for (String mediaType : mediaTypes.split(",")) {
+			int parameters = mediaType.indexOf(';');
+			String contentType = (parameters < 0 ? mediaType : mediaType.substring(0, parameters)).trim()
+					.toLowerCase(Locale.ROOT);
+
+			for (BookStoreSerializationFormat format : values()) {
+				if (format.contentType.equals(contentType)) {
+					return format;
+				}
+			}
+		}
+
+		return null;
+	}
+}
@@ -1,15 +1,23 @@
 package com.acertainbookstore.utils;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 import org.eclipse.jetty.client.HttpClient;
-import org.eclipse.jetty.client.api.ContentProvider;
-import org.eclipse.jetty.client.api.ContentResponse;
 import org.eclipse.jetty.client.api.Request;
-import org.eclipse.jetty.client.util.BytesContentProvider;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.InputStreamResponseListener;
+import org.eclipse.jetty.client.util.OutputStreamContentProvider;
+import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
 
 import com.acertainbookstore.client.BookStoreClientConstants;
 import com.acertainbookstore.interfaces.BookStoreSerializer;
@@ -149,20 +157,53 @@ public final class BookStoreUtility {
 	}
 
 	/**
-	 * Perform HTTP exchange.
+	 * Perform HTTP exchange, blocking the caller until the response is
+	 * received. It is the exchange of
+	 * {@link #performHttpExchangeAsync(HttpClient, BookStoreRequest, Supplier)},
+	 * waited for.
 	 *
 	 * @param client
 	 *            the client
 	 * @param bookStoreRequest
 	 *            the book store request
 	 * @param serializer
-	 *            the serializer
-	 * @return the book store response
+	 *            the supplier of the serializer of the current thread
+	 * @return the book store response, or null if the content is current
 	 * @throws BookStoreException
 	 *             the book store exception
 	 */
 	public static BookStoreResponse performHttpExchange(HttpClient client, BookStoreRequest bookStoreRequest,
-			BookStoreSerializer serializer) throws BookStoreException {
+			Supplier<BookStoreSerializer> serializer) throws BookStoreException {
+		return getResult(performHttpExchangeAsync(client, bookStoreRequest, serializer));
+	}
+
+	/**
+	 * Perform HTTP exchange without blocking the caller. The request value is
+	 * serialized by the caller straight into the request body, and the
+	 * response is de-serialized straight from the response body by a client
+	 * thread once the response headers are received, so neither is buffered
+	 * as a whole. Both are in the content type of the serializer, which is
+	 * given as a supplier of the serializer of the current thread. A
+	 * conditional request whose content is current is answered without
+	 * content.
+	 *
+	 * The future completes with the response, or with null if the content is
+	 * current, or exceptionally with a {@link BookStoreException}; its
+	 * dependent actions run on the client threads unless an executor is given.
+	 *
+	 * @param client
+	 *            the client
+	 * @param bookStoreRequest
+	 *            the book store request
+	 * @param serializer
+	 *            the supplier of the serializer of the current thread
+	 * @return the future book store response
+	 */
+	public static CompletableFuture<BookStoreResponse> performHttpExchangeAsync(HttpClient client,
+			BookStoreRequest bookStoreRequest, Supplier<BookStoreSerializer> serializer) {
+		CompletableFuture<BookStoreResponse> future = new CompletableFuture<>();
+		String contentType = serializer.get().getContentType();
+		OutputStreamContentProvider contentProvider = null;
 		Request request;
 
 		switch (bookStoreRequest.getMethod()) {
@@ -171,46 +212,124 @@ public final class BookStoreUtility {
 			break;
 
 		case POST:
-			try {
-				byte[] serializedValue = serializer.serialize(bookStoreRequest.getInputValue());
-				ContentProvider contentProvider = new BytesContentProvider(serializedValue);
-				request = client.POST(bookStoreRequest.getURLString()).content(contentProvider);
-			} catch (IOException ex) {
-				throw new BookStoreException("Serialization error", ex);
-			}
-
+			contentProvider = new OutputStreamContentProvider();
+			request = client.POST(bookStoreRequest.getURLString()).content(contentProvider, contentType);
 			break;
 
 		default:
 			throw new IllegalArgumentException("HTTP Method not supported.");
 		}
 
-		ContentResponse response;
+		request.accept(contentType).timeout(BookStoreClientConstants.CLIENT_MAX_TIMEOUT_MILLISECS,
+				TimeUnit.MILLISECONDS);
 
-		try {
-			response = request.send();
-		} catch (InterruptedException ex) {
-			throw new BookStoreException(BookStoreClientConstants.STR_ERR_CLIENT_REQUEST_SENDING, ex);
-		} catch (TimeoutException ex) {
-			throw new BookStoreException(BookStoreClientConstants.STR_ERR_CLIENT_REQUEST_TIMEOUT, ex);
-		} catch (ExecutionException ex) {
-			throw new BookStoreException(BookStoreClientConstants.STR_ERR_CLIENT_REQUEST_EXCEPTION, ex);
+		if (bookStoreRequest.getEntityTag() != null) {
+			request.header(HttpHeader.IF_NONE_MATCH, bookStoreRequest.getEntityTag());
 		}
 
-		BookStoreResponse bookStoreResponse;
+		request.send(new InputStreamResponseListener() {
 
-		try {
-			bookStoreResponse = (BookStoreResponse) serializer.deserialize(response.getContent());
-		} catch (IOException ex) {
-			throw new BookStoreException("Deserialization error", ex);
+			@Override
+			public void onHeaders(Response response) {
+				super.onHeaders(response);
+
+				// Reading the body blocks, so it is left to another thread
+				client.getExecutor().execute(() -> readResponse(this, response, serializer.get(), future));
+			}
+
+			@Override
+			public void onComplete(Result result) {
+				super.onComplete(result);
+
+				if (result.isFailed()) {
+					String message = result.getFailure() instanceof TimeoutException
+							? BookStoreClientConstants.STR_ERR_CLIENT_REQUEST_TIMEOUT
+							: BookStoreClientConstants.STR_ERR_CLIENT_REQUEST_EXCEPTION;
+					future.completeExceptionally(new BookStoreException(message, result.getFailure()));
+				}
+			}
+		});
+
+		if (contentProvider != null) {
+
+			// Closing the stream ends the request body
+			try (OutputStream outputStream = contentProvider.getOutputStream()) {
+				serializer.get().serialize(bookStoreRequest.getInputValue(), outputStream);
+			} catch (IOException | RuntimeException ex) {
+				request.abort(ex);
+				future.completeExceptionally(new BookStoreException("Serialization error", ex));
+			}
 		}
 
-		BookStoreException exception = bookStoreResponse.getException();
+		return future;
+	}
+
+	/**
+	 * De-serializes the response of an HTTP exchange from its body, and
+	 * completes the future with it.
+	 *
+	 * @param listener
+	 *            the listener streaming the body of the response
+	 * @param response
+	 *            the response
+	 * @param serializer
+	 *            the serializer
+	 * @param future
+	 *            the future book store response
+	 */
+	private static void readResponse(InputStreamResponseListener listener, Response response,
+			BookStoreSerializer serializer, CompletableFuture<BookStoreResponse> future) {
+		BookStoreResponse bookStoreResponse;
+
+		try (InputStream inputStream = listener.getInputStream()) {
+			if (response.getStatus() == HttpStatus.NOT_MODIFIED_304) {
+				future.complete(null);
+				return;
+			}
+
+			bookStoreResponse = (BookStoreResponse) serializer.deserialize(inputStream);
 
-		if (exception != null) {
-			throw exception;
+			// Closing a partly read response would also close the connection
+			while (inputStream.read() != -1) {
+				// Drain the rest of the response.
+			}
+		} catch (IOException | RuntimeException ex) {
+			future.completeExceptionally(new BookStoreException("Deserialization error", ex));
+			return;
 		}
 
-		return bookStoreResponse;
+		if (bookStoreResponse.getException() != null) {
+			future.completeExceptionally(bookStoreResponse.getException());
+		} else {
+			bookStoreResponse.setEntityTag(response.getHeaders().get(HttpHeader.ETAG));
+			future.complete(bookStoreResponse);
+		}
+	}
+
+	/**
+	 * Waits for a future book store result, and unwraps the
+	 * {@link BookStoreException} it failed with, if any.
+	 *
+	 * @param <T>
+	 *            the type of the result
+	 * @param future
+	 *            the future
+	 * @return the result
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	public static <T> T getResult(CompletableFuture<T> future) throws BookStoreException {
+		try {
+			return future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new BookStoreException(BookStoreClientConstants.STR_ERR_CLIENT_REQUEST_SENDING, ex);
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof BookStoreException) {
+				throw (BookStoreException) ex.getCause();
+			}
+
+			throw new BookStoreException(BookStoreClientConstants.STR_ERR_CLIENT_REQUEST_EXCEPTION, ex.getCause());
+		}
 	}
 }